@@ -0,0 +1,24 @@
+package com.pratice.juicestock.alert;
+
+import com.pratice.juicestock.dto.StockAlertDTO;
+import com.pratice.juicestock.enums.StockAlertStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "juicestock.alerts.sinks.log.enabled", havingValue = "true", matchIfMissing = true)
+public class LoggingStockAlertSink implements StockAlertSink {
+
+    @Override
+    public void send(StockAlertDTO alert) {
+        if (alert.getStatus() == StockAlertStatus.RAISED) {
+            log.warn("{} raised for juice {} ({}): quantity {} of {}, threshold {}", alert.getType(), alert.getId(),
+                    alert.getName(), alert.getQuantity(), alert.getMax(), alert.getThreshold());
+        } else {
+            log.info("{} cleared for juice {} ({}): quantity {} of {}", alert.getType(), alert.getId(),
+                    alert.getName(), alert.getQuantity(), alert.getMax());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.pratice.juicestock.alert;
+
+import com.pratice.juicestock.dto.StockAlertDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the last {@code juicestock.alerts.sinks.queue.capacity} alerts for in-process
+ * consumers to take; the oldest alert is dropped to make room for a new one.
+ */
+@Component
+@ConditionalOnProperty(name = "juicestock.alerts.sinks.queue.enabled", havingValue = "true")
+public class QueueStockAlertSink implements StockAlertSink {
+
+    private final BlockingQueue<StockAlertDTO> alerts;
+
+    @Autowired
+    public QueueStockAlertSink(@Value("${juicestock.alerts.sinks.queue.capacity:1000}") int capacity) {
+        this.alerts = new ArrayBlockingQueue<>(capacity);
+    }
+
+    @Override
+    public void send(StockAlertDTO alert) {
+        while (!alerts.offer(alert)) {
+            alerts.poll();
+        }
+    }
+
+    /**
+     * Takes the oldest alert, waiting up to {@code timeout} for one, or returns {@code null}.
+     */
+    public StockAlertDTO poll(Duration timeout) throws InterruptedException {
+        return alerts.poll(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    public List<StockAlertDTO> drain() {
+        List<StockAlertDTO> drained = new ArrayList<>();
+        alerts.drainTo(drained);
+        return drained;
+    }
+}
@@ -0,0 +1,107 @@
+package com.pratice.juicestock.alert;
+
+import com.pratice.juicestock.dto.StockAlertDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Hands the alerts to every {@link StockAlertSink} on a single thread, so writers only queue
+ * them. At most {@code juicestock.alerts.queue-capacity} alerts wait; when the sinks fall that
+ * far behind, new alerts are dropped and counted by the {@value #DROPPED_COUNTER} counter.
+ * Alerts handed to the sinks are counted by the {@value #ALERT_COUNTER} counter and a sink
+ * that fails is logged without holding up the others.
+ */
+@Slf4j
+@Component
+public class StockAlertDispatcher {
+
+    public static final String ALERT_COUNTER = "juicestock.alerts";
+    public static final String DROPPED_COUNTER = "juicestock.alerts.dropped";
+
+    private final MeterRegistry meterRegistry;
+    private final List<StockAlertSink> sinks;
+    private final Executor executor;
+    private final Counter droppedCounter;
+    private final ConcurrentMap<String, Counter> alertCounters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public StockAlertDispatcher(MeterRegistry meterRegistry,
+                                ObjectProvider<StockAlertSink> sinks,
+                                @Value("${juicestock.alerts.queue-capacity:1024}") int queueCapacity) {
+        this(meterRegistry, sinks.orderedStream().collect(Collectors.toList()), newExecutor(queueCapacity));
+    }
+
+    public StockAlertDispatcher(MeterRegistry meterRegistry, List<StockAlertSink> sinks, Executor executor) {
+        this.meterRegistry = meterRegistry;
+        this.sinks = sinks;
+        this.executor = executor;
+        this.droppedCounter = Counter.builder(DROPPED_COUNTER)
+                .description("Stock alerts dropped because the alert sinks fell behind")
+                .register(meterRegistry);
+    }
+
+    public void dispatch(StockAlertDTO alert) {
+        try {
+            executor.execute(() -> deliver(alert));
+        } catch (RejectedExecutionException e) {
+            droppedCounter.increment();
+        }
+    }
+
+    private void deliver(StockAlertDTO alert) {
+        alertCounters.computeIfAbsent(alert.getType() + ":" + alert.getStatus(), key -> Counter.builder(ALERT_COUNTER)
+                .description("Stock alerts raised and cleared")
+                .tag("type", alert.getType().name().toLowerCase(Locale.ROOT))
+                .tag("status", alert.getStatus().name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry))
+                .increment();
+        for (StockAlertSink sink : sinks) {
+            try {
+                sink.send(alert);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Could not send {} {} of juice {} to {}", alert.getType(), alert.getStatus(), alert.getId(),
+                        sink.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    private static ExecutorService newExecutor(int queueCapacity) {
+        return new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "stock-alerts");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        if (executor instanceof ExecutorService) {
+            ExecutorService executorService = (ExecutorService) executor;
+            executorService.shutdown();
+            executorService.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.pratice.juicestock.alert;
+
+import com.pratice.juicestock.changes.JuiceChangeListener;
+import com.pratice.juicestock.changes.Tombstones;
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.dto.StockAlertDTO;
+import com.pratice.juicestock.enums.StockAlertStatus;
+import com.pratice.juicestock.enums.StockAlertType;
+import com.pratice.juicestock.enums.StockChangeType;
+import com.pratice.juicestock.repository.JuiceRepository;
+import com.pratice.juicestock.stock.StockEngine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Raises a {@link StockAlertType#LOW_STOCK} alert when the stock of a juice falls to its
+ * {@code low} threshold and a {@link StockAlertType#HIGH_STOCK} one when it rises to its
+ * {@code high} threshold. The alert is cleared only once the stock is back past the threshold
+ * by more than the {@code hysteresis}, so a stock moving around a threshold does not raise it
+ * again on every change. Each threshold is read from
+ * {@code juicestock.alerts.juices.<name>.<threshold>}, then
+ * {@code juicestock.alerts.types.<TYPE>.<threshold>}, then {@code juicestock.alerts.<threshold>},
+ * in units or as a percentage of the max; a blank threshold is disabled.
+ * <p>
+ * Every committed write through {@code JuiceService} reports the juice it left, which is checked
+ * against the thresholds of that juice alone, so detecting an alert costs the same whatever the
+ * size of the catalog. The table is read once on startup, raising the alerts of the juices
+ * already past a threshold. As in {@code StockStatistics}, a result older than the last one seen
+ * for a juice is ignored and a deleted juice leaves a tombstone, kept as long as
+ * {@link Tombstones} says a late write can arrive, so no alert is raised for it by a write that
+ * finishes after the delete. Alerts are handed to the {@link StockAlertDispatcher}.
+ */
+@Component
+public class StockAlertEngine implements SmartLifecycle, JuiceChangeListener {
+
+    private static final String PROPERTY_PREFIX = "juicestock.alerts.";
+    private static final String LOW = "low";
+    private static final String HIGH = "high";
+    private static final String HYSTERESIS = "hysteresis";
+    private static final Entry REMOVED = new Entry(null, null, null);
+
+    private final JuiceRepository juiceRepository;
+    private final StockEngine stockEngine;
+    private final Environment environment;
+    private final StockAlertDispatcher stockAlertDispatcher;
+    private final boolean enabled;
+    private final StockThreshold defaultLow;
+    private final StockThreshold defaultHigh;
+    private final StockThreshold defaultHysteresis;
+    private final ConcurrentMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final Tombstones tombstones;
+    private volatile boolean running;
+
+    @Autowired
+    public StockAlertEngine(JuiceRepository juiceRepository,
+                            StockEngine stockEngine,
+                            Environment environment,
+                            StockAlertDispatcher stockAlertDispatcher,
+                            @Value("${juicestock.alerts.enabled:true}") boolean enabled,
+                            @Value("${juicestock.alerts.low:10%}") String defaultLow,
+                            @Value("${juicestock.alerts.high:}") String defaultHigh,
+                            @Value("${juicestock.alerts.hysteresis:5%}") String defaultHysteresis,
+                            @Value("${juicestock.changes.tombstone-ttl:1m}") Duration tombstoneTtl) {
+        this.juiceRepository = juiceRepository;
+        this.stockEngine = stockEngine;
+        this.environment = environment;
+        this.stockAlertDispatcher = stockAlertDispatcher;
+        this.enabled = enabled;
+        this.defaultLow = StockThreshold.parse(defaultLow);
+        this.defaultHigh = StockThreshold.parse(defaultHigh);
+        this.defaultHysteresis = StockThreshold.parse(defaultHysteresis);
+        this.tombstones = new Tombstones(tombstoneTtl);
+    }
+
+    public void update(JuiceDTO juiceDTO) {
+        if (!enabled) {
+            return;
+        }
+        entries.compute(juiceDTO.getId(), (id, current) -> {
+            if (current == REMOVED || current != null && current.isNewerThan(juiceDTO.getVersion())) {
+                return current;
+            }
+            Thresholds thresholds = current == null ? thresholds(juiceDTO) : current.thresholds;
+            StockAlertType active = current == null ? null : current.active;
+            StockAlertType next = thresholds.evaluate(active, juiceDTO.getQuantity(), juiceDTO.getMax());
+            if (next != active) {
+                if (active != null) {
+                    dispatch(active, StockAlertStatus.CLEARED, juiceDTO, thresholds);
+                }
+                if (next != null) {
+                    dispatch(next, StockAlertStatus.RAISED, juiceDTO, thresholds);
+                }
+            }
+            return new Entry(juiceDTO, thresholds, next);
+        });
+    }
+
+    /**
+     * Forgets a deleted juice, clearing its alert if one is raised.
+     */
+    public void remove(Long id) {
+        Entry entry = entries.put(id, REMOVED);
+        if (entry != null && entry != REMOVED && entry.active != null) {
+            dispatch(entry.active, StockAlertStatus.CLEARED, entry.juiceDTO, entry.thresholds);
+        }
+        tombstones.lay(id, expired -> entries.remove(expired, REMOVED));
+    }
+
+    @Override
+    public void juiceSaved(StockChangeType type, JuiceDTO juiceDTO) {
+        update(juiceDTO);
+    }
+
+    @Override
+    public void juiceDeleted(Long id, String name) {
+        remove(id);
+    }
+
+    private void dispatch(StockAlertType type, StockAlertStatus status, JuiceDTO juiceDTO, Thresholds thresholds) {
+        stockAlertDispatcher.dispatch(new StockAlertDTO(type,
+                status,
+                juiceDTO.getId(),
+                juiceDTO.getName(),
+                juiceDTO.getType(),
+                juiceDTO.getQuantity(),
+                juiceDTO.getMax(),
+                thresholds.units(type, juiceDTO.getMax()),
+                juiceDTO.getVersion(),
+                Instant.now()));
+    }
+
+    private Thresholds thresholds(JuiceDTO juiceDTO) {
+        return new Thresholds(threshold(juiceDTO, LOW, defaultLow),
+                threshold(juiceDTO, HIGH, defaultHigh),
+                threshold(juiceDTO, HYSTERESIS, defaultHysteresis));
+    }
+
+    private StockThreshold threshold(JuiceDTO juiceDTO, String threshold, StockThreshold defaultThreshold) {
+        String juiceProperty = PROPERTY_PREFIX + "juices." + juiceDTO.getName() + "." + threshold;
+        if (environment.containsProperty(juiceProperty)) {
+            return StockThreshold.parse(environment.getProperty(juiceProperty));
+        }
+        String typeProperty = PROPERTY_PREFIX + "types." + juiceDTO.getType() + "." + threshold;
+        if (environment.containsProperty(typeProperty)) {
+            return StockThreshold.parse(environment.getProperty(typeProperty));
+        }
+        return defaultThreshold;
+    }
+
+    /**
+     * Checks the juices that no write has reported yet. Runs before the web server starts.
+     */
+    @Override
+    public void start() {
+        if (enabled) {
+            juiceRepository.findAllJuiceDTOs()
+                    .stream()
+                    .map(stockEngine::overlay)
+                    .forEach(this::update);
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    private static final class Thresholds {
+
+        private final StockThreshold low;
+        private final StockThreshold high;
+        private final StockThreshold hysteresis;
+
+        private Thresholds(StockThreshold low, StockThreshold high, StockThreshold hysteresis) {
+            this.low = low;
+            this.high = high;
+            this.hysteresis = hysteresis;
+        }
+
+        /**
+         * Returns the alert the juice should be in, given the one it is in.
+         */
+        private StockAlertType evaluate(StockAlertType active, int quantity, int max) {
+            int band = hysteresis == null ? 0 : hysteresis.units(max);
+            if (low != null) {
+                int lowUnits = low.units(max);
+                if (quantity <= lowUnits || active == StockAlertType.LOW_STOCK && quantity <= lowUnits + band) {
+                    return StockAlertType.LOW_STOCK;
+                }
+            }
+            if (high != null) {
+                int highUnits = high.units(max);
+                if (quantity >= highUnits || active == StockAlertType.HIGH_STOCK && quantity >= highUnits - band) {
+                    return StockAlertType.HIGH_STOCK;
+                }
+            }
+            return null;
+        }
+
+        private int units(StockAlertType type, int max) {
+            return (type == StockAlertType.LOW_STOCK ? low : high).units(max);
+        }
+    }
+
+    private static final class Entry {
+
+        private final JuiceDTO juiceDTO;
+        private final Thresholds thresholds;
+        private final StockAlertType active;
+
+        private Entry(JuiceDTO juiceDTO, Thresholds thresholds, StockAlertType active) {
+            this.juiceDTO = juiceDTO;
+            this.thresholds = thresholds;
+            this.active = active;
+        }
+
+        private boolean isNewerThan(Long otherVersion) {
+            Long version = juiceDTO.getVersion();
+            return version != null && otherVersion != null && version >= otherVersion;
+        }
+    }
+}
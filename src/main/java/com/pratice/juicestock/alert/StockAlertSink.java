@@ -0,0 +1,12 @@
+package com.pratice.juicestock.alert;
+
+import com.pratice.juicestock.dto.StockAlertDTO;
+
+/**
+ * Receives the stock alerts, one at a time and in the order they were raised, on the thread
+ * of the {@link StockAlertDispatcher}; a slow sink delays the alerts but never a write.
+ */
+public interface StockAlertSink {
+
+    void send(StockAlertDTO alert) throws Exception;
+}
@@ -0,0 +1,36 @@
+package com.pratice.juicestock.alert;
+
+/**
+ * A stock level given either in units, such as {@code 5}, or as a percentage of the max of
+ * the juice, such as {@code 10%}.
+ */
+final class StockThreshold {
+
+    private final int value;
+    private final boolean percent;
+
+    private StockThreshold(int value, boolean percent) {
+        this.value = value;
+        this.percent = percent;
+    }
+
+    /**
+     * Parses a threshold, returning {@code null} for a blank one, which disables it.
+     */
+    static StockThreshold parse(String threshold) {
+        if (threshold == null || threshold.trim().isEmpty()) {
+            return null;
+        }
+        String trimmed = threshold.trim();
+        boolean percent = trimmed.endsWith("%");
+        int value = Integer.parseInt(percent ? trimmed.substring(0, trimmed.length() - 1).trim() : trimmed);
+        if (value < 0) {
+            throw new IllegalArgumentException("Stock threshold must not be negative: " + threshold);
+        }
+        return new StockThreshold(value, percent);
+    }
+
+    int units(int max) {
+        return percent ? (int) ((long) max * value / 100) : value;
+    }
+}
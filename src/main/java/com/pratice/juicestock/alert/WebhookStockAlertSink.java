@@ -0,0 +1,57 @@
+package com.pratice.juicestock.alert;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pratice.juicestock.dto.StockAlertDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * Posts every alert as JSON to {@code juicestock.alerts.sinks.webhook.url}. An alert the
+ * endpoint does not accept within {@code juicestock.alerts.sinks.webhook.timeout} is logged
+ * by the dispatcher and not sent again.
+ */
+@Component
+@ConditionalOnProperty(name = "juicestock.alerts.sinks.webhook.url")
+public class WebhookStockAlertSink implements StockAlertSink {
+
+    private final ObjectMapper objectMapper;
+    private final URI url;
+    private final Duration timeout;
+    private final HttpClient httpClient;
+
+    @Autowired
+    public WebhookStockAlertSink(ObjectMapper objectMapper,
+                                 @Value("${juicestock.alerts.sinks.webhook.url}") URI url,
+                                 @Value("${juicestock.alerts.sinks.webhook.timeout:5s}") Duration timeout) {
+        this.objectMapper = objectMapper;
+        this.url = url;
+        this.timeout = timeout;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    @Override
+    public void send(StockAlertDTO alert) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(url)
+                .timeout(timeout)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(alert)))
+                .build();
+        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("Webhook answered " + response.statusCode() + " to " + alert.getType() + " " + alert.getStatus() + " of juice " + alert.getId());
+        }
+    }
+}
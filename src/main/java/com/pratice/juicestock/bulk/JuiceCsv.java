@@ -0,0 +1,182 @@
+package com.pratice.juicestock.bulk;
+
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.enums.JuiceType;
+import com.pratice.juicestock.exception.InvalidImportException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * RFC 4180 CSV with a header row, read and written one record at a time. Columns are matched
+ * by header name, so their order is free; {@code id} and {@code version} are written on
+ * export and ignored on import.
+ */
+public final class JuiceCsv {
+
+    public static final String MEDIA_TYPE = "text/csv";
+
+    static final List<String> COLUMNS = Arrays.asList("id", "name", "brand", "max", "quantity", "type", "version");
+    private static final List<String> REQUIRED_COLUMNS = Arrays.asList("name", "brand", "max", "quantity", "type");
+
+    private JuiceCsv() {
+    }
+
+    public static void writeHeader(Writer writer) throws IOException {
+        writer.write(String.join(",", COLUMNS));
+        writer.write("\r\n");
+    }
+
+    public static void write(Writer writer, JuiceDTO juiceDTO) throws IOException {
+        writer.write(String.valueOf(juiceDTO.getId()));
+        writer.write(',');
+        writeText(writer, juiceDTO.getName());
+        writer.write(',');
+        writeText(writer, juiceDTO.getBrand());
+        writer.write(',');
+        writer.write(String.valueOf(juiceDTO.getMax()));
+        writer.write(',');
+        writer.write(String.valueOf(juiceDTO.getQuantity()));
+        writer.write(',');
+        writer.write(juiceDTO.getType().name());
+        writer.write(',');
+        writer.write(String.valueOf(juiceDTO.getVersion()));
+        writer.write("\r\n");
+    }
+
+    private static void writeText(Writer writer, String text) throws IOException {
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    /**
+     * Reads the records after the header, keeping the line each record starts on so errors
+     * can point at it.
+     */
+    static final class RecordReader {
+
+        private final Reader reader;
+        private final Map<String, Integer> columns = new HashMap<>();
+        private int pending = -1;
+        private long line = 1;
+        private long recordLine;
+
+        RecordReader(Reader reader) throws IOException, InvalidImportException {
+            this.reader = reader;
+            List<String> header = nextRecord();
+            if (header == null) {
+                throw new InvalidImportException("the CSV header row is missing");
+            }
+            for (int i = 0; i < header.size(); i++) {
+                columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+            }
+            for (String column : REQUIRED_COLUMNS) {
+                if (!columns.containsKey(column)) {
+                    throw new InvalidImportException(String.format("the CSV header has no %s column", column));
+                }
+            }
+        }
+
+        long line() {
+            return recordLine;
+        }
+
+        /**
+         * Returns the fields of the next record, or {@code null} at the end of the input.
+         */
+        List<String> nextRecord() throws IOException {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean empty = true;
+            recordLine = line;
+            int c;
+            while ((c = read()) != -1) {
+                empty = false;
+                if (quoted) {
+                    if (c != '"') {
+                        if (c == '\n') {
+                            line++;
+                        }
+                        field.append((char) c);
+                    } else if ((pending = reader.read()) == '"') {
+                        pending = -1;
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    line++;
+                    fields.add(field.toString());
+                    return fields;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+            }
+            if (empty) {
+                return null;
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+
+        JuiceDTO toJuiceDTO(List<String> record) {
+            return JuiceDTO.builder()
+                    .name(text(record, "name"))
+                    .brand(text(record, "brand"))
+                    .max(number(record, "max"))
+                    .quantity(number(record, "quantity"))
+                    .type(type(record))
+                    .build();
+        }
+
+        private String text(List<String> record, String column) {
+            int index = columns.get(column);
+            return index < record.size() && !record.get(index).isEmpty() ? record.get(index) : null;
+        }
+
+        private Integer number(List<String> record, String column) {
+            String text = text(record, column);
+            try {
+                return text == null ? null : Integer.valueOf(text.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(String.format("%s must be a whole number", column));
+            }
+        }
+
+        private JuiceType type(List<String> record) {
+            String text = text(record, "type");
+            try {
+                return text == null ? null : JuiceType.valueOf(text.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(String.format("type must be one of %s", Arrays.toString(JuiceType.values())));
+            }
+        }
+
+        private int read() throws IOException {
+            if (pending != -1) {
+                int c = pending;
+                pending = -1;
+                return c;
+            }
+            return reader.read();
+        }
+    }
+}
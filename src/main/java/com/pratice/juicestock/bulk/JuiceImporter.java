@@ -0,0 +1,182 @@
+package com.pratice.juicestock.bulk;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.dto.JuiceImportErrorDTO;
+import com.pratice.juicestock.dto.JuiceImportResultDTO;
+import com.pratice.juicestock.exception.InvalidImportException;
+import com.pratice.juicestock.exception.JuiceAlreadyRegisteredException;
+import com.pratice.juicestock.repository.JuiceRepository;
+import com.pratice.juicestock.service.JuiceService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Imports juices from CSV or NDJSON while the request body is still being read. Rows are
+ * validated as they arrive and inserted in chunks of {@code juicestock.bulk.chunk-size}:
+ * one {@code IN} query finds the names of a chunk that are already registered, and the rest
+ * are inserted in one batched transaction. A row that cannot be imported is reported with
+ * its line and the import goes on.
+ */
+@Component
+public class JuiceImporter {
+
+    private final JuiceService juiceService;
+    private final JuiceRepository juiceRepository;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int chunkSize;
+
+    @Autowired
+    public JuiceImporter(JuiceService juiceService,
+                         JuiceRepository juiceRepository,
+                         ObjectMapper objectMapper,
+                         Validator validator,
+                         @Value("${juicestock.bulk.chunk-size:500}") int chunkSize) {
+        this.juiceService = juiceService;
+        this.juiceRepository = juiceRepository;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+    }
+
+    public JuiceImportResultDTO importCsv(InputStream inputStream) throws IOException, InvalidImportException {
+        JuiceCsv.RecordReader recordReader = new JuiceCsv.RecordReader(newReader(inputStream));
+        Import juiceImport = new Import();
+        List<String> record;
+        while ((record = recordReader.nextRecord()) != null) {
+            if (record.size() == 1 && record.get(0).trim().isEmpty()) {
+                continue;
+            }
+            try {
+                juiceImport.add(recordReader.line(), recordReader.toJuiceDTO(record));
+            } catch (IllegalArgumentException e) {
+                juiceImport.reject(recordReader.line(), null, e.getMessage());
+            }
+        }
+        return juiceImport.finish();
+    }
+
+    public JuiceImportResultDTO importNdjson(InputStream inputStream) throws IOException {
+        BufferedReader reader = newReader(inputStream);
+        Import juiceImport = new Import();
+        long line = 0;
+        String text;
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (text.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                juiceImport.add(line, objectMapper.readValue(text, JuiceDTO.class));
+            } catch (JsonProcessingException e) {
+                juiceImport.reject(line, null, e.getOriginalMessage());
+            }
+        }
+        return juiceImport.finish();
+    }
+
+    private static BufferedReader newReader(InputStream inputStream) {
+        return new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    }
+
+    private final class Import {
+
+        private final List<Row> chunk = new ArrayList<>(chunkSize);
+        private final List<JuiceImportErrorDTO> errors = new ArrayList<>();
+        private long imported;
+
+        private void add(long line, JuiceDTO juiceDTO) {
+            juiceDTO.setId(null);
+            juiceDTO.setVersion(null);
+            Set<ConstraintViolation<JuiceDTO>> violations = validator.validate(juiceDTO);
+            if (!violations.isEmpty()) {
+                reject(line, juiceDTO.getName(), violations.stream()
+                        .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining(", ")));
+                return;
+            }
+            chunk.add(new Row(line, juiceDTO));
+            if (chunk.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        private void reject(long line, String name, String error) {
+            errors.add(new JuiceImportErrorDTO(line, name, error));
+        }
+
+        private void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            Set<String> names = chunk.stream().map(row -> row.juiceDTO.getName()).collect(Collectors.toSet());
+            Set<String> takenNames = new HashSet<>(juiceRepository.findNamesIn(names));
+            List<Row> accepted = new ArrayList<>(chunk.size());
+            for (Row row : chunk) {
+                if (takenNames.add(row.juiceDTO.getName())) {
+                    accepted.add(row);
+                } else {
+                    reject(row.line, row.juiceDTO.getName(), new JuiceAlreadyRegisteredException(row.juiceDTO.getName()).getMessage());
+                }
+            }
+            chunk.clear();
+            if (accepted.isEmpty()) {
+                return;
+            }
+            try {
+                imported += juiceService.createJuices(accepted.stream().map(row -> row.juiceDTO).collect(Collectors.toList())).size();
+            } catch (DataIntegrityViolationException e) {
+                accepted.forEach(this::createOne);
+            }
+        }
+
+        /**
+         * Inserts a row of a chunk that failed as a whole, most likely because one of its
+         * names was registered after the chunk was checked.
+         */
+        private void createOne(Row row) {
+            try {
+                juiceService.createJuice(row.juiceDTO);
+                imported++;
+            } catch (JuiceAlreadyRegisteredException | DataIntegrityViolationException e) {
+                reject(row.line, row.juiceDTO.getName(), e.getMessage());
+            }
+        }
+
+        private JuiceImportResultDTO finish() {
+            flush();
+            errors.sort(Comparator.comparing(JuiceImportErrorDTO::getLine));
+            return new JuiceImportResultDTO(imported, errors);
+        }
+    }
+
+    private static final class Row {
+
+        private final long line;
+        private final JuiceDTO juiceDTO;
+
+        private Row(long line, JuiceDTO juiceDTO) {
+            this.line = line;
+            this.juiceDTO = juiceDTO;
+        }
+    }
+}
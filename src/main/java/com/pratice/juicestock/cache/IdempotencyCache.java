@@ -0,0 +1,112 @@
+package com.pratice.juicestock.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pratice.juicestock.exception.IdempotencyKeyReusedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Results of the requests sent with an {@code Idempotency-Key} header, bounded to
+ * {@code juicestock.idempotency.maximum-size} keys kept for
+ * {@code juicestock.idempotency.expire-after-write}. Keys are scoped by client, so two
+ * clients that happen to pick the same key never see each other's results. A request
+ * repeating a key of its client gets the result of the first one, or waits for it if it is
+ * still running, without running again.
+ * A failed request is forgotten so that it can be retried, and a key sent with a different
+ * request is refused with {@link IdempotencyKeyReusedException}. Hit and miss counters are
+ * published as the {@code cache.*} meters of the {@value #CACHE_NAME} cache.
+ */
+@Component
+public class IdempotencyCache {
+
+    public static final String CACHE_NAME = "idempotentResponses";
+
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private final Cache<String, Entry> cache;
+
+    @Autowired
+    public IdempotencyCache(MeterRegistry meterRegistry,
+                            @Value("${juicestock.idempotency.maximum-size:100000}") long maximumSize,
+                            @Value("${juicestock.idempotency.expire-after-write:24h}") Duration expireAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Runs the request described by {@code request} unless {@code client} already used
+     * {@code idempotencyKey} for it. Requests without a key always run. A request repeating
+     * a key whose first request is still running blocks until that one finishes.
+     */
+    public <T, E extends Exception> T execute(String client, String idempotencyKey, String request, IdempotentRequest<T, E> run)
+            throws E, IdempotencyKeyReusedException {
+        if (idempotencyKey == null) {
+            return run.run();
+        }
+        String key = client + KEY_SEPARATOR + idempotencyKey;
+        Entry existing = cache.getIfPresent(key);
+        if (existing == null) {
+            Entry entry = new Entry(request);
+            existing = cache.asMap().putIfAbsent(key, entry);
+            if (existing == null) {
+                try {
+                    T result = run.run();
+                    entry.result.complete(result);
+                    return result;
+                } catch (Throwable e) {
+                    cache.asMap().remove(key, entry);
+                    entry.result.completeExceptionally(e);
+                    throw e;
+                }
+            }
+        }
+        if (!existing.request.equals(request)) {
+            throw new IdempotencyKeyReusedException(idempotencyKey);
+        }
+        return existing.await();
+    }
+
+    @FunctionalInterface
+    public interface IdempotentRequest<T, E extends Exception> {
+
+        T run() throws E;
+    }
+
+    private static final class Entry {
+
+        private final String request;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        private Entry(String request) {
+            this.request = request;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T, E extends Exception> T await() throws E {
+            try {
+                return (T) result.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw (E) cause;
+            }
+        }
+    }
+}
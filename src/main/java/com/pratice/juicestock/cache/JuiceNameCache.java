@@ -0,0 +1,64 @@
+package com.pratice.juicestock.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pratice.juicestock.changes.JuiceChangeListener;
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.enums.StockChangeType;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache of juices by name. Writes invalidate the entry after they
+ * are committed; Caffeine waits for an in-flight load of the same name before removing it,
+ * so a read that started before the write can never put the old value back.
+ * Hit, miss and eviction counters are published as the {@code cache.*} meters of
+ * the {@value #CACHE_NAME} cache.
+ */
+@Component
+public class JuiceNameCache implements JuiceChangeListener {
+
+    public static final String CACHE_NAME = "juicesByName";
+
+    private final Cache<String, JuiceDTO> cache;
+
+    @Autowired
+    public JuiceNameCache(MeterRegistry meterRegistry,
+                          @Value("${juicestock.cache.name.maximum-size:10000}") long maximumSize,
+                          @Value("${juicestock.cache.name.expire-after-write:60s}") Duration expireAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    public JuiceDTO get(String name, Function<String, JuiceDTO> loader) {
+        return cache.get(name, loader);
+    }
+
+    public JuiceDTO getIfPresent(String name) {
+        return cache.getIfPresent(name);
+    }
+
+    public void invalidate(String name) {
+        cache.invalidate(name);
+    }
+
+    @Override
+    public void juiceSaved(StockChangeType type, JuiceDTO juiceDTO) {
+        invalidate(juiceDTO.getName());
+    }
+
+    @Override
+    public void juiceDeleted(Long id, String name) {
+        invalidate(name);
+    }
+}
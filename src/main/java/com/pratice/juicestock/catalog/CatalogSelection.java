@@ -0,0 +1,69 @@
+package com.pratice.juicestock.catalog;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.pratice.juicestock.dto.JuiceDTO;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Read-only view of some rows of a {@link CatalogSnapshot}. Elements are only turned into
+ * {@link JuiceDTO}s when {@link #get} is called; Jackson writes the rows straight from the
+ * snapshot columns, with the same fields as a list of {@link JuiceDTO}s.
+ */
+@JsonSerialize(using = CatalogSelection.Serializer.class)
+public final class CatalogSelection extends AbstractList<JuiceDTO> implements RandomAccess {
+
+    private final CatalogSnapshot snapshot;
+    private final int[] rows;
+
+    CatalogSelection(CatalogSnapshot snapshot, int[] rows) {
+        this.snapshot = snapshot;
+        this.rows = rows;
+    }
+
+    @Override
+    public JuiceDTO get(int index) {
+        return snapshot.get(rows[index]);
+    }
+
+    @Override
+    public int size() {
+        return rows.length;
+    }
+
+    static final class Serializer extends StdSerializer<CatalogSelection> {
+
+        Serializer() {
+            super(CatalogSelection.class);
+        }
+
+        @Override
+        public void serialize(CatalogSelection selection, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            CatalogSnapshot snapshot = selection.snapshot;
+            boolean writeEnumsUsingIndex = provider.isEnabled(SerializationFeature.WRITE_ENUMS_USING_INDEX);
+            generator.writeStartArray();
+            for (int row : selection.rows) {
+                generator.writeStartObject();
+                generator.writeNumberField("id", snapshot.id(row));
+                generator.writeStringField("name", snapshot.name(row));
+                generator.writeStringField("brand", snapshot.brand(row));
+                generator.writeNumberField("max", snapshot.max(row));
+                generator.writeNumberField("quantity", snapshot.quantity(row));
+                if (writeEnumsUsingIndex) {
+                    generator.writeNumberField("type", snapshot.type(row).ordinal());
+                } else {
+                    generator.writeStringField("type", snapshot.type(row).name());
+                }
+                generator.writeNumberField("version", snapshot.version(row));
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+    }
+}
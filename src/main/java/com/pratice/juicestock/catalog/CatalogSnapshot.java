@@ -0,0 +1,290 @@
+package com.pratice.juicestock.catalog;
+
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.dto.JuiceFilterDTO;
+import com.pratice.juicestock.enums.JuiceType;
+import org.springframework.data.domain.Sort;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Immutable, column-wise copy of every juice, ordered by id. Names and brands are stored as
+ * codes into one sorted dictionary, so comparing or sorting them compares ints. Changes are
+ * never applied in place: {@link #with} returns a new snapshot.
+ */
+final class CatalogSnapshot {
+
+    private static final JuiceType[] TYPES = JuiceType.values();
+
+    static final CatalogSnapshot EMPTY = new CatalogSnapshot(new long[0], new int[0], new int[0], new int[0],
+            new int[0], new byte[0], new long[0], new String[0]);
+
+    private final long[] ids;
+    private final int[] names;
+    private final int[] brands;
+    private final int[] maxes;
+    private final int[] quantities;
+    private final byte[] types;
+    private final long[] versions;
+    private final String[] dictionary;
+
+    private CatalogSnapshot(long[] ids, int[] names, int[] brands, int[] maxes, int[] quantities,
+                            byte[] types, long[] versions, String[] dictionary) {
+        this.ids = ids;
+        this.names = names;
+        this.brands = brands;
+        this.maxes = maxes;
+        this.quantities = quantities;
+        this.types = types;
+        this.versions = versions;
+        this.dictionary = dictionary;
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    /**
+     * Returns a snapshot with the given juices added or replaced and the given ids removed.
+     * A juice is only replaced by a newer version of itself.
+     */
+    CatalogSnapshot with(Collection<JuiceDTO> changes, Set<Long> removed) {
+        if (removed.isEmpty()) {
+            CatalogSnapshot stockOnly = withStock(changes);
+            if (stockOnly != null) {
+                return stockOnly;
+            }
+        }
+        Map<Long, JuiceDTO> changesById = new HashMap<>();
+        for (JuiceDTO change : changes) {
+            changesById.put(change.getId(), change);
+        }
+        JuiceDTO[] rows = new JuiceDTO[ids.length + changesById.size()];
+        int size = 0;
+        for (int row = 0; row < ids.length; row++) {
+            if (removed.contains(ids[row])) {
+                continue;
+            }
+            JuiceDTO change = changesById.remove(ids[row]);
+            rows[size++] = change != null && isNewer(change, versions[row]) ? change : get(row);
+        }
+        for (JuiceDTO change : changesById.values()) {
+            if (!removed.contains(change.getId())) {
+                rows[size++] = change;
+            }
+        }
+        return of(Arrays.asList(rows).subList(0, size));
+    }
+
+    /**
+     * Applies changes that only move the quantity of juices already in the snapshot by
+     * copying the quantity and version columns; every other column is shared.
+     * Returns {@code null} if any change does more than that.
+     */
+    private CatalogSnapshot withStock(Collection<JuiceDTO> changes) {
+        int[] changedQuantities = quantities.clone();
+        long[] changedVersions = versions.clone();
+        for (JuiceDTO change : changes) {
+            int row = Arrays.binarySearch(ids, change.getId());
+            if (row < 0
+                    || !change.getName().equals(dictionary[names[row]])
+                    || !change.getBrand().equals(dictionary[brands[row]])
+                    || change.getMax() != maxes[row]
+                    || change.getType().ordinal() != types[row]) {
+                return null;
+            }
+            if (isNewer(change, changedVersions[row])) {
+                changedQuantities[row] = change.getQuantity();
+                changedVersions[row] = change.getVersion() == null ? changedVersions[row] : change.getVersion();
+            }
+        }
+        return new CatalogSnapshot(ids, names, brands, maxes, changedQuantities, types, changedVersions, dictionary);
+    }
+
+    static CatalogSnapshot of(Collection<JuiceDTO> juices) {
+        JuiceDTO[] rows = juices.toArray(new JuiceDTO[0]);
+        Arrays.sort(rows, (first, second) -> Long.compare(first.getId(), second.getId()));
+        Set<String> words = new TreeSet<>();
+        for (JuiceDTO row : rows) {
+            words.add(row.getName());
+            words.add(row.getBrand());
+        }
+        String[] dictionary = words.toArray(new String[0]);
+        long[] ids = new long[rows.length];
+        int[] names = new int[rows.length];
+        int[] brands = new int[rows.length];
+        int[] maxes = new int[rows.length];
+        int[] quantities = new int[rows.length];
+        byte[] types = new byte[rows.length];
+        long[] versions = new long[rows.length];
+        for (int row = 0; row < rows.length; row++) {
+            ids[row] = rows[row].getId();
+            names[row] = Arrays.binarySearch(dictionary, rows[row].getName());
+            brands[row] = Arrays.binarySearch(dictionary, rows[row].getBrand());
+            maxes[row] = rows[row].getMax();
+            quantities[row] = rows[row].getQuantity();
+            types[row] = (byte) rows[row].getType().ordinal();
+            versions[row] = rows[row].getVersion() == null ? 0 : rows[row].getVersion();
+        }
+        return new CatalogSnapshot(ids, names, brands, maxes, quantities, types, versions, dictionary);
+    }
+
+    /**
+     * Returns the rows matching the filter in the given order, or {@code null} if the order
+     * is not a single property this snapshot can sort by.
+     */
+    int[] select(JuiceFilterDTO filter, Sort sort) {
+        SortKey sortKey = SortKey.of(sort);
+        if (sortKey == null) {
+            return null;
+        }
+        int brand = filter.getBrand() == null ? -1 : Arrays.binarySearch(dictionary, filter.getBrand());
+        if (filter.getBrand() != null && brand < 0) {
+            return new int[0];
+        }
+        int type = filter.getType() == null ? -1 : filter.getType().ordinal();
+        int minQuantity = filter.getMinQuantity() == null ? Integer.MIN_VALUE : filter.getMinQuantity();
+        int maxQuantity = filter.getMaxQuantity() == null ? Integer.MAX_VALUE : filter.getMaxQuantity();
+        int belowPercent = filter.getBelowPercent() == null ? -1 : filter.getBelowPercent();
+        int[] rows = new int[ids.length];
+        int size = 0;
+        for (int row = 0; row < ids.length; row++) {
+            if ((type < 0 || types[row] == type)
+                    && (brand < 0 || brands[row] == brand)
+                    && quantities[row] >= minQuantity
+                    && quantities[row] <= maxQuantity
+                    && (belowPercent < 0 || (long) quantities[row] * 100 < (long) maxes[row] * belowPercent)) {
+                rows[size++] = row;
+            }
+        }
+        return sortKey.sort(this, Arrays.copyOf(rows, size));
+    }
+
+    JuiceDTO get(int row) {
+        return new JuiceDTO(ids[row],
+                dictionary[names[row]],
+                dictionary[brands[row]],
+                maxes[row],
+                quantities[row],
+                TYPES[types[row]],
+                versions[row]);
+    }
+
+    long id(int row) {
+        return ids[row];
+    }
+
+    String name(int row) {
+        return dictionary[names[row]];
+    }
+
+    String brand(int row) {
+        return dictionary[brands[row]];
+    }
+
+    int max(int row) {
+        return maxes[row];
+    }
+
+    int quantity(int row) {
+        return quantities[row];
+    }
+
+    JuiceType type(int row) {
+        return TYPES[types[row]];
+    }
+
+    long version(int row) {
+        return versions[row];
+    }
+
+    private static boolean isNewer(JuiceDTO change, long version) {
+        return change.getVersion() == null || change.getVersion() > version;
+    }
+
+    /**
+     * Sorts rows by one int column. Each row becomes one long holding the column value (negated
+     * for a descending order) in the high half and the row in the low half, so a primitive
+     * sort orders by the column and breaks ties by id, the order rows are stored in.
+     */
+    private static final class SortKey {
+
+        private final String property;
+        private final boolean descending;
+
+        private SortKey(String property, boolean descending) {
+            this.property = property;
+            this.descending = descending;
+        }
+
+        private static SortKey of(Sort sort) {
+            Sort.Order order = null;
+            for (Sort.Order candidate : sort) {
+                if (order == null) {
+                    order = candidate;
+                } else if (!"id".equals(candidate.getProperty()) || candidate.isDescending()) {
+                    return null;
+                }
+            }
+            if (order == null) {
+                return new SortKey("id", false);
+            }
+            switch (order.getProperty()) {
+                case "id":
+                case "name":
+                case "brand":
+                case "type":
+                case "max":
+                case "quantity":
+                    return new SortKey(order.getProperty(), order.isDescending());
+                default:
+                    return null;
+            }
+        }
+
+        private int[] sort(CatalogSnapshot snapshot, int[] rows) {
+            if ("id".equals(property)) {
+                return descending ? reverse(rows) : rows;
+            }
+            long[] keys = new long[rows.length];
+            for (int i = 0; i < rows.length; i++) {
+                long value = value(snapshot, rows[i]);
+                keys[i] = (descending ? -value : value) << 32 | rows[i];
+            }
+            Arrays.sort(keys);
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = (int) keys[i];
+            }
+            return rows;
+        }
+
+        private int value(CatalogSnapshot snapshot, int row) {
+            switch (property) {
+                case "name":
+                    return snapshot.names[row];
+                case "brand":
+                    return snapshot.brands[row];
+                case "type":
+                    return snapshot.types[row];
+                case "max":
+                    return snapshot.maxes[row];
+                default:
+                    return snapshot.quantities[row];
+            }
+        }
+
+        private static int[] reverse(int[] rows) {
+            for (int i = 0, j = rows.length - 1; i < j; i++, j--) {
+                int row = rows[i];
+                rows[i] = rows[j];
+                rows[j] = row;
+            }
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.pratice.juicestock.catalog;
+
+/**
+ * Version of the whole catalog and the time of the write that produced it. Versions start
+ * from the boot time in microseconds and grow by one per write, so they keep increasing
+ * across restarts and an entity tag issued before a restart never matches after it.
+ * <p>
+ * The entity tag is weak: the same listing is negotiated as JSON, Smile, CBOR or Protobuf,
+ * which are equivalent but not byte-identical, and Tomcat only compresses responses whose
+ * entity tag is weak.
+ */
+public final class CatalogVersion {
+
+    private final long version;
+    private final long lastModified;
+
+    public CatalogVersion(long version, long lastModified) {
+        this.version = version;
+        this.lastModified = lastModified;
+    }
+
+    static CatalogVersion initial(long now) {
+        return new CatalogVersion(now * 1000, now);
+    }
+
+    CatalogVersion next(long now) {
+        return new CatalogVersion(version + 1, Math.max(lastModified, now));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public String eTag() {
+        return "W/\"" + version + "\"";
+    }
+}
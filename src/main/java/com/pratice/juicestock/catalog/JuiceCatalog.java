@@ -0,0 +1,163 @@
+package com.pratice.juicestock.catalog;
+
+import com.pratice.juicestock.changes.JuiceChangeListener;
+import com.pratice.juicestock.changes.Tombstones;
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.dto.JuiceFilterDTO;
+import com.pratice.juicestock.enums.StockChangeType;
+import com.pratice.juicestock.repository.JuiceRepository;
+import com.pratice.juicestock.stock.StockEngine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Read-mostly copy of the catalog that serves filtered listings without going to the
+ * {@code juice} table. Writes only record the juice they produced; the next read folds the
+ * recorded juices into a new {@link CatalogSnapshot} and every read after that scans it
+ * without taking a lock. A deleted juice is remembered, so a write finishing after the delete
+ * cannot put it back, for as long as {@link Tombstones} says such a write can arrive. Disabled with {@code juicestock.catalog.enabled=false}.
+ * Every write also moves the {@link CatalogVersion}, which is kept even when disabled.
+ */
+@Component
+public class JuiceCatalog implements SmartLifecycle, JuiceChangeListener {
+
+    private final JuiceRepository juiceRepository;
+    private final StockEngine stockEngine;
+    private final boolean enabled;
+    private final Map<Long, JuiceDTO> changes = new HashMap<>();
+    private final Set<Long> removed = new HashSet<>();
+    private final Set<Long> deleted = new HashSet<>();
+    private final Tombstones tombstones;
+    private volatile CatalogSnapshot snapshot = CatalogSnapshot.EMPTY;
+    private volatile CatalogVersion version = CatalogVersion.initial(System.currentTimeMillis());
+    private volatile boolean dirty;
+    private volatile boolean running;
+
+    @Autowired
+    public JuiceCatalog(JuiceRepository juiceRepository,
+                        StockEngine stockEngine,
+                        @Value("${juicestock.catalog.enabled:true}") boolean enabled,
+                        @Value("${juicestock.changes.tombstone-ttl:1m}") Duration tombstoneTtl) {
+        this.juiceRepository = juiceRepository;
+        this.stockEngine = stockEngine;
+        this.enabled = enabled;
+        this.tombstones = new Tombstones(tombstoneTtl);
+    }
+
+    public synchronized void update(JuiceDTO juiceDTO) {
+        if (deleted.contains(juiceDTO.getId())) {
+            return;
+        }
+        version = version.next(System.currentTimeMillis());
+        if (!enabled) {
+            return;
+        }
+        JuiceDTO current = changes.get(juiceDTO.getId());
+        if (current == null || current.getVersion() == null || juiceDTO.getVersion() == null
+                || juiceDTO.getVersion() > current.getVersion()) {
+            changes.put(juiceDTO.getId(), juiceDTO);
+            dirty = true;
+        }
+    }
+
+    public synchronized void remove(Long id) {
+        version = version.next(System.currentTimeMillis());
+        if (!enabled) {
+            return;
+        }
+        changes.remove(id);
+        removed.add(id);
+        deleted.add(id);
+        tombstones.lay(id, deleted::remove);
+        dirty = true;
+    }
+
+    @Override
+    public void juiceSaved(StockChangeType type, JuiceDTO juiceDTO) {
+        update(juiceDTO);
+    }
+
+    @Override
+    public void juiceDeleted(Long id, String name) {
+        remove(id);
+    }
+
+    public CatalogVersion version() {
+        return version;
+    }
+
+    /**
+     * Returns the juices matching the filter in the given order, or {@code null} if the
+     * catalog is not loaded or cannot sort that way, in which case the caller reads the table.
+     */
+    public List<JuiceDTO> select(JuiceFilterDTO filter, Sort sort) {
+        if (!running) {
+            return null;
+        }
+        CatalogSnapshot current = snapshot();
+        int[] rows = current.select(filter, sort);
+        return rows == null ? null : new CatalogSelection(current, rows);
+    }
+
+    CatalogSnapshot snapshot() {
+        if (dirty) {
+            synchronized (this) {
+                if (dirty) {
+                    snapshot = snapshot.with(changes.values(), removed);
+                    changes.clear();
+                    removed.clear();
+                    dirty = false;
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Loads the table into the first snapshot. Juices written while loading are already
+     * recorded and win over the loaded copy when they are newer.
+     */
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        List<JuiceDTO> juices = juiceRepository.findAllJuiceDTOs()
+                .stream()
+                .map(stockEngine::overlay)
+                .collect(Collectors.toList());
+        synchronized (this) {
+            snapshot = CatalogSnapshot.of(juices.stream()
+                    .filter(juiceDTO -> !deleted.contains(juiceDTO.getId()))
+                    .collect(Collectors.toList()));
+            dirty = true;
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+}
@@ -0,0 +1,17 @@
+package com.pratice.juicestock.changes;
+
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.enums.StockChangeType;
+
+/**
+ * Follows the juices written through {@code JuiceService}. Each change is delivered once it
+ * is committed, by {@link JuiceChangePublisher}, but concurrent changes can arrive out of
+ * order: a listener keeps the newest version it saw of each juice and never brings a deleted
+ * one back.
+ */
+public interface JuiceChangeListener {
+
+    void juiceSaved(StockChangeType type, JuiceDTO juiceDTO);
+
+    void juiceDeleted(Long id, String name);
+}
@@ -0,0 +1,60 @@
+package com.pratice.juicestock.changes;
+
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.enums.StockChangeType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hands every juice change to all the {@link JuiceChangeListener}s, after the transaction it
+ * was made in commits, or right away when there is none. A listener that fails is logged and
+ * does not keep the change from the others.
+ */
+@Slf4j
+@Component
+public class JuiceChangePublisher {
+
+    private final List<JuiceChangeListener> listeners;
+
+    @Autowired
+    public JuiceChangePublisher(List<JuiceChangeListener> listeners) {
+        this.listeners = listeners;
+    }
+
+    public void saved(StockChangeType type, JuiceDTO juiceDTO) {
+        afterCommit(listener -> listener.juiceSaved(type, juiceDTO));
+    }
+
+    public void deleted(Long id, String name) {
+        afterCommit(listener -> listener.juiceDeleted(id, name));
+    }
+
+    private void afterCommit(Consumer<JuiceChangeListener> change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            deliver(change);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                deliver(change);
+            }
+        });
+    }
+
+    private void deliver(Consumer<JuiceChangeListener> change) {
+        for (JuiceChangeListener listener : listeners) {
+            try {
+                change.accept(listener);
+            } catch (RuntimeException e) {
+                log.error("{} could not follow a juice change", listener.getClass().getSimpleName(), e);
+            }
+        }
+    }
+}
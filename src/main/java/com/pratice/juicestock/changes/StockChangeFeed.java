@@ -0,0 +1,245 @@
+package com.pratice.juicestock.changes;
+
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.dto.StockChangeDTO;
+import com.pratice.juicestock.enums.StockChangeType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fans the committed stock changes made through {@code JuiceService} out to Server-Sent Events
+ * subscribers. Every change gets the next sequence number and is written, without locking,
+ * to a ring holding the last {@code juicestock.changes.capacity} changes. Each subscriber
+ * reads the ring on its own from the sequence after the last one it received, on a pool of
+ * {@code juicestock.changes.delivery-threads} threads, so a slow subscriber never holds up a
+ * write or another subscriber.
+ * <p>
+ * A subscriber that falls more than {@code juicestock.changes.max-lag} changes behind is
+ * either disconnected ({@code disconnect}, the default) or skips to the latest
+ * {@code max-lag} changes ({@code drop}); either way it sees a gap in the sequence and should
+ * reload the juices it tracks.
+ * <p>
+ * As with {@code CatalogVersion}, sequences start from the boot time in microseconds, so they
+ * keep increasing across restarts: a subscriber resuming after a restart sees the jump to the
+ * new boot's sequences as a gap, and an id from before the restart never names a new change.
+ */
+@Component
+public class StockChangeFeed implements JuiceChangeListener {
+
+    public static final String SUBSCRIBERS_GAUGE = "juicestock.changes.subscribers";
+    public static final String SLOW_SUBSCRIBER_COUNTER = "juicestock.changes.slow.subscribers";
+
+    private final AtomicReferenceArray<StockChangeDTO> ring;
+    private final int mask;
+    private final int maxLag;
+    private final SlowSubscriberPolicy slowSubscriberPolicy;
+    private final Duration timeout;
+    private final Executor executor;
+    private final Counter slowSubscriberCounter;
+    private final long epoch;
+    private final AtomicLong sequence;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public StockChangeFeed(MeterRegistry meterRegistry,
+                           @Value("${juicestock.changes.capacity:1024}") int capacity,
+                           @Value("${juicestock.changes.max-lag:256}") int maxLag,
+                           @Value("${juicestock.changes.slow-subscriber-policy:disconnect}") SlowSubscriberPolicy slowSubscriberPolicy,
+                           @Value("${juicestock.changes.timeout:30m}") Duration timeout,
+                           @Value("${juicestock.changes.delivery-threads:4}") int deliveryThreads) {
+        this(meterRegistry, capacity, maxLag, slowSubscriberPolicy, timeout, newPool(deliveryThreads),
+                System.currentTimeMillis() * 1000);
+    }
+
+    /**
+     * Creates a feed whose first change gets the sequence after {@code epoch}.
+     */
+    public StockChangeFeed(MeterRegistry meterRegistry, int capacity, int maxLag,
+                           SlowSubscriberPolicy slowSubscriberPolicy, Duration timeout, Executor executor, long epoch) {
+        int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.maxLag = Math.max(1, Math.min(maxLag, size));
+        this.slowSubscriberPolicy = slowSubscriberPolicy;
+        this.timeout = timeout;
+        this.executor = executor;
+        this.epoch = epoch;
+        this.sequence = new AtomicLong(epoch);
+        this.slowSubscriberCounter = Counter.builder(SLOW_SUBSCRIBER_COUNTER)
+                .description("Subscribers that fell too far behind the stock changes")
+                .tag("policy", slowSubscriberPolicy.name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry);
+        Gauge.builder(SUBSCRIBERS_GAUGE, this, feed -> feed.subscribers.size())
+                .description("Subscribers of the stock change stream")
+                .register(meterRegistry);
+    }
+
+    public void publish(StockChangeType type, Long id, JuiceDTO juiceDTO) {
+        long next = sequence.incrementAndGet();
+        ring.set(index(next), new StockChangeDTO(next, type, id, juiceDTO));
+        subscribers.forEach(Subscriber::schedule);
+    }
+
+    @Override
+    public void juiceSaved(StockChangeType type, JuiceDTO juiceDTO) {
+        publish(type, juiceDTO.getId(), juiceDTO);
+    }
+
+    @Override
+    public void juiceDeleted(Long id, String name) {
+        publish(StockChangeType.DELETED, id, null);
+    }
+
+    /**
+     * Subscribes to the changes after {@code lastEventId}, or to the changes from now on if it
+     * is {@code null}. Changes that are no longer kept are skipped.
+     */
+    public SseEmitter subscribe(Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        long published = sequence.get();
+        long next = published + 1;
+        if (lastEventId != null) {
+            next = Math.min(next, Math.max(lastEventId + 1, Math.max(epoch + 1, published - maxLag + 1)));
+        }
+        Subscriber subscriber = new Subscriber(emitter, next);
+        emitter.onCompletion(subscriber::closed);
+        subscribers.add(subscriber);
+        subscriber.schedule();
+        return emitter;
+    }
+
+    private int index(long sequence) {
+        return (int) sequence & mask;
+    }
+
+    private static ExecutorService newPool(int deliveryThreads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(deliveryThreads, deliveryThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "juice-changes-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        subscribers.forEach(Subscriber::disconnect);
+        if (executor instanceof ExecutorService) {
+            ExecutorService executorService = (ExecutorService) executor;
+            executorService.shutdown();
+            executorService.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    public enum SlowSubscriberPolicy {
+
+        DISCONNECT,
+        DROP
+    }
+
+    /**
+     * One delivery task per subscriber is queued at most, so the pool queue is bounded by the
+     * number of subscribers. Only that task touches {@code next}.
+     */
+    private final class Subscriber implements Runnable {
+
+        private final SseEmitter emitter;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean closed;
+        private long next;
+
+        private Subscriber(SseEmitter emitter, long next) {
+            this.emitter = emitter;
+            this.next = next;
+        }
+
+        private void schedule() {
+            if (!closed && scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    disconnect();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                deliver();
+            } catch (IOException | IllegalStateException e) {
+                closed();
+            } finally {
+                scheduled.set(false);
+            }
+            if (isPublished(next)) {
+                schedule();
+            }
+        }
+
+        private void deliver() throws IOException {
+            while (!closed) {
+                long published = sequence.get();
+                if (published - next >= maxLag) {
+                    slowSubscriberCounter.increment();
+                    if (slowSubscriberPolicy == SlowSubscriberPolicy.DISCONNECT) {
+                        disconnect();
+                        return;
+                    }
+                    next = published - maxLag + 1;
+                }
+                StockChangeDTO change = ring.get(index(next));
+                if (change == null || change.getSequence() < next) {
+                    return;
+                }
+                if (change.getSequence() == next) {
+                    emitter.send(SseEmitter.event()
+                            .id(String.valueOf(next))
+                            .name(change.getType().name())
+                            .data(change, MediaType.APPLICATION_JSON));
+                    next++;
+                }
+            }
+        }
+
+        private boolean isPublished(long sequence) {
+            StockChangeDTO change = ring.get(index(sequence));
+            return change != null && change.getSequence() >= sequence;
+        }
+
+        private void disconnect() {
+            closed();
+            emitter.complete();
+        }
+
+        private void closed() {
+            closed = true;
+            subscribers.remove(this);
+        }
+    }
+}
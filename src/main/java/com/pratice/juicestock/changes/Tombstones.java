@@ -0,0 +1,60 @@
+package com.pratice.juicestock.changes;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps the ids of deleted juices for as long as a change made before the delete can still be
+ * delivered after it. Changes are handed to the listeners right after their transaction commits,
+ * so once a tombstone is older than {@code juicestock.changes.tombstone-ttl} no late change of
+ * that juice is expected and the listener can forget it. Tombstones are kept in the order they
+ * were laid, and the expired ones are handed back each time a new one is laid, so a listener
+ * holds at most the tombstones of the deletes of one ttl.
+ */
+public class Tombstones {
+
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final Queue<Tombstone> tombstones = new ArrayDeque<>();
+
+    public Tombstones(Duration ttl) {
+        this(ttl, System::nanoTime);
+    }
+
+    public Tombstones(Duration ttl, LongSupplier clock) {
+        this.ttlNanos = ttl.toNanos();
+        this.clock = clock;
+    }
+
+    /**
+     * Records the tombstone of {@code id} and hands the id of every expired tombstone to
+     * {@code expire}, which is expected to drop it.
+     */
+    public synchronized void lay(Long id, Consumer<Long> expire) {
+        long now = clock.getAsLong();
+        Tombstone oldest;
+        while ((oldest = tombstones.peek()) != null && now - oldest.laidAt >= ttlNanos) {
+            tombstones.remove();
+            expire.accept(oldest.id);
+        }
+        tombstones.add(new Tombstone(id, now));
+    }
+
+    public synchronized int size() {
+        return tombstones.size();
+    }
+
+    private static final class Tombstone {
+
+        private final Long id;
+        private final long laidAt;
+
+        private Tombstone(Long id, long laidAt) {
+            this.id = id;
+            this.laidAt = laidAt;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.pratice.juicestock.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.pratice.juicestock.entity.Juice;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import java.time.Duration;
+import java.util.OptionalLong;
+
+/**
+ * Hands Hibernate an in-process Caffeine JCache manager holding the second-level cache regions
+ * of {@link Juice}, each bounded to {@code juicestock.cache.second-level.maximum-size} entries
+ * kept for {@code juicestock.cache.second-level.expire-after-write}. Each application context
+ * gets its own manager, and Hibernate fails to start if an entity asks for a region missing here.
+ */
+@Configuration
+public class HibernateCacheConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(@Value("${juicestock.cache.second-level.maximum-size:10000}") long maximumSize,
+                                                                    @Value("${juicestock.cache.second-level.expire-after-write:10m}") Duration expireAfterWrite) {
+        CacheManager cacheManager = new CaffeineCachingProvider().getCacheManager();
+        cacheManager.createCache(Juice.CACHE_REGION, region(maximumSize, expireAfterWrite));
+        cacheManager.createCache(Juice.NATURAL_ID_CACHE_REGION, region(maximumSize, expireAfterWrite));
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+    }
+
+    private static CaffeineConfiguration<Object, Object> region(long maximumSize, Duration expireAfterWrite) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setStoreByValue(false);
+        configuration.setMaximumSize(OptionalLong.of(maximumSize));
+        configuration.setExpireAfterWrite(OptionalLong.of(expireAfterWrite.toNanos()));
+        return configuration;
+    }
+}
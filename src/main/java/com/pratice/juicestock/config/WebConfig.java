@@ -0,0 +1,49 @@
+package com.pratice.juicestock.config;
+
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.pratice.juicestock.limit.RateLimitInterceptor;
+import com.pratice.juicestock.protobuf.JuiceProtobufHttpMessageConverter;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Besides JSON, payloads are negotiated by {@code Accept} as Smile, CBOR or, for juices,
+ * Protobuf. The binary Jackson formats write enums as ordinals; the Jackson defaults for
+ * them are replaced so they share the application's other Jackson settings. They come after
+ * JSON, so clients that do not ask for a format keep getting JSON.
+ */
+@Configuration
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class WebConfig implements WebMvcConfigurer {
+
+    private static final String API_PATH_PATTERN = "/api/**";
+
+    private final RateLimitInterceptor rateLimitInterceptor;
+    private final Jackson2ObjectMapperBuilder objectMapperBuilder;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(rateLimitInterceptor).addPathPatterns(API_PATH_PATTERN);
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.removeIf(converter -> converter instanceof MappingJackson2SmileHttpMessageConverter
+                || converter instanceof MappingJackson2CborHttpMessageConverter);
+        objectMapperBuilder.featuresToEnable(SerializationFeature.WRITE_ENUMS_USING_INDEX);
+        converters.add(new MappingJackson2SmileHttpMessageConverter(objectMapperBuilder.factory(new SmileFactory()).build()));
+        converters.add(new MappingJackson2CborHttpMessageConverter(objectMapperBuilder.factory(new CBORFactory()).build()));
+        converters.add(new JuiceProtobufHttpMessageConverter());
+    }
+}
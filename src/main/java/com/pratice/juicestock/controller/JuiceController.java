@@ -1,17 +1,54 @@
 package com.pratice.juicestock.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.pratice.juicestock.bulk.JuiceCsv;
+import com.pratice.juicestock.bulk.JuiceImporter;
+import com.pratice.juicestock.cache.IdempotencyCache;
+import com.pratice.juicestock.catalog.CatalogVersion;
+import com.pratice.juicestock.changes.StockChangeFeed;
 import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.dto.JuiceFilterDTO;
+import com.pratice.juicestock.dto.JuiceImportResultDTO;
+import com.pratice.juicestock.dto.JuicePageDTO;
+import com.pratice.juicestock.dto.JuiceSuggestionDTO;
 import com.pratice.juicestock.dto.QuantityDTO;
+import com.pratice.juicestock.dto.StockAdjustmentBatchDTO;
+import com.pratice.juicestock.dto.StockAdjustmentResultDTO;
+import com.pratice.juicestock.dto.StockStatisticsDTO;
+import com.pratice.juicestock.exception.IdempotencyKeyReusedException;
+import com.pratice.juicestock.exception.InvalidCursorException;
+import com.pratice.juicestock.exception.InvalidImportException;
+import com.pratice.juicestock.exception.InvalidSortException;
 import com.pratice.juicestock.exception.JuiceAlreadyRegisteredException;
 import com.pratice.juicestock.exception.JuiceNotFoundException;
-import com.pratice.juicestock.exception.JuiceStockExceededException;
+import com.pratice.juicestock.limit.ClientIdentity;
 import com.pratice.juicestock.service.JuiceService;
 import lombok.AllArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 @RestController
@@ -19,22 +56,123 @@ import java.util.List;
 @AllArgsConstructor(onConstructor = @__(@Autowired))
 public class JuiceController implements JuiceControllerDocs {
 
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    private static final Long UNMATCHABLE_VERSION = -1L;
+    private static final String LAST_EVENT_ID = "Last-Event-ID";
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
     private final JuiceService juiceService;
+    private final ObjectMapper objectMapper;
+    private final StockChangeFeed stockChangeFeed;
+    private final JuiceImporter juiceImporter;
+    private final IdempotencyCache idempotencyCache;
+    private final ClientIdentity clientIdentity;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
-    public JuiceDTO createJuice(@RequestBody @Valid JuiceDTO juiceDTO) throws JuiceAlreadyRegisteredException {
-        return juiceService.createJuice(juiceDTO);
+    public JuiceDTO createJuice(@RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                @RequestBody @Valid JuiceDTO juiceDTO,
+                                HttpServletRequest request) throws JuiceAlreadyRegisteredException, IdempotencyKeyReusedException {
+        return idempotencyCache.execute(clientIdentity.of(request), idempotencyKey, "POST " + juiceDTO,
+                () -> juiceService.createJuice(juiceDTO));
+    }
+
+    @GetMapping("/stats")
+    public StockStatisticsDTO statistics() {
+        return juiceService.statistics();
+    }
+
+    @GetMapping("/search")
+    public List<JuiceSuggestionDTO> search(@RequestParam String q, @RequestParam(defaultValue = "10") int limit) {
+        return juiceService.search(q, limit);
+    }
+
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter changes(@RequestHeader(value = LAST_EVENT_ID, required = false) Long lastEventId,
+                              @RequestParam(required = false) Long since) {
+        return stockChangeFeed.subscribe(lastEventId != null ? lastEventId : since);
     }
 
+    /**
+     * Answers a conditional lookup of a cached juice without reading the database; the entity
+     * tag is compared, and a 304 sent, when the response entity is handled.
+     */
     @GetMapping("/{name}")
-    public JuiceDTO findByName(@PathVariable String name) throws JuiceNotFoundException {
-        return juiceService.findByName(name);
+    public ResponseEntity<JuiceDTO> findByName(@PathVariable String name, WebRequest webRequest) throws JuiceNotFoundException {
+        long lastModified = juiceService.catalogVersion().getLastModified();
+        if (webRequest.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            JuiceDTO cachedJuiceDTO = juiceService.findCachedByName(name);
+            if (cachedJuiceDTO != null) {
+                return withETag(cachedJuiceDTO, lastModified);
+            }
+        }
+        return withETag(juiceService.findByName(name), lastModified);
     }
 
+    /**
+     * Tags the listing with the catalog version read before it is built, so a poll that
+     * already has it gets a 304 before the juices are read. The tag is the same for every
+     * media type, so caches are told to keep one entry per {@code Accept}.
+     */
     @GetMapping
-    public List<JuiceDTO> listJuices() {
-        return juiceService.listAll();
+    public List<JuiceDTO> listJuices(@Valid JuiceFilterDTO juiceFilterDTO, Sort sort, WebRequest webRequest,
+                                     HttpServletResponse response) throws InvalidSortException {
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        CatalogVersion catalogVersion = juiceService.catalogVersion();
+        if (webRequest.checkNotModified(catalogVersion.eTag(), catalogVersion.getLastModified())) {
+            return null;
+        }
+        return juiceService.listAll(juiceFilterDTO, sort);
+    }
+
+    @GetMapping(params = "limit")
+    public JuicePageDTO listJuicesPage(@RequestParam(required = false) String cursor, @RequestParam int limit) throws InvalidCursorException {
+        return juiceService.listPage(cursor, limit);
+    }
+
+    @GetMapping(produces = APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamJuices() {
+        return outputStream -> {
+            try (SequenceWriter sequenceWriter = objectMapper.writer()
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                    .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .withRootValueSeparator("\n")
+                    .writeValues(outputStream)) {
+                juiceService.streamAll(juiceDTO -> {
+                    try {
+                        sequenceWriter.write(juiceDTO);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+    }
+
+    @GetMapping(produces = JuiceCsv.MEDIA_TYPE)
+    public StreamingResponseBody streamJuicesAsCsv() {
+        return outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            JuiceCsv.writeHeader(writer);
+            juiceService.streamAll(juiceDTO -> {
+                try {
+                    JuiceCsv.write(writer, juiceDTO);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+        };
+    }
+
+    @PostMapping(value = "/import", consumes = APPLICATION_NDJSON_VALUE)
+    public JuiceImportResultDTO importJuices(InputStream inputStream) throws IOException {
+        return juiceImporter.importNdjson(inputStream);
+    }
+
+    @PostMapping(value = "/import", consumes = JuiceCsv.MEDIA_TYPE)
+    public JuiceImportResultDTO importJuicesFromCsv(InputStream inputStream) throws IOException, InvalidImportException {
+        return juiceImporter.importCsv(inputStream);
     }
 
     @DeleteMapping("/{id}")
@@ -44,7 +182,78 @@ public class JuiceController implements JuiceControllerDocs {
     }
 
     @PatchMapping("/{id}/increment")
-    public JuiceDTO increment(@PathVariable Long id, @RequestBody @Valid QuantityDTO quantityDTO) throws JuiceNotFoundException, JuiceStockExceededException {
-        return juiceService.increment(id, quantityDTO.getQuantity());
+    public ResponseEntity<JuiceDTO> increment(@PathVariable Long id,
+                                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                              @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                              @RequestBody @Valid QuantityDTO quantityDTO,
+                                              HttpServletRequest request) throws Exception {
+        Long expectedVersion = expectedVersion(ifMatch);
+        return idempotencyCache.execute(clientIdentity.of(request), idempotencyKey, "PATCH " + id + "/increment " + expectedVersion + " " + quantityDTO,
+                () -> withETag(juiceService.increment(id, quantityDTO.getQuantity(), expectedVersion)));
+    }
+
+    @PatchMapping("/{id}/decrement")
+    public ResponseEntity<JuiceDTO> decrement(@PathVariable Long id,
+                                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                              @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                              @RequestBody @Valid QuantityDTO quantityDTO,
+                                              HttpServletRequest request) throws Exception {
+        Long expectedVersion = expectedVersion(ifMatch);
+        return idempotencyCache.execute(clientIdentity.of(request), idempotencyKey, "PATCH " + id + "/decrement " + expectedVersion + " " + quantityDTO,
+                () -> withETag(juiceService.decrement(id, quantityDTO.getQuantity(), expectedVersion)));
+    }
+
+    @PostMapping("/stock-adjustments")
+    public List<StockAdjustmentResultDTO> adjustStock(@RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                                      @RequestBody @Valid StockAdjustmentBatchDTO stockAdjustmentBatchDTO,
+                                                      HttpServletRequest request) throws IdempotencyKeyReusedException {
+        return idempotencyCache.execute(clientIdentity.of(request), idempotencyKey, "POST /stock-adjustments " + stockAdjustmentBatchDTO,
+                () -> juiceService.adjustStock(stockAdjustmentBatchDTO.getAdjustments()));
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public void conflict() {
+    }
+
+    private static ResponseEntity<JuiceDTO> withETag(JuiceDTO juiceDTO) {
+        return ResponseEntity.ok()
+                .eTag(String.valueOf(juiceDTO.getVersion()))
+                .body(juiceDTO);
+    }
+
+    /**
+     * Tags a lookup weakly with the juice version: it is negotiated in several media types,
+     * and {@link #expectedVersion} accepts the weak tag back in {@code If-Match}.
+     */
+    private static ResponseEntity<JuiceDTO> withETag(JuiceDTO juiceDTO, long lastModified) {
+        return ResponseEntity.ok()
+                .eTag("W/\"" + juiceDTO.getVersion() + "\"")
+                .varyBy(HttpHeaders.ACCEPT)
+                .lastModified(lastModified)
+                .body(juiceDTO);
+    }
+
+    /**
+     * Reads the version a conditional stock change expects from its {@code If-Match} header:
+     * no header or {@code *} means any version, and a value that is not a version this API
+     * issued can never match.
+     */
+    private static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String eTag = ifMatch.trim();
+        if (eTag.startsWith("W/")) {
+            eTag = eTag.substring(2);
+        }
+        if (eTag.length() < 2 || !eTag.startsWith("\"") || !eTag.endsWith("\"")) {
+            return UNMATCHABLE_VERSION;
+        }
+        try {
+            return Long.valueOf(eTag.substring(1, eTag.length() - 1));
+        } catch (NumberFormatException e) {
+            return UNMATCHABLE_VERSION;
+        }
     }
 }
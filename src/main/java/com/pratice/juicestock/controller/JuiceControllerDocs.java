@@ -1,14 +1,35 @@
 package com.pratice.juicestock.controller;
 
 import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.dto.JuiceFilterDTO;
+import com.pratice.juicestock.dto.JuiceImportResultDTO;
+import com.pratice.juicestock.dto.JuicePageDTO;
+import com.pratice.juicestock.dto.JuiceSuggestionDTO;
+import com.pratice.juicestock.dto.QuantityDTO;
+import com.pratice.juicestock.dto.StockAdjustmentBatchDTO;
+import com.pratice.juicestock.dto.StockAdjustmentResultDTO;
+import com.pratice.juicestock.dto.StockStatisticsDTO;
+import com.pratice.juicestock.exception.IdempotencyKeyReusedException;
+import com.pratice.juicestock.exception.InvalidCursorException;
+import com.pratice.juicestock.exception.InvalidImportException;
+import com.pratice.juicestock.exception.InvalidSortException;
 import com.pratice.juicestock.exception.JuiceAlreadyRegisteredException;
 import com.pratice.juicestock.exception.JuiceNotFoundException;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @Api("Manages juice stock")
@@ -17,22 +38,76 @@ public interface JuiceControllerDocs {
     @ApiOperation(value = "Juice creation operation")
     @ApiResponses(value = {
             @ApiResponse(code = 201, message = "Success juice creation"),
-            @ApiResponse(code = 400, message = "Missing required fields or wrong field range value.")
+            @ApiResponse(code = 400, message = "Missing required fields or wrong field range value."),
+            @ApiResponse(code = 422, message = "Idempotency-Key already used for a different request.")
     })
-    JuiceDTO createJuice(JuiceDTO juiceDTO) throws JuiceAlreadyRegisteredException;
+    JuiceDTO createJuice(String idempotencyKey, JuiceDTO juiceDTO, HttpServletRequest request) throws JuiceAlreadyRegisteredException, IdempotencyKeyReusedException;
+
+    @ApiOperation(value = "Returns the stock totals, fill ratio and low stock count per juice type and per brand")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Stock statistics of all juices registered in the system")
+    })
+    StockStatisticsDTO statistics();
+
+    @ApiOperation(value = "Returns the juices with a name, or else a brand, having a word that starts with the query, ignoring case and accents")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Up to limit juices, name matches first")
+    })
+    List<JuiceSuggestionDTO> search(String q, int limit);
+
+    @ApiOperation(value = "Streams stock changes as Server-Sent Events, resuming after the Last-Event-ID header or the since parameter")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "One event per change, with its sequence as id; a gap in the sequence means changes were skipped")
+    })
+    SseEmitter changes(Long lastEventId, Long since);
 
     @ApiOperation(value = "Returns juice found by a given name")
     @ApiResponses(value = {
-            @ApiResponse(code = 200, message = "Success juice found in the system"),
+            @ApiResponse(code = 200, message = "Success juice found in the system, with its version as ETag"),
+            @ApiResponse(code = 304, message = "Juice is still at the version given in If-None-Match."),
             @ApiResponse(code = 404, message = "Juice with given name not found.")
     })
-    JuiceDTO findByName(@PathVariable String name) throws JuiceNotFoundException;
+    ResponseEntity<JuiceDTO> findByName(@PathVariable String name, WebRequest webRequest) throws JuiceNotFoundException;
+
+    @ApiOperation(value = "Returns the juices matching the given type, brand, quantity range and fill level, sorted by the given properties")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "List of the matching juices registered in the system, with the catalog version as ETag"),
+            @ApiResponse(code = 304, message = "Catalog is still at the version given in If-None-Match."),
+            @ApiResponse(code = 400, message = "Filter out of range or sort property not supported.")
+    })
+    List<JuiceDTO> listJuices(JuiceFilterDTO juiceFilterDTO, Sort sort, WebRequest webRequest, HttpServletResponse response) throws InvalidSortException;
+
+    @ApiOperation(value = "Returns a page of juices ordered by id, starting after the given cursor")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Page of juices and the cursor of the next page, if any"),
+            @ApiResponse(code = 400, message = "Cursor informed is not valid.")
+    })
+    JuicePageDTO listJuicesPage(String cursor, int limit) throws InvalidCursorException;
 
-    @ApiOperation(value = "Returns a list of all juices registered in the system")
+    @ApiOperation(value = "Streams all juices registered in the system as newline delimited JSON")
     @ApiResponses(value = {
-            @ApiResponse(code = 200, message = "List of all juices registered in the system")
+            @ApiResponse(code = 200, message = "One juice per line, ordered by id")
     })
-    List<JuiceDTO> listJuices();
+    StreamingResponseBody streamJuices();
+
+    @ApiOperation(value = "Streams all juices registered in the system as CSV with a header row")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "One juice per row, ordered by id")
+    })
+    StreamingResponseBody streamJuicesAsCsv();
+
+    @ApiOperation(value = "Registers the juices of a newline delimited JSON body, one juice per line")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Number of juices registered and the error of each line that was not")
+    })
+    JuiceImportResultDTO importJuices(InputStream inputStream) throws IOException;
+
+    @ApiOperation(value = "Registers the juices of a CSV body with a name, brand, max, quantity and type header row")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Number of juices registered and the error of each row that was not"),
+            @ApiResponse(code = 400, message = "Header row missing or without a required column.")
+    })
+    JuiceImportResultDTO importJuicesFromCsv(InputStream inputStream) throws IOException, InvalidImportException;
 
     @ApiOperation(value = "Delete a juice found by a given valid Id")
     @ApiResponses(value = {
@@ -40,4 +115,23 @@ public interface JuiceControllerDocs {
             @ApiResponse(code = 404, message = "Juice with given id not found.")
     })
     void deleteById(@PathVariable Long id) throws JuiceNotFoundException;
+
+    @ApiOperation(value = "Decrement the stock of a juice found by a given valid Id")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Success juice stock decremented, with its new version as ETag"),
+            @ApiResponse(code = 400, message = "Quantity to decrement is greater than the juice stock."),
+            @ApiResponse(code = 404, message = "Juice with given id not found."),
+            @ApiResponse(code = 409, message = "Juice kept changing concurrently and the retries ran out."),
+            @ApiResponse(code = 412, message = "Juice is no longer at the version given in If-Match."),
+            @ApiResponse(code = 422, message = "Idempotency-Key already used for a different request.")
+    })
+    ResponseEntity<JuiceDTO> decrement(@PathVariable Long id, String ifMatch, String idempotencyKey, QuantityDTO quantityDTO, HttpServletRequest request) throws Exception;
+
+    @ApiOperation(value = "Applies a batch of stock adjustments, coalesced per juice id")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Result of each adjustment, with the error of the rejected ones"),
+            @ApiResponse(code = 400, message = "Missing required fields or wrong field range value."),
+            @ApiResponse(code = 422, message = "Idempotency-Key already used for a different request.")
+    })
+    List<StockAdjustmentResultDTO> adjustStock(String idempotencyKey, StockAdjustmentBatchDTO stockAdjustmentBatchDTO, HttpServletRequest request) throws IdempotencyKeyReusedException;
 }
@@ -39,4 +39,6 @@ public class JuiceDTO {
     @Enumerated(EnumType.STRING)
     @NotNull
     private JuiceType type;
+
+    private Long version;
 }
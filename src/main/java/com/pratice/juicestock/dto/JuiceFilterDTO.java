@@ -0,0 +1,31 @@
+package com.pratice.juicestock.dto;
+
+import com.pratice.juicestock.enums.JuiceType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class JuiceFilterDTO {
+
+    private JuiceType type;
+
+    private String brand;
+
+    @Min(0)
+    private Integer minQuantity;
+
+    @Min(0)
+    private Integer maxQuantity;
+
+    @Min(1)
+    @Max(100)
+    private Integer belowPercent;
+}
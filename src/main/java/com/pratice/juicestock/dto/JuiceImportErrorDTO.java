@@ -0,0 +1,19 @@
+package com.pratice.juicestock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class JuiceImportErrorDTO {
+
+    private Long line;
+
+    private String name;
+
+    private String error;
+}
@@ -0,0 +1,19 @@
+package com.pratice.juicestock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class JuiceImportResultDTO {
+
+    private Long imported;
+
+    private List<JuiceImportErrorDTO> errors;
+}
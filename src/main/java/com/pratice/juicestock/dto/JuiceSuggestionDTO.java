@@ -0,0 +1,22 @@
+package com.pratice.juicestock.dto;
+
+import com.pratice.juicestock.enums.JuiceType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class JuiceSuggestionDTO {
+
+    private Long id;
+
+    private String name;
+
+    private String brand;
+
+    private JuiceType type;
+}
@@ -0,0 +1,22 @@
+package com.pratice.juicestock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockAdjustmentBatchDTO {
+
+    @NotEmpty
+    @Size(max = 1000)
+    private List<@Valid StockAdjustmentDTO> adjustments;
+}
@@ -0,0 +1,29 @@
+package com.pratice.juicestock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockAdjustmentResultDTO {
+
+    private Long id;
+
+    private Integer quantity;
+
+    private JuiceDTO juice;
+
+    private String error;
+
+    public static StockAdjustmentResultDTO applied(Long id, int quantity, JuiceDTO juice) {
+        return new StockAdjustmentResultDTO(id, quantity, juice, null);
+    }
+
+    public static StockAdjustmentResultDTO rejected(Long id, int quantity, Exception cause) {
+        return new StockAdjustmentResultDTO(id, quantity, null, cause.getMessage());
+    }
+}
@@ -0,0 +1,38 @@
+package com.pratice.juicestock.dto;
+
+import com.pratice.juicestock.enums.JuiceType;
+import com.pratice.juicestock.enums.StockAlertStatus;
+import com.pratice.juicestock.enums.StockAlertType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockAlertDTO {
+
+    private StockAlertType type;
+
+    private StockAlertStatus status;
+
+    private Long id;
+
+    private String name;
+
+    private JuiceType juiceType;
+
+    private int quantity;
+
+    private int max;
+
+    private int threshold;
+
+    private Long version;
+
+    private Instant time;
+}
@@ -0,0 +1,22 @@
+package com.pratice.juicestock.dto;
+
+import com.pratice.juicestock.enums.StockChangeType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockChangeDTO {
+
+    private Long sequence;
+
+    private StockChangeType type;
+
+    private Long id;
+
+    private JuiceDTO juice;
+}
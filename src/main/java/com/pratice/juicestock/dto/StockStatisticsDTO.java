@@ -0,0 +1,22 @@
+package com.pratice.juicestock.dto;
+
+import com.pratice.juicestock.enums.JuiceType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockStatisticsDTO {
+
+    private StockTotalsDTO total;
+
+    private Map<JuiceType, StockTotalsDTO> byType;
+
+    private Map<String, StockTotalsDTO> byBrand;
+}
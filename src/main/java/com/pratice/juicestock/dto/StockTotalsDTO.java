@@ -0,0 +1,23 @@
+package com.pratice.juicestock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockTotalsDTO {
+
+    private long juices;
+
+    private long quantity;
+
+    private long max;
+
+    private double fillRatio;
+
+    private long lowStock;
+}
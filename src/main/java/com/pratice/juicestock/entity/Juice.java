@@ -4,20 +4,50 @@ import com.pratice.juicestock.enums.JuiceType;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import javax.persistence.*;
 
+/**
+ * Cached in the second-level cache by id and by name. Stock changes write the row far more
+ * often than juices are created, so the cache is {@code READ_WRITE}: an entry being written
+ * is soft-locked until the transaction completes and readers go to the database meanwhile,
+ * instead of risking a stale read as {@code NONSTRICT_READ_WRITE} would.
+ */
 @Data
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Juice.CACHE_REGION)
+@NaturalIdCache(region = Juice.NATURAL_ID_CACHE_REGION)
+@Table(uniqueConstraints = @UniqueConstraint(name = Juice.NAME_UNIQUE_CONSTRAINT, columnNames = "name"),
+        indexes = {
+                @Index(name = "IDX_JUICE_TYPE", columnList = "type"),
+                @Index(name = "IDX_JUICE_BRAND", columnList = "brand"),
+                @Index(name = "IDX_JUICE_QUANTITY", columnList = "quantity")
+        })
 @NoArgsConstructor
 @AllArgsConstructor
 public class Juice {
 
+    public static final String NAME_UNIQUE_CONSTRAINT = "UK_JUICE_NAME";
+    public static final String ID_SEQUENCE = "JUICE_SEQ";
+    public static final String CACHE_REGION = "juices";
+    public static final String NATURAL_ID_CACHE_REGION = "juiceIdsByName";
+
+    /**
+     * Ids come from a sequence in blocks of the JDBC batch size, so inserts can be batched;
+     * an identity column needs one round trip per insert to learn the id.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = 50)
     private Long id;
 
-    @Column(nullable = false, unique = true)
+    @NaturalId
+    @Column(nullable = false)
     private String name;
 
     @Column(nullable = false)
@@ -32,4 +62,8 @@ public class Juice {
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private JuiceType type;
+
+    @Version
+    @Column(nullable = false)
+    private Long version;
 }
@@ -0,0 +1,7 @@
+package com.pratice.juicestock.enums;
+
+public enum StockAlertType {
+
+    LOW_STOCK,
+    HIGH_STOCK
+}
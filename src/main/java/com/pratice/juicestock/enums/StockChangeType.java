@@ -0,0 +1,10 @@
+package com.pratice.juicestock.enums;
+
+public enum StockChangeType {
+
+    CREATED,
+    INCREMENTED,
+    DECREMENTED,
+    ADJUSTED,
+    DELETED
+}
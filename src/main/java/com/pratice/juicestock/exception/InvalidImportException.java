@@ -0,0 +1,12 @@
+package com.pratice.juicestock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidImportException extends Exception {
+
+    public InvalidImportException(String reason) {
+        super(String.format("Import is not valid: %s.", reason));
+    }
+}
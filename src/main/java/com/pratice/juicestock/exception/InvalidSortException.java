@@ -0,0 +1,12 @@
+package com.pratice.juicestock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidSortException extends Exception {
+
+    public InvalidSortException(String property) {
+        super(String.format("Juices cannot be sorted by %s.", property));
+    }
+}
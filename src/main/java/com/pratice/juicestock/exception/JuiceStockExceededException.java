@@ -6,7 +6,7 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 @ResponseStatus(HttpStatus.BAD_REQUEST)
 public class JuiceStockExceededException extends Exception {
 
-    public JuiceStockExceededException(Long id, int quantityToIncrement) {
-        super(String.format("Juice with %s id to increment informed exceeds the max stock capacity: %s", id, quantityToIncrement));
+    public JuiceStockExceededException(Long id, int quantity) {
+        super(String.format("Juice with %s id informed exceeds the stock limits with quantity: %s", id, quantity));
     }
 }
@@ -0,0 +1,12 @@
+package com.pratice.juicestock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+public class JuiceVersionMismatchException extends Exception {
+
+    public JuiceVersionMismatchException(Long id, Long expectedVersion) {
+        super(String.format("Juice with %s id informed is no longer at version %s.", id, expectedVersion));
+    }
+}
@@ -0,0 +1,12 @@
+package com.pratice.juicestock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class RateLimitExceededException extends Exception {
+
+    public RateLimitExceededException(String endpoint, long retryAfterSeconds) {
+        super(String.format("Rate limit of %s exceeded, try again in %s seconds.", endpoint, retryAfterSeconds));
+    }
+}
@@ -0,0 +1,12 @@
+package com.pratice.juicestock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ServerOverloadedException extends Exception {
+
+    public ServerOverloadedException(long retryAfterSeconds) {
+        super(String.format("Server is overloaded, try again in %s seconds.", retryAfterSeconds));
+    }
+}
@@ -0,0 +1,223 @@
+package com.pratice.juicestock.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One memory-mapped journal file holding fixed-size records of
+ * {@code checksum:int, id:long, delta:int, timestamp:long}. Appenders reserve a slot with
+ * a single atomic increment and write it without locking; the checksum is what tells a
+ * complete record from the zero-filled tail or a torn write after a crash.
+ * <p>
+ * Slots are reserved in order but may be written out of order, and recovery stops at the
+ * first slot without a valid checksum. A record therefore only counts as written, and only
+ * becomes durable, once every slot before it is written too. The checksum is written last
+ * with a volatile store, so a thread that sees it also sees the rest of the record.
+ */
+final class JournalSegment implements Closeable {
+
+    static final String FILE_PREFIX = "stock-";
+    static final String FILE_SUFFIX = ".journal";
+    static final int RECORD_SIZE = 24;
+
+    private static final VarHandle CHECKSUM = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final long number;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final AtomicInteger reserved = new AtomicInteger();
+    private volatile int writtenPrefix;
+    private volatile int durablePrefix;
+    private volatile int sealedAt = -1;
+
+    private JournalSegment(long number, Path path, FileChannel channel, MappedByteBuffer buffer, int capacity) {
+        this.number = number;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    static JournalSegment create(Path directory, long number, int capacity) throws IOException {
+        Path path = directory.resolve(fileName(number));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * RECORD_SIZE);
+        return new JournalSegment(number, path, channel, buffer, capacity);
+    }
+
+    static JournalSegment open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        int capacity = (int) (channel.size() / RECORD_SIZE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, (long) capacity * RECORD_SIZE);
+        JournalSegment segment = new JournalSegment(parseNumber(path), path, channel, buffer, capacity);
+        segment.sealedAt = segment.countRecords();
+        segment.writtenPrefix = segment.sealedAt;
+        segment.durablePrefix = segment.sealedAt;
+        return segment;
+    }
+
+    static boolean isSegment(Path path) {
+        String fileName = path.getFileName().toString();
+        return fileName.startsWith(FILE_PREFIX) && fileName.endsWith(FILE_SUFFIX);
+    }
+
+    static long parseNumber(Path path) {
+        String fileName = path.getFileName().toString();
+        return Long.parseLong(fileName.substring(FILE_PREFIX.length(), fileName.length() - FILE_SUFFIX.length()));
+    }
+
+    private static String fileName(long number) {
+        return String.format("%s%020d%s", FILE_PREFIX, number, FILE_SUFFIX);
+    }
+
+    long number() {
+        return number;
+    }
+
+    boolean append(long id, int delta, long timestamp) {
+        int index = reserve();
+        if (index < 0) {
+            return false;
+        }
+        write(index, id, delta, timestamp);
+        return true;
+    }
+
+    /**
+     * Returns the slot of the next record, or -1 once the segment is full or sealed. Every
+     * slot handed out must be written, or the records after it cannot be recovered.
+     */
+    int reserve() {
+        int index = reserved.getAndIncrement();
+        return index < capacity ? index : -1;
+    }
+
+    /**
+     * Writes the record of a reserved slot. Once the segment is sealed, the checkpoint waiting
+     * for its last records is woken up.
+     */
+    void write(int index, long id, int delta, long timestamp) {
+        int offset = index * RECORD_SIZE;
+        buffer.putLong(offset + 4, id);
+        buffer.putInt(offset + 12, delta);
+        buffer.putLong(offset + 16, timestamp);
+        CHECKSUM.setVolatile(buffer, offset, checksum(id, delta, timestamp));
+        if (sealedAt >= 0) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Returns how many slots from the start of the segment are all written.
+     */
+    synchronized int writtenPrefix() {
+        int limit = Math.min(reserved.get(), capacity);
+        int prefix = writtenPrefix;
+        while (prefix < limit && (int) CHECKSUM.getVolatile(buffer, prefix * RECORD_SIZE) != 0) {
+            prefix++;
+        }
+        writtenPrefix = prefix;
+        return prefix;
+    }
+
+    boolean isEmpty() {
+        return Math.min(reserved.get(), capacity) == 0;
+    }
+
+    /**
+     * Stops new reservations. Appenders that already hold a slot finish their write,
+     * which {@link #isComplete()} waits for.
+     */
+    void seal() {
+        sealedAt = Math.min(reserved.getAndSet(capacity), capacity);
+    }
+
+    boolean isComplete() {
+        return sealedAt >= 0 && writtenPrefix() >= sealedAt;
+    }
+
+    /**
+     * Waits until every slot handed out before the segment was sealed is written.
+     */
+    synchronized void awaitComplete() throws InterruptedException {
+        while (!isComplete()) {
+            wait();
+        }
+    }
+
+    boolean isDurable(int index) {
+        return index < durablePrefix;
+    }
+
+    boolean hasUnsyncedRecords() {
+        return writtenPrefix() > durablePrefix;
+    }
+
+    /**
+     * Forces the segment to disk and makes durable the records of the written prefix read
+     * before the force, which the force is certain to cover.
+     */
+    void force() {
+        int prefix = writtenPrefix();
+        buffer.force();
+        durablePrefix = prefix;
+    }
+
+    void forEach(RecordConsumer consumer) {
+        int records = sealedAt >= 0 ? sealedAt : writtenPrefix();
+        for (int index = 0; index < records; index++) {
+            int offset = index * RECORD_SIZE;
+            consumer.accept(buffer.getLong(offset + 4), buffer.getInt(offset + 12));
+        }
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int countRecords() {
+        int index = 0;
+        while (index < capacity) {
+            int offset = index * RECORD_SIZE;
+            long id = buffer.getLong(offset + 4);
+            int delta = buffer.getInt(offset + 12);
+            long timestamp = buffer.getLong(offset + 16);
+            if (buffer.getInt(offset) != checksum(id, delta, timestamp)) {
+                break;
+            }
+            index++;
+        }
+        return index;
+    }
+
+    private static int checksum(long id, int delta, long timestamp) {
+        long hash = (id * 0x9E3779B97F4A7C15L) ^ (timestamp * 0xC2B2AE3D27D4EB4FL) ^ delta;
+        int checksum = (int) (hash ^ (hash >>> 32));
+        return checksum == 0 ? 1 : checksum;
+    }
+
+    @FunctionalInterface
+    interface RecordConsumer {
+
+        void accept(long id, int delta);
+    }
+}
@@ -0,0 +1,367 @@
+package com.pratice.juicestock.journal;
+
+import com.pratice.juicestock.entity.Juice;
+import com.pratice.juicestock.repository.JuiceRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Append-only record of stock deltas kept in memory-mapped segment files. Appends are made
+ * durable in groups by a background sync every {@code juicestock.journal.sync-interval},
+ * which runs on its own thread so that a slow checkpoint never holds it up;
+ * every {@code juicestock.journal.checkpoint-interval} (and whenever a segment fills up)
+ * the sealed segments are folded into a {@link StockSnapshot}, the resulting quantities are
+ * written to the {@code juice} table and the segments are deleted.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "juicestock.stock.mode", havingValue = "journal")
+public class StockJournal implements SmartLifecycle {
+
+    private final JuiceRepository juiceRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Path directory;
+    private final int segmentCapacity;
+    private final Duration syncInterval;
+    private final Duration checkpointInterval;
+    private final Queue<JournalSegment> sealedSegments = new ConcurrentLinkedQueue<>();
+    private final Object durability = new Object();
+    private final Object rollLock = new Object();
+    private volatile JournalSegment currentSegment;
+    private StockSnapshot snapshot;
+    private ScheduledExecutorService syncScheduler;
+    private ScheduledExecutorService checkpointScheduler;
+    private volatile boolean running;
+
+    public StockJournal(JuiceRepository juiceRepository,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${juicestock.journal.directory:data/journal}") String directory,
+                        @Value("${juicestock.journal.segment-size:16MB}") DataSize segmentSize,
+                        @Value("${juicestock.journal.sync-interval:2ms}") Duration syncInterval,
+                        @Value("${juicestock.journal.checkpoint-interval:10s}") Duration checkpointInterval) {
+        this.juiceRepository = juiceRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.directory = Paths.get(directory);
+        this.segmentCapacity = (int) Math.min(segmentSize.toBytes() / JournalSegment.RECORD_SIZE, Integer.MAX_VALUE / JournalSegment.RECORD_SIZE);
+        this.syncInterval = syncInterval;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Replays whatever the previous run left behind: the latest snapshot plus every complete
+     * record of the segments written after it. The result is applied to the database before
+     * any stock change is accepted.
+     */
+    @PostConstruct
+    public void recover() throws IOException {
+        Files.createDirectories(directory);
+        snapshot = StockSnapshot.read(directory);
+        List<JournalSegment> tail = new ArrayList<>();
+        for (Path path : listSegments()) {
+            JournalSegment segment = JournalSegment.open(path);
+            if (segment.number() <= snapshot.getLastSegment()) {
+                segment.delete();
+            } else {
+                tail.add(segment);
+            }
+        }
+        long lastSegment = tail.isEmpty() ? snapshot.getLastSegment() : tail.get(tail.size() - 1).number();
+        Map<Long, Integer> quantities = fold(sumDeltas(tail));
+        snapshot = new StockSnapshot(lastSegment, quantities);
+        snapshot.write(directory);
+        writeToDatabase(quantities, quantities.keySet());
+        for (JournalSegment segment : tail) {
+            segment.delete();
+        }
+        log.info("Recovered stock journal with {} juices from {} segments", quantities.size(), tail.size());
+
+        currentSegment = JournalSegment.create(directory, lastSegment + 1, segmentCapacity);
+        syncScheduler = newScheduler("stock-journal-sync");
+        checkpointScheduler = newScheduler("stock-journal-checkpoint");
+        syncScheduler.scheduleWithFixedDelay(this::scheduledSync, syncInterval.toNanos(), syncInterval.toNanos(), TimeUnit.NANOSECONDS);
+        checkpointScheduler.scheduleWithFixedDelay(this::scheduledCheckpoint, checkpointInterval.toMillis(), checkpointInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private static ScheduledExecutorService newScheduler(String name) {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Appends one record and blocks until the sync that covers it has reached the disk.
+     */
+    public void append(Long id, int delta) {
+        reserve().commit(id, delta);
+    }
+
+    /**
+     * Reserves the slot of the next record, rolling to a new segment when the current one is
+     * full. This is the only step of an append that can fail, so a caller can reserve before
+     * it changes anything and has nothing to undo once the record is written.
+     */
+    public Reservation reserve() {
+        JournalSegment segment = currentSegment;
+        int index = segment.reserve();
+        while (index < 0) {
+            roll(segment);
+            checkpointScheduler.execute(this::scheduledCheckpoint);
+            segment = currentSegment;
+            index = segment.reserve();
+        }
+        return new Reservation(segment, index);
+    }
+
+    /**
+     * Waits without giving up on an interrupt: the record is already in the journal and is
+     * replayed after a crash, so the change has happened whether the caller waits or not.
+     * The interrupt is passed on once the record is durable.
+     */
+    private void awaitDurable(JournalSegment segment, int index) {
+        boolean interrupted = false;
+        synchronized (durability) {
+            while (!segment.isDurable(index)) {
+                try {
+                    durability.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void scheduledSync() {
+        try {
+            sync();
+        } catch (RuntimeException e) {
+            log.error("Stock journal sync failed, retrying on the next one", e);
+        }
+    }
+
+    /**
+     * Forces every segment whose written prefix grew since it was last forced, and wakes up
+     * the appenders whose records that prefix now covers. A record written after a slot that
+     * is still empty stays unacknowledged until that slot is written, since recovery would
+     * not get past the empty slot. The segments are listed under the roll lock, so a segment
+     * sealed meanwhile is still among them.
+     */
+    void sync() {
+        List<JournalSegment> segments;
+        synchronized (rollLock) {
+            segments = new ArrayList<>(sealedSegments);
+            segments.add(currentSegment);
+        }
+        boolean synced = false;
+        for (JournalSegment segment : segments) {
+            if (segment.hasUnsyncedRecords()) {
+                segment.force();
+                synced = true;
+            }
+        }
+        if (synced) {
+            synchronized (durability) {
+                durability.notifyAll();
+            }
+        }
+    }
+
+    private void roll(JournalSegment full) {
+        synchronized (rollLock) {
+            if (currentSegment != full) {
+                return;
+            }
+            full.seal();
+            sealedSegments.add(full);
+            try {
+                currentSegment = JournalSegment.create(directory, full.number() + 1, segmentCapacity);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void scheduledCheckpoint() {
+        try {
+            checkpoint();
+        } catch (IOException | RuntimeException e) {
+            log.error("Stock journal checkpoint failed, retrying on the next one", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Folds every sealed segment into the snapshot and writes the changed quantities to the
+     * database. The snapshot is written first: if the database write is lost, recovery
+     * applies the snapshot again. Appenders still holding a slot of a sealed segment are
+     * waited for, without keeping the sync from running meanwhile.
+     */
+    synchronized void checkpoint() throws IOException, InterruptedException {
+        JournalSegment segment = currentSegment;
+        if (!segment.isEmpty()) {
+            roll(segment);
+        }
+        List<JournalSegment> segments = new ArrayList<>(sealedSegments);
+        if (segments.isEmpty()) {
+            return;
+        }
+        for (JournalSegment sealed : segments) {
+            sealed.awaitComplete();
+        }
+        Map<Long, Integer> deltas = sumDeltas(segments);
+        Map<Long, Integer> quantities = fold(deltas);
+        snapshot = new StockSnapshot(segments.get(segments.size() - 1).number(), quantities);
+        snapshot.write(directory);
+        writeToDatabase(quantities, deltas.keySet());
+        for (JournalSegment sealed : segments) {
+            sealedSegments.remove(sealed);
+            sealed.delete();
+        }
+    }
+
+    private static Map<Long, Integer> sumDeltas(List<JournalSegment> segments) {
+        Map<Long, Integer> deltas = new HashMap<>();
+        for (JournalSegment segment : segments) {
+            segment.forEach((id, delta) -> deltas.merge(id, delta, Integer::sum));
+        }
+        return deltas;
+    }
+
+    private Map<Long, Integer> fold(Map<Long, Integer> deltas) {
+        Map<Long, Integer> quantities = new HashMap<>(snapshot.getQuantities());
+        List<Long> missing = deltas.keySet().stream()
+                .filter(id -> !quantities.containsKey(id))
+                .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            for (Juice juice : juiceRepository.findAllById(missing)) {
+                quantities.putIfAbsent(juice.getId(), juice.getQuantity());
+            }
+        }
+        deltas.forEach((id, delta) -> quantities.computeIfPresent(id, (key, quantity) -> quantity + delta));
+        return quantities;
+    }
+
+    private void writeToDatabase(Map<Long, Integer> quantities, Iterable<Long> ids) {
+        List<Long> deleted = transactionTemplate.execute(status -> {
+            List<Long> missing = new ArrayList<>();
+            for (Long id : ids) {
+                if (juiceRepository.updateQuantity(id, quantities.get(id)) == 0) {
+                    missing.add(id);
+                }
+            }
+            return missing;
+        });
+        if (deleted != null) {
+            deleted.forEach(quantities::remove);
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(JournalSegment::isSegment)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    /**
+     * Runs the final checkpoint once the web server has stopped taking requests but while
+     * the repositories can still be used, which is no longer the case in a destroy method.
+     */
+    @Override
+    public void stop() {
+        try {
+            close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running = false;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 2;
+    }
+
+    public void close() throws IOException, InterruptedException {
+        syncScheduler.shutdown();
+        checkpointScheduler.shutdown();
+        syncScheduler.awaitTermination(5, TimeUnit.SECONDS);
+        checkpointScheduler.awaitTermination(5, TimeUnit.SECONDS);
+        sync();
+        checkpoint();
+        currentSegment.delete();
+    }
+
+    /**
+     * A slot of the journal held for one record, which must be either committed or cancelled.
+     */
+    public final class Reservation {
+
+        private final JournalSegment segment;
+        private final int index;
+
+        private Reservation(JournalSegment segment, int index) {
+            this.segment = segment;
+            this.index = index;
+        }
+
+        /**
+         * Writes the record and blocks until the sync that covers it has reached the disk.
+         */
+        public void commit(Long id, int delta) {
+            segment.write(index, id, delta, System.currentTimeMillis());
+            awaitDurable(segment, index);
+        }
+
+        /**
+         * Fills the slot with a record that changes nothing, without waiting for it to sync.
+         */
+        public void cancel(Long id) {
+            segment.write(index, id, 0, System.currentTimeMillis());
+        }
+    }
+}
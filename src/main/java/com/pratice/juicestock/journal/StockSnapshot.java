@@ -0,0 +1,84 @@
+package com.pratice.juicestock.journal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Absolute stock quantities of every juice the journal has touched, together with the
+ * number of the last segment folded into them. Replaying only the segments after
+ * {@link #getLastSegment()} on top of it gives the current stock.
+ */
+final class StockSnapshot {
+
+    static final String FILE_NAME = "stock.snapshot";
+    private static final int MAGIC = 0x4A534E50;
+
+    private final long lastSegment;
+    private final Map<Long, Integer> quantities;
+
+    StockSnapshot(long lastSegment, Map<Long, Integer> quantities) {
+        this.lastSegment = lastSegment;
+        this.quantities = quantities;
+    }
+
+    static StockSnapshot empty() {
+        return new StockSnapshot(-1, new HashMap<>());
+    }
+
+    static StockSnapshot read(Path directory) throws IOException {
+        Path path = directory.resolve(FILE_NAME);
+        if (Files.notExists(path)) {
+            return empty();
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Not a stock snapshot: " + path);
+            }
+            long lastSegment = input.readLong();
+            int size = input.readInt();
+            Map<Long, Integer> quantities = new HashMap<>(size * 2);
+            for (int index = 0; index < size; index++) {
+                quantities.put(input.readLong(), input.readInt());
+            }
+            return new StockSnapshot(lastSegment, quantities);
+        }
+    }
+
+    /**
+     * Writes to a temporary file, forces it to disk and renames it over the previous
+     * snapshot, so a crash leaves either the old or the new snapshot but never half of one.
+     */
+    void write(Path directory) throws IOException {
+        Path temporary = directory.resolve(FILE_NAME + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(file))) {
+            output.writeInt(MAGIC);
+            output.writeLong(lastSegment);
+            output.writeInt(quantities.size());
+            for (Map.Entry<Long, Integer> quantity : quantities.entrySet()) {
+                output.writeLong(quantity.getKey());
+                output.writeInt(quantity.getValue());
+            }
+            output.flush();
+            file.getFD().sync();
+        }
+        Files.move(temporary, directory.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    long getLastSegment() {
+        return lastSegment;
+    }
+
+    Map<Long, Integer> getQuantities() {
+        return quantities;
+    }
+}
@@ -0,0 +1,39 @@
+package com.pratice.juicestock.limit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tells clients apart by their address. The {@code juicestock.rate-limit.client-header} header
+ * is only believed on requests coming from one of the {@code juicestock.rate-limit.trusted-proxies}
+ * addresses, which are expected to set it themselves; any other client could change it on every
+ * request to get a fresh rate limit. Rate limits and idempotency keys are both kept per client.
+ */
+@Component
+public class ClientIdentity {
+
+    private final String clientHeader;
+    private final Set<String> trustedProxies;
+
+    @Autowired
+    public ClientIdentity(@Value("${juicestock.rate-limit.client-header:X-Client-Id}") String clientHeader,
+                          @Value("${juicestock.rate-limit.trusted-proxies:}") List<String> trustedProxies) {
+        this.clientHeader = clientHeader;
+        this.trustedProxies = new HashSet<>(trustedProxies);
+    }
+
+    public String of(HttpServletRequest request) {
+        String address = request.getRemoteAddr();
+        if (!trustedProxies.contains(address)) {
+            return address;
+        }
+        String client = request.getHeader(clientHeader);
+        return client != null && !client.isEmpty() ? client : address;
+    }
+}
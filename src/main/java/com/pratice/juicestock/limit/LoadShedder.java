@@ -0,0 +1,160 @@
+package com.pratice.juicestock.limit;
+
+import com.pratice.juicestock.metrics.JuiceServiceMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sheds a share of the requests while the service is overloaded. Every
+ * {@code juicestock.load-shedding.interval} the p99 of the {@code JuiceService} operations
+ * finished in the interval, leaving out streaming and bulk ones, and the mean wait for a database connection are compared with
+ * {@code juicestock.load-shedding.max-p99} and {@code max-pool-wait}: the share of shed
+ * requests grows by {@code step} while either is above its limit, up to {@code max-ratio},
+ * and shrinks by {@code step} once both are back under it. Requests only read the current
+ * share, so a healthy service pays a volatile read. Shed requests are counted by the
+ * {@value #SHED_COUNTER} counter and the share is published as the {@value #SHED_RATIO_GAUGE}
+ * gauge.
+ */
+@Component
+public class LoadShedder implements SmartLifecycle {
+
+    public static final String SHED_COUNTER = "juicestock.loadshedding.shed";
+    public static final String SHED_RATIO_GAUGE = "juicestock.loadshedding.ratio";
+    static final String POOL_ACQUIRE_TIMER = "hikaricp.connections.acquire";
+
+    private static final double PERCENTILE = 0.99;
+
+    private final MeterRegistry meterRegistry;
+    private final JuiceServiceMetrics juiceServiceMetrics;
+    private final boolean enabled;
+    private final long maxP99Nanos;
+    private final double maxPoolWaitNanos;
+    private final Duration interval;
+    private final double step;
+    private final double maxRatio;
+    private final int minSamples;
+    private final ConcurrentMap<String, Counter> shedCounters = new ConcurrentHashMap<>();
+    private long poolAcquireCount;
+    private double poolAcquireNanos;
+    private volatile double ratio;
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running;
+
+    @Autowired
+    public LoadShedder(MeterRegistry meterRegistry,
+                       JuiceServiceMetrics juiceServiceMetrics,
+                       @Value("${juicestock.load-shedding.enabled:true}") boolean enabled,
+                       @Value("${juicestock.load-shedding.max-p99:500ms}") Duration maxP99,
+                       @Value("${juicestock.load-shedding.max-pool-wait:100ms}") Duration maxPoolWait,
+                       @Value("${juicestock.load-shedding.interval:1s}") Duration interval,
+                       @Value("${juicestock.load-shedding.step:0.1}") double step,
+                       @Value("${juicestock.load-shedding.max-ratio:0.9}") double maxRatio,
+                       @Value("${juicestock.load-shedding.min-samples:20}") int minSamples) {
+        this.meterRegistry = meterRegistry;
+        this.juiceServiceMetrics = juiceServiceMetrics;
+        this.enabled = enabled;
+        this.maxP99Nanos = maxP99.toNanos();
+        this.maxPoolWaitNanos = maxPoolWait.toNanos();
+        this.interval = interval;
+        this.step = step;
+        this.maxRatio = maxRatio;
+        this.minSamples = minSamples;
+        Gauge.builder(SHED_RATIO_GAUGE, this, LoadShedder::ratio)
+                .description("Share of the requests being shed because the service is overloaded")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Decides whether to shed a request to {@code endpoint}, counting it if so.
+     */
+    public boolean shed(String endpoint) {
+        double current = ratio;
+        if (current == 0 || ThreadLocalRandom.current().nextDouble() >= current) {
+            return false;
+        }
+        shedCounters.computeIfAbsent(endpoint, key -> Counter.builder(SHED_COUNTER)
+                .description("Requests refused because the service is overloaded")
+                .tag("endpoint", key)
+                .register(meterRegistry))
+                .increment();
+        return true;
+    }
+
+    public long retryAfterSeconds() {
+        return Math.max(1, (interval.toMillis() + 999) / 1000);
+    }
+
+    double ratio() {
+        return ratio;
+    }
+
+    void evaluate() {
+        long p99 = juiceServiceMetrics.drainLatencyPercentile(PERCENTILE, minSamples);
+        double poolWait = drainPoolWait();
+        if (p99 > maxP99Nanos || poolWait > maxPoolWaitNanos) {
+            ratio = Math.min(maxRatio, ratio + step);
+        } else if (ratio > 0) {
+            ratio = Math.max(0, ratio - step);
+        }
+    }
+
+    /**
+     * Returns the mean time spent waiting for a connection of the pool since the previous
+     * call, or 0 when the pool publishes no meters.
+     */
+    private double drainPoolWait() {
+        long count = 0;
+        double nanos = 0;
+        for (Timer timer : meterRegistry.find(POOL_ACQUIRE_TIMER).timers()) {
+            count += timer.count();
+            nanos += timer.totalTime(TimeUnit.NANOSECONDS);
+        }
+        long acquired = count - poolAcquireCount;
+        double waited = nanos - poolAcquireNanos;
+        poolAcquireCount = count;
+        poolAcquireNanos = nanos;
+        return acquired > 0 && waited > 0 ? waited / acquired : 0;
+    }
+
+    @Override
+    public void start() {
+        if (enabled) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "load-shedder");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::evaluate, interval.toNanos(), interval.toNanos(), TimeUnit.NANOSECONDS);
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        ratio = 0;
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
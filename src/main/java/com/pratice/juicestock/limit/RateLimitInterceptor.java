@@ -0,0 +1,55 @@
+package com.pratice.juicestock.limit;
+
+import com.pratice.juicestock.exception.RateLimitExceededException;
+import com.pratice.juicestock.exception.ServerOverloadedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refuses a request before it reaches the controller when the service is shedding load
+ * ({@code 503}) or when its client ran out of tokens for the endpoint ({@code 429}), both
+ * with a {@code Retry-After} header. Clients are told apart by {@link ClientIdentity}.
+ */
+@Component
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private final RateLimiter rateLimiter;
+    private final LoadShedder loadShedder;
+    private final ClientIdentity clientIdentity;
+
+    @Autowired
+    public RateLimitInterceptor(RateLimiter rateLimiter, LoadShedder loadShedder, ClientIdentity clientIdentity) {
+        this.rateLimiter = rateLimiter;
+        this.loadShedder = loadShedder;
+        this.clientIdentity = clientIdentity;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws RateLimitExceededException, ServerOverloadedException {
+        if (!(handler instanceof HandlerMethod) || request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        String endpoint = ((HandlerMethod) handler).getMethod().getName();
+        if (loadShedder.shed(endpoint)) {
+            long retryAfter = loadShedder.retryAfterSeconds();
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+            throw new ServerOverloadedException(retryAfter);
+        }
+        long wait = rateLimiter.tryAcquire(endpoint, clientIdentity.of(request));
+        if (wait > 0) {
+            long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1));
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+            throw new RateLimitExceededException(endpoint, retryAfter);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,112 @@
+package com.pratice.juicestock.limit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+/**
+ * One {@link TokenBucket} per endpoint and client. An endpoint is named after its controller
+ * method and takes {@code juicestock.rate-limit.endpoints.<endpoint>.capacity} and
+ * {@code .per-second} tokens, falling back to {@code juicestock.rate-limit.capacity} and
+ * {@code juicestock.rate-limit.per-second}; a rate of 0 leaves the endpoint unlimited. Buckets
+ * of clients that stopped calling are evicted after {@code juicestock.rate-limit.expire-after-access}.
+ * Refused requests are counted by the {@value #LIMITED_COUNTER} counter.
+ */
+@Component
+public class RateLimiter {
+
+    public static final String LIMITED_COUNTER = "juicestock.ratelimit.limited";
+    public static final String CACHE_NAME = "rateLimitBuckets";
+
+    private static final String PROPERTY_PREFIX = "juicestock.rate-limit.";
+    private static final long UNLIMITED = 0;
+
+    private final MeterRegistry meterRegistry;
+    private final Environment environment;
+    private final boolean enabled;
+    private final long defaultCapacity;
+    private final double defaultPerSecond;
+    private final LongSupplier clock;
+    private final Cache<String, TokenBucket> buckets;
+    private final ConcurrentMap<String, Long> nanosPerToken = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> limitedCounters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public RateLimiter(MeterRegistry meterRegistry,
+                       Environment environment,
+                       @Value("${juicestock.rate-limit.enabled:true}") boolean enabled,
+                       @Value("${juicestock.rate-limit.capacity:200}") long defaultCapacity,
+                       @Value("${juicestock.rate-limit.per-second:100}") double defaultPerSecond,
+                       @Value("${juicestock.rate-limit.maximum-clients:100000}") long maximumClients,
+                       @Value("${juicestock.rate-limit.expire-after-access:10m}") Duration expireAfterAccess) {
+        this(meterRegistry, environment, enabled, defaultCapacity, defaultPerSecond, maximumClients, expireAfterAccess, System::nanoTime);
+    }
+
+    public RateLimiter(MeterRegistry meterRegistry,
+                       Environment environment,
+                       boolean enabled,
+                       long defaultCapacity,
+                       double defaultPerSecond,
+                       long maximumClients,
+                       Duration expireAfterAccess,
+                       LongSupplier clock) {
+        this.meterRegistry = meterRegistry;
+        this.environment = environment;
+        this.enabled = enabled;
+        this.defaultCapacity = defaultCapacity;
+        this.defaultPerSecond = defaultPerSecond;
+        this.clock = clock;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maximumClients)
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, buckets, CACHE_NAME);
+    }
+
+    /**
+     * Takes a token of the bucket of {@code client} for {@code endpoint} and returns 0, or
+     * returns how many nanoseconds the client has to wait before calling it again.
+     */
+    public long tryAcquire(String endpoint, String client) {
+        if (!enabled) {
+            return 0;
+        }
+        long interval = nanosPerToken.computeIfAbsent(endpoint, this::nanosPerToken);
+        if (interval == UNLIMITED) {
+            return 0;
+        }
+        long now = clock.getAsLong();
+        TokenBucket bucket = buckets.get(endpoint + ' ' + client,
+                key -> new TokenBucket(interval, capacity(endpoint), now));
+        long wait = bucket.tryAcquire(now);
+        if (wait > 0) {
+            limitedCounters.computeIfAbsent(endpoint, key -> Counter.builder(LIMITED_COUNTER)
+                    .description("Requests refused because the client ran out of tokens for the endpoint")
+                    .tag("endpoint", key)
+                    .register(meterRegistry))
+                    .increment();
+        }
+        return wait;
+    }
+
+    private long nanosPerToken(String endpoint) {
+        double perSecond = environment.getProperty(PROPERTY_PREFIX + "endpoints." + endpoint + ".per-second", Double.class, defaultPerSecond);
+        return perSecond > 0 ? Math.max(1, Math.round(Duration.ofSeconds(1).toNanos() / perSecond)) : UNLIMITED;
+    }
+
+    private long capacity(String endpoint) {
+        return Math.max(1, environment.getProperty(PROPERTY_PREFIX + "endpoints." + endpoint + ".capacity", Long.class, defaultCapacity));
+    }
+}
@@ -0,0 +1,38 @@
+package com.pratice.juicestock.limit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket kept as the single instant at which it will be full again, so taking a token
+ * is one compare-and-set. A bucket that has been full for a while is indistinguishable from a
+ * new one, which lets idle buckets be evicted freely.
+ */
+final class TokenBucket {
+
+    private final long nanosPerToken;
+    private final long capacityNanos;
+    private final AtomicLong fullAt;
+
+    TokenBucket(long nanosPerToken, long capacity, long now) {
+        this.nanosPerToken = nanosPerToken;
+        this.capacityNanos = nanosPerToken * capacity;
+        this.fullAt = new AtomicLong(now);
+    }
+
+    /**
+     * Takes a token and returns 0, or returns how many nanoseconds to wait for the next one.
+     */
+    long tryAcquire(long now) {
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + nanosPerToken;
+            long wait = next - now - capacityNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.pratice.juicestock.mapper;
 import com.pratice.juicestock.dto.JuiceDTO;
 import com.pratice.juicestock.entity.Juice;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import org.mapstruct.factory.Mappers;
 
 @Mapper
@@ -10,6 +11,7 @@ public interface JuiceMapper {
 
     JuiceMapper INSTANCE = Mappers.getMapper(JuiceMapper.class);
 
+    @Mapping(target = "version", ignore = true)
     Juice toModel(JuiceDTO juiceDTO);
 
     JuiceDTO toDTO(Juice juice);
@@ -0,0 +1,165 @@
+package com.pratice.juicestock.metrics;
+
+import com.pratice.juicestock.exception.InvalidCursorException;
+import com.pratice.juicestock.exception.JuiceAlreadyRegisteredException;
+import com.pratice.juicestock.exception.JuiceNotFoundException;
+import com.pratice.juicestock.exception.JuiceStockExceededException;
+import com.pratice.juicestock.exception.JuiceVersionMismatchException;
+import com.pratice.juicestock.stock.StockStatistics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Meters of the {@code JuiceService} operations: a {@value #OPERATION_TIMER} timer with a
+ * percentile histogram per operation and outcome, the {@value #REJECTION_COUNTER} counter of
+ * refused stock changes, the {@value #CONFLICT_COUNTER} and {@value #RETRY_COUNTER} counters
+ * of optimistic version conflicts and their retries, and the {@value #UNITS_GAUGE} and
+ * {@value #NEAR_MAX_GAUGE} gauges, read from the {@link StockStatistics} kept in memory, so a
+ * scrape neither scans the {@code juice} table nor misses stock not written to it yet. The
+ * latencies of the operations that are a load signal are also kept in a {@link LatencyHistogram}
+ * that load shedding drains to watch the recent percentiles.
+ */
+@Component
+public class JuiceServiceMetrics {
+
+    public static final String OPERATION_TIMER = "juicestock.service";
+    public static final String REJECTION_COUNTER = "juicestock.stock.rejections";
+    public static final String CONFLICT_COUNTER = "juicestock.stock.conflicts";
+    public static final String RETRY_COUNTER = "juicestock.stock.retries";
+    public static final String UNITS_GAUGE = "juicestock.stock.units";
+    public static final String NEAR_MAX_GAUGE = "juicestock.stock.near.max";
+
+    public static final String OUTCOME_SUCCESS = "success";
+    public static final String OUTCOME_NOT_FOUND = "not_found";
+    public static final String OUTCOME_EXCEEDED = "exceeded";
+    public static final String OUTCOME_VERSION_MISMATCH = "version_mismatch";
+    public static final String OUTCOME_CONFLICT = "conflict";
+    public static final String OUTCOME_ALREADY_REGISTERED = "already_registered";
+    public static final String OUTCOME_INVALID_CURSOR = "invalid_cursor";
+    public static final String OUTCOME_ERROR = "error";
+
+    private final MeterRegistry meterRegistry;
+    private final StockStatistics stockStatistics;
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> rejectionCounters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> conflictCounters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> retryCounters = new ConcurrentHashMap<>();
+    private final LatencyHistogram recentLatencies = new LatencyHistogram();
+
+    @Autowired
+    public JuiceServiceMetrics(MeterRegistry meterRegistry, StockStatistics stockStatistics) {
+        this.meterRegistry = meterRegistry;
+        this.stockStatistics = stockStatistics;
+        Gauge.builder(UNITS_GAUGE, this, JuiceServiceMetrics::units)
+                .description("Stock units of all juices")
+                .baseUnit("units")
+                .register(meterRegistry);
+        Gauge.builder(NEAR_MAX_GAUGE, this, JuiceServiceMetrics::nearMax)
+                .description("Juices whose stock is at or above " + stockStatistics.getNearMaxPercent() + "% of their max")
+                .baseUnit("juices")
+                .register(meterRegistry);
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void success(Timer.Sample sample, String operation, boolean loadSignal) {
+        record(sample.stop(timer(operation, OUTCOME_SUCCESS)), loadSignal);
+    }
+
+    public void failure(Timer.Sample sample, String operation, boolean loadSignal, Throwable cause) {
+        String outcome = outcome(cause);
+        record(sample.stop(timer(operation, outcome)), loadSignal);
+        if (OUTCOME_EXCEEDED.equals(outcome)) {
+            rejected(operation, 1);
+        }
+    }
+
+    public void rejected(String operation, int count) {
+        if (count > 0) {
+            rejectionCounters.computeIfAbsent(operation, key -> Counter.builder(REJECTION_COUNTER)
+                    .description("Stock changes rejected by the stock limits or for an unknown juice")
+                    .tag("operation", key)
+                    .register(meterRegistry))
+                    .increment(count);
+        }
+    }
+
+    public void conflicted(String operation) {
+        conflictCounters.computeIfAbsent(operation, key -> Counter.builder(CONFLICT_COUNTER)
+                .description("Stock changes that lost an optimistic version check to a concurrent change")
+                .tag("operation", key)
+                .register(meterRegistry))
+                .increment();
+    }
+
+    public void retried(String operation) {
+        retryCounters.computeIfAbsent(operation, key -> Counter.builder(RETRY_COUNTER)
+                .description("Stock changes attempted again after a version conflict")
+                .tag("operation", key)
+                .register(meterRegistry))
+                .increment();
+    }
+
+    /**
+     * Returns the given percentile, in nanoseconds, of the operations finished since the
+     * previous call, or -1 when there were fewer than {@code minSamples} of them.
+     */
+    public long drainLatencyPercentile(double percentile, long minSamples) {
+        return recentLatencies.drainPercentile(percentile, minSamples);
+    }
+
+    private void record(long latencyNanos, boolean loadSignal) {
+        if (loadSignal) {
+            recentLatencies.record(latencyNanos);
+        }
+    }
+
+    private double units() {
+        return stockStatistics.units();
+    }
+
+    private double nearMax() {
+        return stockStatistics.nearMax();
+    }
+
+    private Timer timer(String operation, String outcome) {
+        return timers.computeIfAbsent(operation + ':' + outcome, key -> Timer.builder(OPERATION_TIMER)
+                .description("Time spent in JuiceService operations")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    private static String outcome(Throwable cause) {
+        if (cause instanceof JuiceNotFoundException) {
+            return OUTCOME_NOT_FOUND;
+        }
+        if (cause instanceof JuiceStockExceededException) {
+            return OUTCOME_EXCEEDED;
+        }
+        if (cause instanceof JuiceVersionMismatchException) {
+            return OUTCOME_VERSION_MISMATCH;
+        }
+        if (cause instanceof OptimisticLockingFailureException) {
+            return OUTCOME_CONFLICT;
+        }
+        if (cause instanceof JuiceAlreadyRegisteredException) {
+            return OUTCOME_ALREADY_REGISTERED;
+        }
+        if (cause instanceof InvalidCursorException) {
+            return OUTCOME_INVALID_CURSOR;
+        }
+        return OUTCOME_ERROR;
+    }
+}
@@ -0,0 +1,64 @@
+package com.pratice.juicestock.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram over the interval since it was last drained. Buckets split each
+ * power of two of nanoseconds in four, so a percentile is read with at most 25% of error,
+ * which is plenty to tell a healthy service from an overloaded one.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int BUCKETS = (Long.SIZE + 1) << SUB_BUCKET_BITS;
+
+    private volatile AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void record(long nanos) {
+        counts.incrementAndGet(bucket(Math.max(nanos, 1)));
+    }
+
+    /**
+     * Returns the given percentile of the latencies recorded since the previous call and starts
+     * a new interval, or -1 when fewer than {@code minSamples} latencies were recorded.
+     */
+    public long drainPercentile(double percentile, long minSamples) {
+        AtomicLongArray drained = counts;
+        counts = new AtomicLongArray(BUCKETS);
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += drained.get(i);
+        }
+        if (total < Math.max(minSamples, 1)) {
+            return -1;
+        }
+        long rank = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += drained.get(i);
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    private static int bucket(long nanos) {
+        int exponent = Long.SIZE - Long.numberOfLeadingZeros(nanos);
+        if (exponent <= SUB_BUCKET_BITS + 1) {
+            return (int) nanos;
+        }
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS - 1)) & ((1 << SUB_BUCKET_BITS) - 1);
+        return (exponent << SUB_BUCKET_BITS) | subBucket;
+    }
+
+    private static long upperBound(int bucket) {
+        int exponent = bucket >>> SUB_BUCKET_BITS;
+        if (exponent <= SUB_BUCKET_BITS + 1) {
+            return bucket;
+        }
+        int subBucket = bucket & ((1 << SUB_BUCKET_BITS) - 1);
+        long lowerBound = (1L << (exponent - 1)) + ((long) subBucket << (exponent - SUB_BUCKET_BITS - 1));
+        return lowerBound + (1L << (exponent - SUB_BUCKET_BITS - 1)) - 1;
+    }
+}
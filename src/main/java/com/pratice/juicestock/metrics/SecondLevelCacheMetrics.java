@@ -0,0 +1,55 @@
+package com.pratice.juicestock.metrics;
+
+import com.pratice.juicestock.entity.Juice;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.NaturalIdStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Publishes the {@value #HIT_RATIO_GAUGE} gauge: the share of the lookups of juices by id,
+ * tagged {@code region=}{@value Juice#CACHE_REGION}, and by name, tagged
+ * {@code region=}{@value Juice#NATURAL_ID_CACHE_REGION}, answered by the second-level cache
+ * since startup. Hibernate publishes the raw counts as the {@code hibernate.*} meters.
+ */
+@Component
+public class SecondLevelCacheMetrics {
+
+    public static final String HIT_RATIO_GAUGE = "juicestock.cache.second.level.hit.ratio";
+
+    private final Statistics statistics;
+
+    @Autowired
+    public SecondLevelCacheMetrics(MeterRegistry meterRegistry, EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Gauge.builder(HIT_RATIO_GAUGE, this, SecondLevelCacheMetrics::entityHitRatio)
+                .description("Share of the juice lookups by id answered by the second-level cache")
+                .tag("region", Juice.CACHE_REGION)
+                .register(meterRegistry);
+        Gauge.builder(HIT_RATIO_GAUGE, this, SecondLevelCacheMetrics::naturalIdHitRatio)
+                .description("Share of the juice lookups by name answered by the second-level cache")
+                .tag("region", Juice.NATURAL_ID_CACHE_REGION)
+                .register(meterRegistry);
+    }
+
+    private double entityHitRatio() {
+        CacheRegionStatistics regionStatistics = statistics.getDomainDataRegionStatistics(Juice.CACHE_REGION);
+        return regionStatistics == null ? 0 : ratio(regionStatistics.getHitCount(), regionStatistics.getMissCount());
+    }
+
+    private double naturalIdHitRatio() {
+        NaturalIdStatistics naturalIdStatistics = statistics.getNaturalIdStatistics(Juice.class.getName());
+        return naturalIdStatistics == null ? 0 : ratio(naturalIdStatistics.getCacheHitCount(), naturalIdStatistics.getCacheMissCount());
+    }
+
+    private static double ratio(long hits, long misses) {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+}
@@ -0,0 +1,24 @@
+package com.pratice.juicestock.metrics;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Times every call of the method as the given operation of the
+ * {@value JuiceServiceMetrics#OPERATION_TIMER} timer, tagged with the outcome of the call.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface TimedOperation {
+
+    String value();
+
+    /**
+     * Whether the latency of the call is watched by load shedding. Streaming and bulk
+     * operations take as long as the catalog or the upload is large, not as the service is
+     * loaded, so they are left out.
+     */
+    boolean loadSignal() default true;
+}
@@ -0,0 +1,37 @@
+package com.pratice.juicestock.metrics;
+
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records the methods annotated with {@link TimedOperation} in {@link JuiceServiceMetrics}.
+ * Calls a method makes on its own object are not proxied and so not timed again.
+ */
+@Aspect
+@Component
+public class TimedOperationAspect {
+
+    private final JuiceServiceMetrics juiceServiceMetrics;
+
+    @Autowired
+    public TimedOperationAspect(JuiceServiceMetrics juiceServiceMetrics) {
+        this.juiceServiceMetrics = juiceServiceMetrics;
+    }
+
+    @Around("@annotation(timedOperation)")
+    public Object time(ProceedingJoinPoint joinPoint, TimedOperation timedOperation) throws Throwable {
+        Timer.Sample sample = juiceServiceMetrics.start();
+        try {
+            Object result = joinPoint.proceed();
+            juiceServiceMetrics.success(sample, timedOperation.value(), timedOperation.loadSignal());
+            return result;
+        } catch (Throwable e) {
+            juiceServiceMetrics.failure(sample, timedOperation.value(), timedOperation.loadSignal(), e);
+            throw e;
+        }
+    }
+}
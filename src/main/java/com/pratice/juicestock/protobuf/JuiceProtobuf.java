@@ -0,0 +1,136 @@
+package com.pratice.juicestock.protobuf;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.enums.JuiceType;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Protobuf encoding of juices as described by {@code proto/juice.proto}, written field by
+ * field with {@link CodedOutputStream} so no generated classes or intermediate messages are
+ * needed. The juice type travels as its ordinal plus one, a single byte on the wire, leaving
+ * 0 for a missing type. As in proto3, a missing max or quantity reads as 0.
+ */
+public final class JuiceProtobuf {
+
+    public static final String MEDIA_TYPE = "application/x-protobuf";
+
+    private static final int ID = 1;
+    private static final int NAME = 2;
+    private static final int BRAND = 3;
+    private static final int MAX = 4;
+    private static final int QUANTITY = 5;
+    private static final int TYPE = 6;
+    private static final int VERSION = 7;
+    private static final int JUICES = 1;
+
+    private static final JuiceType[] TYPES = JuiceType.values();
+
+    private JuiceProtobuf() {
+    }
+
+    /**
+     * Writes a {@code JuiceList} message.
+     */
+    public static void writeList(CodedOutputStream output, List<JuiceDTO> juiceDTOs) throws IOException {
+        for (JuiceDTO juiceDTO : juiceDTOs) {
+            output.writeTag(JUICES, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            output.writeUInt32NoTag(size(juiceDTO));
+            write(output, juiceDTO);
+        }
+    }
+
+    /**
+     * Writes a {@code Juice} message.
+     */
+    public static void write(CodedOutputStream output, JuiceDTO juiceDTO) throws IOException {
+        if (juiceDTO.getId() != null) {
+            output.writeInt64(ID, juiceDTO.getId());
+        }
+        if (juiceDTO.getName() != null) {
+            output.writeString(NAME, juiceDTO.getName());
+        }
+        if (juiceDTO.getBrand() != null) {
+            output.writeString(BRAND, juiceDTO.getBrand());
+        }
+        if (juiceDTO.getMax() != null) {
+            output.writeInt32(MAX, juiceDTO.getMax());
+        }
+        if (juiceDTO.getQuantity() != null) {
+            output.writeInt32(QUANTITY, juiceDTO.getQuantity());
+        }
+        if (juiceDTO.getType() != null) {
+            output.writeEnum(TYPE, juiceDTO.getType().ordinal() + 1);
+        }
+        if (juiceDTO.getVersion() != null) {
+            output.writeInt64(VERSION, juiceDTO.getVersion());
+        }
+    }
+
+    /**
+     * Reads a {@code Juice} message up to the end of the input, skipping unknown fields.
+     */
+    public static JuiceDTO read(CodedInputStream input) throws IOException {
+        JuiceDTO juiceDTO = JuiceDTO.builder().max(0).quantity(0).build();
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case ID:
+                    juiceDTO.setId(input.readInt64());
+                    break;
+                case NAME:
+                    juiceDTO.setName(input.readString());
+                    break;
+                case BRAND:
+                    juiceDTO.setBrand(input.readString());
+                    break;
+                case MAX:
+                    juiceDTO.setMax(input.readInt32());
+                    break;
+                case QUANTITY:
+                    juiceDTO.setQuantity(input.readInt32());
+                    break;
+                case TYPE:
+                    int type = input.readEnum();
+                    juiceDTO.setType(type > 0 && type <= TYPES.length ? TYPES[type - 1] : null);
+                    break;
+                case VERSION:
+                    juiceDTO.setVersion(input.readInt64());
+                    break;
+                default:
+                    input.skipField(tag);
+            }
+        }
+        return juiceDTO;
+    }
+
+    private static int size(JuiceDTO juiceDTO) {
+        int size = 0;
+        if (juiceDTO.getId() != null) {
+            size += CodedOutputStream.computeInt64Size(ID, juiceDTO.getId());
+        }
+        if (juiceDTO.getName() != null) {
+            size += CodedOutputStream.computeStringSize(NAME, juiceDTO.getName());
+        }
+        if (juiceDTO.getBrand() != null) {
+            size += CodedOutputStream.computeStringSize(BRAND, juiceDTO.getBrand());
+        }
+        if (juiceDTO.getMax() != null) {
+            size += CodedOutputStream.computeInt32Size(MAX, juiceDTO.getMax());
+        }
+        if (juiceDTO.getQuantity() != null) {
+            size += CodedOutputStream.computeInt32Size(QUANTITY, juiceDTO.getQuantity());
+        }
+        if (juiceDTO.getType() != null) {
+            size += CodedOutputStream.computeEnumSize(TYPE, juiceDTO.getType().ordinal() + 1);
+        }
+        if (juiceDTO.getVersion() != null) {
+            size += CodedOutputStream.computeInt64Size(VERSION, juiceDTO.getVersion());
+        }
+        return size;
+    }
+}
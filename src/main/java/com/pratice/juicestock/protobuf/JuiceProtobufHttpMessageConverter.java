@@ -0,0 +1,71 @@
+package com.pratice.juicestock.protobuf;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.pratice.juicestock.dto.JuiceDTO;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Reads a juice and writes a juice or a list of juices as {@value JuiceProtobuf#MEDIA_TYPE}.
+ */
+public class JuiceProtobufHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public JuiceProtobufHttpMessageConverter() {
+        super(MediaType.parseMediaType(JuiceProtobuf.MEDIA_TYPE));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return JuiceDTO.class.isAssignableFrom(clazz) || isJuiceList(clazz, clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return JuiceDTO.class.equals(clazz) && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return JuiceDTO.class.equals(type) && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        return (JuiceDTO.class.isAssignableFrom(clazz) || isJuiceList(type != null ? type : clazz, clazz)) && canWrite(mediaType);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return JuiceProtobuf.read(CodedInputStream.newInstance(inputMessage.getBody()));
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        return readInternal(JuiceDTO.class, inputMessage);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+        CodedOutputStream output = CodedOutputStream.newInstance(outputMessage.getBody());
+        if (object instanceof JuiceDTO) {
+            JuiceProtobuf.write(output, (JuiceDTO) object);
+        } else {
+            JuiceProtobuf.writeList(output, (List<JuiceDTO>) object);
+        }
+        output.flush();
+    }
+
+    private static boolean isJuiceList(Type type, Class<?> clazz) {
+        return List.class.isAssignableFrom(clazz)
+                && JuiceDTO.class.equals(ResolvableType.forType(type).asCollection().resolveGeneric(0));
+    }
+}
@@ -0,0 +1,19 @@
+package com.pratice.juicestock.repository;
+
+import com.pratice.juicestock.dto.JuiceDTO;
+
+import java.util.Optional;
+
+/**
+ * Lookups and deletes of {@link JuiceRepository} that go through the second-level cache of
+ * juices instead of bypassing it.
+ */
+public interface CachedJuiceRepository {
+
+    Optional<JuiceDTO> findJuiceDTOByName(String name);
+
+    /**
+     * Returns the name of the deleted juice, or nothing if there was no juice with that id.
+     */
+    Optional<String> deleteJuiceById(Long id);
+}
@@ -0,0 +1,44 @@
+package com.pratice.juicestock.repository;
+
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.entity.Juice;
+import com.pratice.juicestock.mapper.JuiceMapper;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Optional;
+
+/**
+ * Names are resolved through the natural-id cache and juices through the entity cache, so
+ * looking up a juice read recently costs no query. Deletes go through the entity as well, so
+ * Hibernate drops the entries of that juice alone, where a JPQL delete would empty both regions.
+ */
+public class CachedJuiceRepositoryImpl implements CachedJuiceRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final JuiceMapper juiceMapper = JuiceMapper.INSTANCE;
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<JuiceDTO> findJuiceDTOByName(String name) {
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(Juice.class)
+                .loadOptional(name)
+                .map(juiceMapper::toDTO);
+    }
+
+    @Override
+    @Transactional
+    public Optional<String> deleteJuiceById(Long id) {
+        Juice juice = entityManager.find(Juice.class, id);
+        if (juice == null) {
+            return Optional.empty();
+        }
+        entityManager.remove(juice);
+        return Optional.of(juice.getName());
+    }
+}
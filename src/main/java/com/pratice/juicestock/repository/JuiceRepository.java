@@ -1,11 +1,83 @@
 package com.pratice.juicestock.repository;
 
+import com.pratice.juicestock.dto.JuiceDTO;
 import com.pratice.juicestock.entity.Juice;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Optional;
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
-public interface JuiceRepository extends JpaRepository<Juice, Long> {
+import static org.hibernate.annotations.QueryHints.FETCH_SIZE;
+import static org.hibernate.annotations.QueryHints.READ_ONLY;
 
-    Optional<Juice> findByName(String name);
+public interface JuiceRepository extends JpaRepository<Juice, Long>, JpaSpecificationExecutor<Juice>, CachedJuiceRepository {
+
+    /**
+     * Builds {@link JuiceDTO}s straight from the result set, so reads neither create managed
+     * entities nor keep their dirty-checking snapshots in the persistence context.
+     */
+    String SELECT_JUICE_DTO = "select new com.pratice.juicestock.dto.JuiceDTO(j.id, j.name, j.brand, j.max, j.quantity, j.type, j.version) from Juice j";
+
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = READ_ONLY, value = "true"))
+    @Query(SELECT_JUICE_DTO + " order by j.id")
+    List<JuiceDTO> findAllJuiceDTOs();
+
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = READ_ONLY, value = "true"))
+    @Query(SELECT_JUICE_DTO + " where j.id > :id order by j.id")
+    List<JuiceDTO> findJuiceDTOsAfter(@Param("id") Long id, Pageable pageable);
+
+    @QueryHints({@QueryHint(name = FETCH_SIZE, value = "100"), @QueryHint(name = READ_ONLY, value = "true")})
+    @Query(SELECT_JUICE_DTO + " order by j.id")
+    Stream<JuiceDTO> streamAll();
+
+    @Transactional(readOnly = true)
+    @Query("select j.name from Juice j where j.name in :names")
+    List<String> findNamesIn(@Param("names") Collection<String> names);
+
+    @Modifying
+    @Transactional
+    @Query("update Juice j set j.quantity = :quantity, j.version = j.version + 1 where j.id = :id")
+    int updateQuantity(@Param("id") Long id, @Param("quantity") int quantity);
+
+    @Modifying
+    @Transactional
+    @Query("update Juice j set j.quantity = :quantity, j.version = :version where j.id = :id and j.version <= :version")
+    int updateQuantityAndVersion(@Param("id") Long id, @Param("quantity") int quantity, @Param("version") long version);
+
+    @Modifying
+    @Transactional
+    @Query("update Juice j set j.quantity = :quantity, j.version = :version where j.id = :id and j.version = :expectedVersion")
+    int updateQuantityAndVersionIfVersion(@Param("id") Long id, @Param("quantity") int quantity, @Param("version") long version,
+                                          @Param("expectedVersion") long expectedVersion);
+
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("update Juice j set j.quantity = j.quantity + :quantity, j.version = j.version + 1 where j.id = :id and j.quantity + :quantity <= j.max")
+    int incrementQuantity(@Param("id") Long id, @Param("quantity") int quantity);
+
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("update Juice j set j.quantity = j.quantity - :quantity, j.version = j.version + 1 where j.id = :id and j.quantity >= :quantity")
+    int decrementQuantity(@Param("id") Long id, @Param("quantity") int quantity);
+
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("update Juice j set j.quantity = j.quantity + :quantity, j.version = j.version + 1 where j.id = :id and j.version = :version and j.quantity + :quantity <= j.max")
+    int incrementQuantityIfVersion(@Param("id") Long id, @Param("quantity") int quantity, @Param("version") long version);
+
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query("update Juice j set j.quantity = j.quantity - :quantity, j.version = j.version + 1 where j.id = :id and j.version = :version and j.quantity >= :quantity")
+    int decrementQuantityIfVersion(@Param("id") Long id, @Param("quantity") int quantity, @Param("version") long version);
 }
@@ -0,0 +1,37 @@
+package com.pratice.juicestock.repository;
+
+import com.pratice.juicestock.entity.Juice;
+import com.pratice.juicestock.enums.JuiceType;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Filters of the juice listing. Each one is a plain column comparison, so the database can
+ * answer it from the {@code type}, {@code brand} and {@code quantity} indexes of {@link Juice}.
+ */
+public final class JuiceSpecifications {
+
+    private JuiceSpecifications() {
+    }
+
+    public static Specification<Juice> hasType(JuiceType type) {
+        return (root, query, builder) -> builder.equal(root.get("type"), type);
+    }
+
+    public static Specification<Juice> hasBrand(String brand) {
+        return (root, query, builder) -> builder.equal(root.get("brand"), brand);
+    }
+
+    public static Specification<Juice> quantityAtLeast(int quantity) {
+        return (root, query, builder) -> builder.greaterThanOrEqualTo(root.get("quantity"), quantity);
+    }
+
+    public static Specification<Juice> quantityAtMost(int quantity) {
+        return (root, query, builder) -> builder.lessThanOrEqualTo(root.get("quantity"), quantity);
+    }
+
+    public static Specification<Juice> quantityBelowPercentOfMax(int percent) {
+        return (root, query, builder) -> builder.lessThan(
+                builder.prod(root.<Integer>get("quantity"), 100),
+                builder.prod(root.<Integer>get("max"), percent));
+    }
+}
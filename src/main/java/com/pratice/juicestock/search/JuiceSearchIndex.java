@@ -0,0 +1,171 @@
+package com.pratice.juicestock.search;
+
+import com.pratice.juicestock.changes.JuiceChangeListener;
+import com.pratice.juicestock.changes.Tombstones;
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.dto.JuiceSuggestionDTO;
+import com.pratice.juicestock.enums.StockChangeType;
+import com.pratice.juicestock.repository.JuiceRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory prefix index over the names and brands of the juices, for typeahead. Keys are
+ * folded to lower case without accents, so {@code "cafe"} finds {@code "Café"}, and every word
+ * of a name or brand is a key of its own, so {@code "jui"} finds {@code "Apple juice"}. The keys
+ * are kept sorted in skip lists: a search seeks to its prefix and reads the first matches in
+ * order, without scanning the catalog or running a function over every row of the table as a
+ * query would. Name matches come before brand matches.
+ * <p>
+ * Names and brands never change, so the index only follows creations and deletions. A deleted
+ * juice leaves a tombstone, so a creation reported after the delete does not index it again,
+ * until {@link Tombstones} says no such late creation can arrive any more.
+ * The table is read once on startup.
+ */
+@Component
+public class JuiceSearchIndex implements SmartLifecycle, JuiceChangeListener {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final char KEY_SEPARATOR = '\u0000';
+    private static final JuiceSuggestionDTO REMOVED = new JuiceSuggestionDTO();
+
+    private final JuiceRepository juiceRepository;
+    private final ConcurrentMap<Long, JuiceSuggestionDTO> juices = new ConcurrentHashMap<>();
+    private final Tombstones tombstones;
+    private final ConcurrentSkipListMap<String, JuiceSuggestionDTO> names = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, JuiceSuggestionDTO> brands = new ConcurrentSkipListMap<>();
+    private volatile boolean running;
+
+    @Autowired
+    public JuiceSearchIndex(JuiceRepository juiceRepository,
+                            @Value("${juicestock.changes.tombstone-ttl:1m}") Duration tombstoneTtl) {
+        this.juiceRepository = juiceRepository;
+        this.tombstones = new Tombstones(tombstoneTtl);
+    }
+
+    public void add(JuiceDTO juiceDTO) {
+        JuiceSuggestionDTO suggestion = new JuiceSuggestionDTO(juiceDTO.getId(), juiceDTO.getName(), juiceDTO.getBrand(), juiceDTO.getType());
+        juices.computeIfAbsent(suggestion.getId(), id -> {
+            keys(suggestion.getName(), id).forEach(key -> names.put(key, suggestion));
+            keys(suggestion.getBrand(), id).forEach(key -> brands.put(key, suggestion));
+            return suggestion;
+        });
+    }
+
+    public void remove(Long id) {
+        juices.compute(id, (key, suggestion) -> {
+            if (suggestion != null && suggestion != REMOVED) {
+                keys(suggestion.getName(), id).forEach(names::remove);
+                keys(suggestion.getBrand(), id).forEach(brands::remove);
+            }
+            return REMOVED;
+        });
+        tombstones.lay(id, expired -> juices.remove(expired, REMOVED));
+    }
+
+    @Override
+    public void juiceSaved(StockChangeType type, JuiceDTO juiceDTO) {
+        if (type == StockChangeType.CREATED) {
+            add(juiceDTO);
+        }
+    }
+
+    @Override
+    public void juiceDeleted(Long id, String name) {
+        remove(id);
+    }
+
+    /**
+     * Returns up to {@code limit} juices with a name, or else a brand, having a word that starts
+     * with {@code query}, ignoring case and accents.
+     */
+    public List<JuiceSuggestionDTO> search(String query, int limit) {
+        String prefix = normalize(query);
+        if (prefix.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        Map<Long, JuiceSuggestionDTO> found = new LinkedHashMap<>();
+        collect(names, prefix, limit, found);
+        collect(brands, prefix, limit, found);
+        return new ArrayList<>(found.values());
+    }
+
+    private static void collect(NavigableMap<String, JuiceSuggestionDTO> index, String prefix, int limit, Map<Long, JuiceSuggestionDTO> found) {
+        if (found.size() >= limit) {
+            return;
+        }
+        for (JuiceSuggestionDTO suggestion : index.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+            found.putIfAbsent(suggestion.getId(), suggestion);
+            if (found.size() >= limit) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns a key for the whole text and for the rest of it from each word on, each ending
+     * with the id so that juices sharing a name or brand keep their own keys.
+     */
+    private static List<String> keys(String text, Long id) {
+        String normalized = normalize(text);
+        List<String> keys = new ArrayList<>();
+        if (normalized.isEmpty()) {
+            return keys;
+        }
+        String suffix = KEY_SEPARATOR + id.toString();
+        keys.add(normalized + suffix);
+        for (int i = normalized.indexOf(' '); i >= 0; i = normalized.indexOf(' ', i + 1)) {
+            keys.add(normalized.substring(i + 1) + suffix);
+        }
+        return keys;
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String withoutMarks = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATORS.matcher(withoutMarks.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    /**
+     * Indexes the juices that no write has reported yet. Runs before the web server starts.
+     */
+    @Override
+    public void start() {
+        juiceRepository.findAllJuiceDTOs().forEach(this::add);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+}
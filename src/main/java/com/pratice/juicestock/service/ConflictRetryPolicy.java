@@ -0,0 +1,58 @@
+package com.pratice.juicestock.service;
+
+import com.pratice.juicestock.metrics.JuiceServiceMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded retry of stock changes that lost an optimistic version check to a concurrent
+ * change. Before attempt {@code n + 1} the caller sleeps a random time between zero and
+ * {@code initial-backoff * 2^(n - 1)}, capped at {@code max-backoff}, so callers that
+ * collided do not collide again on the next attempt.
+ */
+@Component
+public class ConflictRetryPolicy {
+
+    private final JuiceServiceMetrics juiceServiceMetrics;
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+
+    @Autowired
+    public ConflictRetryPolicy(JuiceServiceMetrics juiceServiceMetrics,
+                               @Value("${juicestock.retry.max-attempts:8}") int maxAttempts,
+                               @Value("${juicestock.retry.initial-backoff:5ms}") Duration initialBackoff,
+                               @Value("${juicestock.retry.max-backoff:200ms}") Duration maxBackoff) {
+        this.juiceServiceMetrics = juiceServiceMetrics;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+    }
+
+    /**
+     * Records the conflict of the given attempt and waits before the next one, or rethrows
+     * the conflict once every attempt has been used.
+     */
+    public void backOff(String operation, int attempt, OptimisticLockingFailureException conflict) {
+        juiceServiceMetrics.conflicted(operation);
+        if (attempt >= maxAttempts) {
+            throw conflict;
+        }
+        long ceiling = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(attempt - 1, 30));
+        if (ceiling > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw conflict;
+            }
+        }
+        juiceServiceMetrics.retried(operation);
+    }
+}
@@ -1,72 +1,377 @@
 package com.pratice.juicestock.service;
 
+import com.pratice.juicestock.cache.JuiceNameCache;
+import com.pratice.juicestock.catalog.CatalogVersion;
+import com.pratice.juicestock.catalog.JuiceCatalog;
+import com.pratice.juicestock.changes.JuiceChangePublisher;
 import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.dto.JuiceFilterDTO;
+import com.pratice.juicestock.dto.JuicePageDTO;
+import com.pratice.juicestock.dto.JuiceSuggestionDTO;
+import com.pratice.juicestock.dto.StockAdjustmentDTO;
+import com.pratice.juicestock.dto.StockAdjustmentResultDTO;
+import com.pratice.juicestock.dto.StockStatisticsDTO;
 import com.pratice.juicestock.entity.Juice;
+import com.pratice.juicestock.enums.StockChangeType;
+import com.pratice.juicestock.exception.InvalidCursorException;
+import com.pratice.juicestock.exception.InvalidSortException;
 import com.pratice.juicestock.exception.JuiceAlreadyRegisteredException;
 import com.pratice.juicestock.exception.JuiceNotFoundException;
 import com.pratice.juicestock.exception.JuiceStockExceededException;
+import com.pratice.juicestock.exception.JuiceVersionMismatchException;
 import com.pratice.juicestock.mapper.JuiceMapper;
+import com.pratice.juicestock.metrics.JuiceServiceMetrics;
+import com.pratice.juicestock.metrics.TimedOperation;
 import com.pratice.juicestock.repository.JuiceRepository;
+import com.pratice.juicestock.repository.JuiceSpecifications;
+import com.pratice.juicestock.search.JuiceSearchIndex;
+import com.pratice.juicestock.stock.StockEngine;
+import com.pratice.juicestock.stock.StockStatistics;
 import lombok.AllArgsConstructor;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @AllArgsConstructor(onConstructor = @__(@Autowired))
 public class JuiceService {
 
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int MAX_SEARCH_RESULTS = 50;
+    private static final Map<String, Comparator<JuiceDTO>> SORTABLE_PROPERTIES = sortableProperties();
+
     private final JuiceRepository juiceRepository;
+    private final StockEngine stockEngine;
+    private final JuiceNameCache juiceNameCache;
+    private final JuiceServiceMetrics juiceServiceMetrics;
+    private final ConflictRetryPolicy conflictRetryPolicy;
+    private final StockStatistics stockStatistics;
+    private final JuiceCatalog juiceCatalog;
+    private final JuiceSearchIndex juiceSearchIndex;
+    private final JuiceChangePublisher juiceChangePublisher;
     private final JuiceMapper juiceMapper = JuiceMapper.INSTANCE;
 
+    @TimedOperation("create")
     public JuiceDTO createJuice(JuiceDTO juiceDTO) throws JuiceAlreadyRegisteredException {
-        verifyIfIAlreadyRegistered(juiceDTO.getName());
         Juice juice = juiceMapper.toModel(juiceDTO);
-        Juice savedJuice = juiceRepository.save(juice);
-        return juiceMapper.toDTO(savedJuice);
+        Juice savedJuice;
+        try {
+            savedJuice = juiceRepository.save(juice);
+        } catch (DataIntegrityViolationException e) {
+            if (isNameAlreadyRegistered(e)) {
+                throw new JuiceAlreadyRegisteredException(juiceDTO.getName());
+            }
+            throw e;
+        }
+        return created(savedJuice);
     }
 
+    /**
+     * Inserts the juices in one transaction, batched by the JDBC driver. Fails as a whole,
+     * with a {@link DataIntegrityViolationException}, if any of the names is already registered.
+     */
+    @TimedOperation(value = "createBatch", loadSignal = false)
+    public List<JuiceDTO> createJuices(List<JuiceDTO> juiceDTOs) {
+        return juiceRepository.saveAll(juiceDTOs.stream()
+                .map(juiceMapper::toModel)
+                .collect(Collectors.toList()))
+                .stream()
+                .map(this::created)
+                .collect(Collectors.toList());
+    }
+
+    @TimedOperation("findByName")
     public JuiceDTO findByName(String name) throws JuiceNotFoundException {
-        Juice foundJuice = juiceRepository.findByName(name)
-                .orElseThrow(() -> new JuiceNotFoundException(name));
-        return juiceMapper.toDTO(foundJuice);
+        JuiceDTO foundJuiceDTO = juiceNameCache.get(name, key -> juiceRepository.findJuiceDTOByName(key)
+                .map(stockEngine::overlay)
+                .orElse(null));
+        if (foundJuiceDTO == null) {
+            throw new JuiceNotFoundException(name);
+        }
+        return foundJuiceDTO;
+    }
+
+    /**
+     * Returns the juice with the given name if it is cached, without going to the database.
+     */
+    public JuiceDTO findCachedByName(String name) {
+        return juiceNameCache.getIfPresent(name);
     }
 
+    /**
+     * Returns up to {@code limit} juices whose name, or else brand, has a word starting with
+     * {@code query}, ignoring case and accents.
+     */
+    @TimedOperation("search")
+    public List<JuiceSuggestionDTO> search(String query, int limit) {
+        return juiceSearchIndex.search(query, Math.max(1, Math.min(limit, MAX_SEARCH_RESULTS)));
+    }
+
+    public CatalogVersion catalogVersion() {
+        return juiceCatalog.version();
+    }
+
+    @TimedOperation("listAll")
     public List<JuiceDTO> listAll() {
-        return juiceRepository.findAll()
+        return juiceRepository.findAllJuiceDTOs()
+                .stream()
+                .map(stockEngine::overlay)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Selects from the catalog if it can. Otherwise queries the table, except that when the
+     * stock engine keeps quantities the table has not caught up with, the quantity filters and
+     * the order are applied in memory to the overlaid juices.
+     */
+    @TimedOperation("listFiltered")
+    public List<JuiceDTO> listAll(JuiceFilterDTO juiceFilterDTO, Sort sort) throws InvalidSortException {
+        Sort order = toSort(sort);
+        List<JuiceDTO> juices = juiceCatalog.select(juiceFilterDTO, order);
+        if (juices != null) {
+            return juices;
+        }
+        if (!stockEngine.overlaysQuantity() || !usesQuantity(juiceFilterDTO, order)) {
+            return juiceRepository.findAll(toSpecification(juiceFilterDTO, true), order)
+                    .stream()
+                    .map(juiceMapper::toDTO)
+                    .map(stockEngine::overlay)
+                    .collect(Collectors.toList());
+        }
+        return juiceRepository.findAll(toSpecification(juiceFilterDTO, false))
                 .stream()
                 .map(juiceMapper::toDTO)
+                .map(stockEngine::overlay)
+                .filter(juiceDTO -> matchesQuantity(juiceFilterDTO, juiceDTO))
+                .sorted(toComparator(order))
+                .collect(Collectors.toList());
+    }
+
+    @TimedOperation("listPage")
+    public JuicePageDTO listPage(String cursor, int limit) throws InvalidCursorException {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<JuiceDTO> juices = juiceRepository.findJuiceDTOsAfter(decodeCursor(cursor), PageRequest.of(0, pageSize + 1))
+                .stream()
+                .map(stockEngine::overlay)
                 .collect(Collectors.toList());
+        if (juices.size() <= pageSize) {
+            return new JuicePageDTO(juices, null);
+        }
+        List<JuiceDTO> page = juices.subList(0, pageSize);
+        return new JuicePageDTO(page, encodeCursor(page.get(pageSize - 1).getId()));
+    }
+
+    @TimedOperation(value = "streamAll", loadSignal = false)
+    @Transactional(readOnly = true)
+    public void streamAll(Consumer<JuiceDTO> consumer) {
+        try (Stream<JuiceDTO> juices = juiceRepository.streamAll()) {
+            juices.map(stockEngine::overlay).forEach(consumer);
+        }
     }
 
+    @TimedOperation("statistics")
+    public StockStatisticsDTO statistics() {
+        return stockStatistics.snapshot();
+    }
+
+    @TimedOperation("deleteById")
     public void deleteById(Long id) throws JuiceNotFoundException {
-        verifyIfExists(id);
-        juiceRepository.deleteById(id);
+        String name = juiceRepository.deleteJuiceById(id).orElseThrow(() -> new JuiceNotFoundException(id));
+        stockEngine.evict(id);
+        juiceChangePublisher.deleted(id, name);
+    }
+
+    private JuiceDTO created(Juice savedJuice) {
+        JuiceDTO createdJuiceDTO = juiceMapper.toDTO(savedJuice);
+        juiceChangePublisher.saved(StockChangeType.CREATED, createdJuiceDTO);
+        return createdJuiceDTO;
+    }
+
+    private static boolean isNameAlreadyRegistered(DataIntegrityViolationException e) {
+        if (!(e.getCause() instanceof ConstraintViolationException)) {
+            return false;
+        }
+        String constraintName = ((ConstraintViolationException) e.getCause()).getConstraintName();
+        return constraintName != null && constraintName.toUpperCase(Locale.ROOT).contains(Juice.NAME_UNIQUE_CONSTRAINT);
+    }
+
+    private static boolean usesQuantity(JuiceFilterDTO juiceFilterDTO, Sort order) {
+        return juiceFilterDTO.getMinQuantity() != null
+                || juiceFilterDTO.getMaxQuantity() != null
+                || juiceFilterDTO.getBelowPercent() != null
+                || order.getOrderFor("quantity") != null;
+    }
+
+    private static boolean matchesQuantity(JuiceFilterDTO juiceFilterDTO, JuiceDTO juiceDTO) {
+        int quantity = juiceDTO.getQuantity();
+        return (juiceFilterDTO.getMinQuantity() == null || quantity >= juiceFilterDTO.getMinQuantity())
+                && (juiceFilterDTO.getMaxQuantity() == null || quantity <= juiceFilterDTO.getMaxQuantity())
+                && (juiceFilterDTO.getBelowPercent() == null
+                || (long) quantity * 100 < (long) juiceDTO.getMax() * juiceFilterDTO.getBelowPercent());
+    }
+
+    private static Comparator<JuiceDTO> toComparator(Sort order) {
+        Comparator<JuiceDTO> comparator = null;
+        for (Sort.Order property : order) {
+            Comparator<JuiceDTO> next = SORTABLE_PROPERTIES.get(property.getProperty());
+            if (property.isDescending()) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        return comparator;
+    }
+
+    private static Map<String, Comparator<JuiceDTO>> sortableProperties() {
+        Map<String, Comparator<JuiceDTO>> properties = new HashMap<>();
+        properties.put("id", Comparator.comparing(JuiceDTO::getId));
+        properties.put("name", Comparator.comparing(JuiceDTO::getName));
+        properties.put("brand", Comparator.comparing(JuiceDTO::getBrand));
+        properties.put("type", Comparator.comparing(JuiceDTO::getType));
+        properties.put("max", Comparator.comparing(JuiceDTO::getMax));
+        properties.put("quantity", Comparator.comparing(JuiceDTO::getQuantity));
+        return Collections.unmodifiableMap(properties);
+    }
+
+    private static Specification<Juice> toSpecification(JuiceFilterDTO juiceFilterDTO, boolean withQuantity) {
+        Specification<Juice> specification = Specification.where(null);
+        if (juiceFilterDTO.getType() != null) {
+            specification = specification.and(JuiceSpecifications.hasType(juiceFilterDTO.getType()));
+        }
+        if (juiceFilterDTO.getBrand() != null) {
+            specification = specification.and(JuiceSpecifications.hasBrand(juiceFilterDTO.getBrand()));
+        }
+        if (!withQuantity) {
+            return specification;
+        }
+        if (juiceFilterDTO.getMinQuantity() != null) {
+            specification = specification.and(JuiceSpecifications.quantityAtLeast(juiceFilterDTO.getMinQuantity()));
+        }
+        if (juiceFilterDTO.getMaxQuantity() != null) {
+            specification = specification.and(JuiceSpecifications.quantityAtMost(juiceFilterDTO.getMaxQuantity()));
+        }
+        if (juiceFilterDTO.getBelowPercent() != null) {
+            specification = specification.and(JuiceSpecifications.quantityBelowPercentOfMax(juiceFilterDTO.getBelowPercent()));
+        }
+        return specification;
     }
 
-    private void verifyIfIAlreadyRegistered(String name) throws JuiceAlreadyRegisteredException {
-        Optional<Juice> optSavedJuice = juiceRepository.findByName(name);
-        if (optSavedJuice.isPresent()) {
-            throw new JuiceAlreadyRegisteredException(name);
+    private static Sort toSort(Sort sort) throws InvalidSortException {
+        if (sort.isUnsorted()) {
+            return Sort.by("id");
         }
+        for (Sort.Order order : sort) {
+            if (!SORTABLE_PROPERTIES.containsKey(order.getProperty())) {
+                throw new InvalidSortException(order.getProperty());
+            }
+        }
+        return sort.getOrderFor("id") == null ? sort.and(Sort.by("id")) : sort;
     }
 
-    private Juice verifyIfExists(Long id) throws JuiceNotFoundException {
-        return juiceRepository.findById(id)
-                .orElseThrow(() -> new JuiceNotFoundException(id));
+    private static String encodeCursor(Long id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id.toString().getBytes(StandardCharsets.UTF_8));
     }
 
+    private static Long decodeCursor(String cursor) throws InvalidCursorException {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0L;
+        }
+        try {
+            return Long.valueOf(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException(cursor);
+        }
+    }
+
+    @TimedOperation("increment")
     public JuiceDTO increment(Long id, int quantityToIncrement) throws JuiceNotFoundException, JuiceStockExceededException {
-        Juice juiceToIncrementStock = verifyIfExists(id);
-        int quantityAfterIncrement = quantityToIncrement + juiceToIncrementStock.getQuantity();
-        if (quantityAfterIncrement <= juiceToIncrementStock.getMax()) {
-            juiceToIncrementStock.setQuantity(juiceToIncrementStock.getQuantity() + quantityToIncrement);
-            Juice incrementedJuiceStock = juiceRepository.save(juiceToIncrementStock);
-            return juiceMapper.toDTO(incrementedJuiceStock);
-        }
-        throw new JuiceStockExceededException(id, quantityToIncrement);
+        try {
+            return increment(id, quantityToIncrement, null);
+        } catch (JuiceVersionMismatchException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @TimedOperation("increment")
+    public JuiceDTO increment(Long id, int quantityToIncrement, Long expectedVersion) throws JuiceNotFoundException, JuiceStockExceededException, JuiceVersionMismatchException {
+        JuiceDTO incrementedJuiceDTO;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                incrementedJuiceDTO = stockEngine.increment(id, quantityToIncrement, expectedVersion);
+                break;
+            } catch (OptimisticLockingFailureException e) {
+                conflictRetryPolicy.backOff("increment", attempt, e);
+            }
+        }
+        juiceChangePublisher.saved(StockChangeType.INCREMENTED, incrementedJuiceDTO);
+        return incrementedJuiceDTO;
+    }
+
+    @TimedOperation("decrement")
+    public JuiceDTO decrement(Long id, int quantityToDecrement) throws JuiceNotFoundException, JuiceStockExceededException {
+        try {
+            return decrement(id, quantityToDecrement, null);
+        } catch (JuiceVersionMismatchException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @TimedOperation("decrement")
+    public JuiceDTO decrement(Long id, int quantityToDecrement, Long expectedVersion) throws JuiceNotFoundException, JuiceStockExceededException, JuiceVersionMismatchException {
+        JuiceDTO decrementedJuiceDTO;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                decrementedJuiceDTO = stockEngine.decrement(id, quantityToDecrement, expectedVersion);
+                break;
+            } catch (OptimisticLockingFailureException e) {
+                conflictRetryPolicy.backOff("decrement", attempt, e);
+            }
+        }
+        juiceChangePublisher.saved(StockChangeType.DECREMENTED, decrementedJuiceDTO);
+        return decrementedJuiceDTO;
+    }
+
+    @TimedOperation("adjustStock")
+    public List<StockAdjustmentResultDTO> adjustStock(List<StockAdjustmentDTO> adjustments) {
+        Map<Long, Integer> quantitiesById = new LinkedHashMap<>();
+        adjustments.forEach(adjustment -> quantitiesById.merge(adjustment.getId(), adjustment.getQuantity(), Integer::sum));
+        List<StockAdjustmentResultDTO> results;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                results = stockEngine.adjust(quantitiesById);
+                break;
+            } catch (OptimisticLockingFailureException e) {
+                conflictRetryPolicy.backOff("adjustStock", attempt, e);
+            }
+        }
+        int rejected = 0;
+        for (StockAdjustmentResultDTO result : results) {
+            if (result.getJuice() != null) {
+                juiceChangePublisher.saved(StockChangeType.ADJUSTED, result.getJuice());
+            } else {
+                rejected++;
+            }
+        }
+        juiceServiceMetrics.rejected("adjustStock", rejected);
+        return results;
     }
 }
@@ -0,0 +1,215 @@
+package com.pratice.juicestock.stock;
+
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.dto.StockAdjustmentResultDTO;
+import com.pratice.juicestock.entity.Juice;
+import com.pratice.juicestock.exception.JuiceNotFoundException;
+import com.pratice.juicestock.exception.JuiceStockExceededException;
+import com.pratice.juicestock.exception.JuiceVersionMismatchException;
+import com.pratice.juicestock.mapper.JuiceMapper;
+import com.pratice.juicestock.repository.JuiceRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Combines concurrent stock changes of the same juice into one database round trip.
+ * Each change is queued on the stripe of its juice id; whichever caller holds the stripe
+ * lock drains the queue, reads the affected rows with one unlocked SELECT, checks the
+ * changes one by one in arrival order against the running quantity and writes one UPDATE
+ * per juice, guarded by the version it read. Every caller still gets its own result: the
+ * quantity and version right after its change, or the exception of its change alone. The
+ * UPDATE moves the version past every change of the batch, so no two callers are ever
+ * handed the same version. If another writer moved a row first, the whole batch rolls back
+ * and every caller gets an {@link ObjectOptimisticLockingFailureException} to retry.
+ */
+@Component
+@ConditionalOnProperty(name = "juicestock.stock.mode", havingValue = "coalescing")
+public class CoalescingStockEngine implements StockEngine {
+
+    private final JuiceRepository juiceRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final JuiceMapper juiceMapper = JuiceMapper.INSTANCE;
+    private final Stripe[] stripes;
+
+    @Autowired
+    public CoalescingStockEngine(JuiceRepository juiceRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${juicestock.stock.coalescing.stripes:64}") int stripes) {
+        this.juiceRepository = juiceRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe();
+        }
+    }
+
+    @Override
+    public JuiceDTO increment(Long id, int quantityToIncrement, Long expectedVersion) throws JuiceNotFoundException, JuiceStockExceededException, JuiceVersionMismatchException {
+        return submit(new StockChange(id, quantityToIncrement, quantityToIncrement, expectedVersion));
+    }
+
+    @Override
+    public JuiceDTO decrement(Long id, int quantityToDecrement, Long expectedVersion) throws JuiceNotFoundException, JuiceStockExceededException, JuiceVersionMismatchException {
+        return submit(new StockChange(id, -quantityToDecrement, quantityToDecrement, expectedVersion));
+    }
+
+    @Override
+    public List<StockAdjustmentResultDTO> adjust(Map<Long, Integer> quantitiesById) {
+        List<StockChange> changes = new ArrayList<>(quantitiesById.size());
+        quantitiesById.forEach((id, quantity) -> changes.add(new StockChange(id, quantity, quantity, null)));
+        apply(changes);
+        List<StockAdjustmentResultDTO> results = new ArrayList<>(changes.size());
+        for (StockChange change : changes) {
+            results.add(change.failure == null
+                    ? StockAdjustmentResultDTO.applied(change.id, change.delta, change.result)
+                    : StockAdjustmentResultDTO.rejected(change.id, change.delta, change.failure));
+        }
+        return results;
+    }
+
+    @Override
+    public JuiceDTO overlay(JuiceDTO juiceDTO) {
+        return juiceDTO;
+    }
+
+    @Override
+    public void evict(Long id) {
+    }
+
+    private JuiceDTO submit(StockChange change) throws JuiceNotFoundException, JuiceStockExceededException, JuiceVersionMismatchException {
+        Stripe stripe = stripes[Math.floorMod(change.id.hashCode(), stripes.length)];
+        stripe.pending.add(change);
+        stripe.lock.lock();
+        try {
+            if (!change.done) {
+                List<StockChange> changes = new ArrayList<>();
+                StockChange next;
+                while ((next = stripe.pending.poll()) != null) {
+                    changes.add(next);
+                }
+                apply(changes);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+        return change.get();
+    }
+
+    private void apply(List<StockChange> changes) {
+        Map<Long, List<StockChange>> changesById = changes.stream()
+                .collect(Collectors.groupingBy(change -> change.id, LinkedHashMap::new, Collectors.toList()));
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<Long, Juice> juicesById = juiceRepository.findAllById(changesById.keySet())
+                        .stream()
+                        .collect(Collectors.toMap(Juice::getId, Function.identity()));
+                changesById.forEach((id, changesOfJuice) -> apply(juicesById.get(id), changesOfJuice));
+            });
+        } catch (RuntimeException e) {
+            changes.forEach(change -> change.fail(e));
+        }
+        changes.forEach(StockChange::complete);
+    }
+
+    private void apply(Juice juice, List<StockChange> changes) {
+        if (juice == null) {
+            changes.forEach(change -> change.fail(new JuiceNotFoundException(change.id)));
+            return;
+        }
+        JuiceDTO juiceDTO = juiceMapper.toDTO(juice);
+        int quantity = juice.getQuantity();
+        long version = juice.getVersion();
+        for (StockChange change : changes) {
+            if (change.expectedVersion != null && change.expectedVersion != version) {
+                change.fail(new JuiceVersionMismatchException(change.id, change.expectedVersion));
+                continue;
+            }
+            int quantityAfterChange = quantity + change.delta;
+            if (quantityAfterChange < 0 || quantityAfterChange > juice.getMax()) {
+                change.fail(new JuiceStockExceededException(change.id, change.requestedQuantity));
+                continue;
+            }
+            quantity = quantityAfterChange;
+            version++;
+            change.succeed(new JuiceDTO(juiceDTO.getId(),
+                    juiceDTO.getName(),
+                    juiceDTO.getBrand(),
+                    juiceDTO.getMax(),
+                    quantity,
+                    juiceDTO.getType(),
+                    version));
+        }
+        if (version != juice.getVersion()
+                && juiceRepository.updateQuantityAndVersionIfVersion(juice.getId(), quantity, version, juice.getVersion()) == 0) {
+            throw new ObjectOptimisticLockingFailureException(Juice.class, juice.getId());
+        }
+    }
+
+    private static final class Stripe {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Queue<StockChange> pending = new ConcurrentLinkedQueue<>();
+    }
+
+    private static final class StockChange {
+
+        private final Long id;
+        private final int delta;
+        private final int requestedQuantity;
+        private final Long expectedVersion;
+        private JuiceDTO result;
+        private Exception failure;
+        private volatile boolean done;
+
+        private StockChange(Long id, int delta, int requestedQuantity, Long expectedVersion) {
+            this.id = id;
+            this.delta = delta;
+            this.requestedQuantity = requestedQuantity;
+            this.expectedVersion = expectedVersion;
+        }
+
+        private void succeed(JuiceDTO juiceDTO) {
+            result = juiceDTO;
+        }
+
+        private void fail(Exception cause) {
+            result = null;
+            failure = cause;
+        }
+
+        private void complete() {
+            done = true;
+        }
+
+        private JuiceDTO get() throws JuiceNotFoundException, JuiceStockExceededException, JuiceVersionMismatchException {
+            if (failure instanceof JuiceNotFoundException) {
+                throw (JuiceNotFoundException) failure;
+            }
+            if (failure instanceof JuiceStockExceededException) {
+                throw (JuiceStockExceededException) failure;
+            }
+            if (failure instanceof JuiceVersionMismatchException) {
+                throw (JuiceVersionMismatchException) failure;
+            }
+            if (failure != null) {
+                throw (RuntimeException) failure;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.pratice.juicestock.stock;
+
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.dto.StockAdjustmentResultDTO;
+import com.pratice.juicestock.entity.Juice;
+import com.pratice.juicestock.exception.JuiceNotFoundException;
+import com.pratice.juicestock.exception.JuiceStockExceededException;
+import com.pratice.juicestock.exception.JuiceVersionMismatchException;
+import com.pratice.juicestock.mapper.JuiceMapper;
+import com.pratice.juicestock.repository.JuiceRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Applies every stock change as one guarded UPDATE, so the capacity and version checks and
+ * the write happen atomically in the database and concurrent requests never need a retry.
+ * The changed row is read back in the same transaction, while the UPDATE still holds its
+ * lock, so the juice returned is the one this change left and not a later one.
+ * Batches read all affected rows with one unlocked SELECT and write them as JDBC batched
+ * updates guarded by the {@code @Version} read, so a row changed in between fails the whole
+ * batch with an {@link org.springframework.orm.ObjectOptimisticLockingFailureException} and
+ * the service retries it. The batch is flushed before the results are mapped, so every
+ * applied adjustment reports the version its update wrote and the in-memory views do not
+ * drop it as already seen.
+ */
+@Component
+@ConditionalOnProperty(name = "juicestock.stock.mode", havingValue = "database", matchIfMissing = true)
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class DatabaseStockEngine implements StockEngine {
+
+    private final JuiceRepository juiceRepository;
+    private final JuiceMapper juiceMapper = JuiceMapper.INSTANCE;
+
+    @Override
+    @Transactional
+    public JuiceDTO increment(Long id, int quantityToIncrement, Long expectedVersion) throws JuiceNotFoundException, JuiceStockExceededException, JuiceVersionMismatchException {
+        int updated = expectedVersion == null
+                ? juiceRepository.incrementQuantity(id, quantityToIncrement)
+                : juiceRepository.incrementQuantityIfVersion(id, quantityToIncrement, expectedVersion);
+        if (updated == 0) {
+            throw rejection(id, quantityToIncrement, expectedVersion);
+        }
+        return find(id);
+    }
+
+    @Override
+    @Transactional
+    public JuiceDTO decrement(Long id, int quantityToDecrement, Long expectedVersion) throws JuiceNotFoundException, JuiceStockExceededException, JuiceVersionMismatchException {
+        int updated = expectedVersion == null
+                ? juiceRepository.decrementQuantity(id, quantityToDecrement)
+                : juiceRepository.decrementQuantityIfVersion(id, quantityToDecrement, expectedVersion);
+        if (updated == 0) {
+            throw rejection(id, quantityToDecrement, expectedVersion);
+        }
+        return find(id);
+    }
+
+    @Override
+    @Transactional
+    public List<StockAdjustmentResultDTO> adjust(Map<Long, Integer> quantitiesById) {
+        Map<Long, Juice> juicesById = juiceRepository.findAllById(quantitiesById.keySet())
+                .stream()
+                .collect(Collectors.toMap(Juice::getId, Function.identity()));
+        Map<Long, StockAdjustmentResultDTO> rejectedById = new HashMap<>();
+        quantitiesById.forEach((id, quantity) -> {
+            Juice juice = juicesById.get(id);
+            if (juice == null) {
+                rejectedById.put(id, StockAdjustmentResultDTO.rejected(id, quantity, new JuiceNotFoundException(id)));
+                return;
+            }
+            int quantityAfterAdjustment = juice.getQuantity() + quantity;
+            if (quantityAfterAdjustment < 0 || quantityAfterAdjustment > juice.getMax()) {
+                rejectedById.put(id, StockAdjustmentResultDTO.rejected(id, quantity, new JuiceStockExceededException(id, quantity)));
+                return;
+            }
+            juice.setQuantity(quantityAfterAdjustment);
+        });
+        juiceRepository.flush();
+        List<StockAdjustmentResultDTO> results = new ArrayList<>(quantitiesById.size());
+        quantitiesById.forEach((id, quantity) -> results.add(rejectedById.containsKey(id)
+                ? rejectedById.get(id)
+                : StockAdjustmentResultDTO.applied(id, quantity, juiceMapper.toDTO(juicesById.get(id)))));
+        return results;
+    }
+
+    @Override
+    public JuiceDTO overlay(JuiceDTO juiceDTO) {
+        return juiceDTO;
+    }
+
+    @Override
+    public void evict(Long id) {
+    }
+
+    private JuiceDTO find(Long id) throws JuiceNotFoundException {
+        return juiceRepository.findById(id)
+                .map(juiceMapper::toDTO)
+                .orElseThrow(() -> new JuiceNotFoundException(id));
+    }
+
+    private JuiceStockExceededException rejection(Long id, int quantity, Long expectedVersion) throws JuiceNotFoundException, JuiceVersionMismatchException {
+        if (expectedVersion == null) {
+            if (!juiceRepository.existsById(id)) {
+                throw new JuiceNotFoundException(id);
+            }
+        } else {
+            Juice juice = juiceRepository.findById(id).orElseThrow(() -> new JuiceNotFoundException(id));
+            if (!expectedVersion.equals(juice.getVersion())) {
+                throw new JuiceVersionMismatchException(id, expectedVersion);
+            }
+        }
+        return new JuiceStockExceededException(id, quantity);
+    }
+}
@@ -0,0 +1,45 @@
+package com.pratice.juicestock.stock;
+
+import com.pratice.juicestock.journal.StockJournal;
+import com.pratice.juicestock.repository.JuiceRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@link StockLedger} whose changes are made durable through the {@link StockJournal}
+ * instead of an UPDATE per change: a stock change returns once its journal record is on
+ * disk, and the {@code juice} table catches up on the next checkpoint.
+ */
+@Component
+@ConditionalOnProperty(name = "juicestock.stock.mode", havingValue = "journal")
+public class JournalStockEngine extends StockLedger {
+
+    private final StockJournal stockJournal;
+
+    @Autowired
+    public JournalStockEngine(JuiceRepository juiceRepository, StockJournal stockJournal) {
+        super(juiceRepository, Runnable::run);
+        this.stockJournal = stockJournal;
+    }
+
+    /**
+     * Reserves the journal record before the change is applied, so that writing it once the
+     * change is applied cannot fail.
+     */
+    @Override
+    protected StockWrite beginWrite(Long id) {
+        StockJournal.Reservation reservation = stockJournal.reserve();
+        return new StockWrite() {
+            @Override
+            public void commit(int delta) {
+                reservation.commit(id, delta);
+            }
+
+            @Override
+            public void cancel() {
+                reservation.cancel(id);
+            }
+        };
+    }
+}
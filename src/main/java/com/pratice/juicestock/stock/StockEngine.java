@@ -0,0 +1,56 @@
+package com.pratice.juicestock.stock;
+
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.dto.StockAdjustmentResultDTO;
+import com.pratice.juicestock.exception.JuiceNotFoundException;
+import com.pratice.juicestock.exception.JuiceStockExceededException;
+import com.pratice.juicestock.exception.JuiceVersionMismatchException;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies stock quantity changes. The implementation is picked with the
+ * {@code juicestock.stock.mode} property: {@code database} (default), {@code coalescing},
+ * {@code ledger} or {@code journal}.
+ * <p>
+ * A change with an {@code expectedVersion} is only applied if the juice is still at that
+ * version; {@code null} applies it unconditionally. Every applied change moves the juice
+ * to a new version.
+ */
+public interface StockEngine {
+
+    JuiceDTO increment(Long id, int quantityToIncrement, Long expectedVersion) throws JuiceNotFoundException, JuiceStockExceededException, JuiceVersionMismatchException;
+
+    JuiceDTO decrement(Long id, int quantityToDecrement, Long expectedVersion) throws JuiceNotFoundException, JuiceStockExceededException, JuiceVersionMismatchException;
+
+    default JuiceDTO increment(Long id, int quantityToIncrement) throws JuiceNotFoundException, JuiceStockExceededException {
+        try {
+            return increment(id, quantityToIncrement, null);
+        } catch (JuiceVersionMismatchException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    default JuiceDTO decrement(Long id, int quantityToDecrement) throws JuiceNotFoundException, JuiceStockExceededException {
+        try {
+            return decrement(id, quantityToDecrement, null);
+        } catch (JuiceVersionMismatchException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    List<StockAdjustmentResultDTO> adjust(Map<Long, Integer> quantitiesById);
+
+    JuiceDTO overlay(JuiceDTO juiceDTO);
+
+    /**
+     * Returns whether {@link #overlay} may replace the quantity read from the {@code juice}
+     * table, in which case the table cannot be filtered or sorted by quantity.
+     */
+    default boolean overlaysQuantity() {
+        return false;
+    }
+
+    void evict(Long id);
+}
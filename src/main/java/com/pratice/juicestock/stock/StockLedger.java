@@ -0,0 +1,244 @@
+package com.pratice.juicestock.stock;
+
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.dto.StockAdjustmentResultDTO;
+import com.pratice.juicestock.exception.JuiceNotFoundException;
+import com.pratice.juicestock.exception.JuiceStockExceededException;
+import com.pratice.juicestock.exception.JuiceVersionMismatchException;
+import com.pratice.juicestock.mapper.JuiceMapper;
+import com.pratice.juicestock.repository.JuiceRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the stock quantity and version of every juice touched by a stock change in memory
+ * and applies the capacity and version checks with compare-and-set, so concurrent changes
+ * never lose updates. The new quantity is written to {@link JuiceRepository} asynchronously;
+ * bursts on the same juice collapse into a single UPDATE carrying the latest value.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "juicestock.stock.mode", havingValue = "ledger")
+public class StockLedger implements StockEngine {
+
+    private final JuiceRepository juiceRepository;
+    private final JuiceMapper juiceMapper = JuiceMapper.INSTANCE;
+    private final Executor writeBehindExecutor;
+    private final ConcurrentMap<Long, StockEntry> entries = new ConcurrentHashMap<>();
+    private final Set<Long> pendingWrites = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public StockLedger(JuiceRepository juiceRepository) {
+        this(juiceRepository, Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-ledger-writer");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    public StockLedger(JuiceRepository juiceRepository, Executor writeBehindExecutor) {
+        this.juiceRepository = juiceRepository;
+        this.writeBehindExecutor = writeBehindExecutor;
+    }
+
+    @Override
+    public JuiceDTO increment(Long id, int quantityToIncrement, Long expectedVersion) throws JuiceNotFoundException, JuiceStockExceededException, JuiceVersionMismatchException {
+        return apply(id, quantityToIncrement, quantityToIncrement, expectedVersion);
+    }
+
+    @Override
+    public JuiceDTO decrement(Long id, int quantityToDecrement, Long expectedVersion) throws JuiceNotFoundException, JuiceStockExceededException, JuiceVersionMismatchException {
+        return apply(id, -quantityToDecrement, quantityToDecrement, expectedVersion);
+    }
+
+    @Override
+    public List<StockAdjustmentResultDTO> adjust(Map<Long, Integer> quantitiesById) {
+        List<StockAdjustmentResultDTO> results = new ArrayList<>(quantitiesById.size());
+        quantitiesById.forEach((id, quantity) -> {
+            try {
+                results.add(StockAdjustmentResultDTO.applied(id, quantity, apply(id, quantity, quantity, null)));
+            } catch (JuiceNotFoundException | JuiceStockExceededException | JuiceVersionMismatchException e) {
+                results.add(StockAdjustmentResultDTO.rejected(id, quantity, e));
+            }
+        });
+        return results;
+    }
+
+    private JuiceDTO apply(Long id, int delta, int requestedQuantity, Long expectedVersion) throws JuiceNotFoundException, JuiceStockExceededException, JuiceVersionMismatchException {
+        StockEntry entry = load(id);
+        StockWrite write = beginWrite(id);
+        AtomicLong state = entry.state;
+        long current;
+        long stateAfterChange;
+        try {
+            do {
+                current = state.get();
+                if (expectedVersion != null && expectedVersion != version(current)) {
+                    throw new JuiceVersionMismatchException(id, expectedVersion);
+                }
+                int quantityAfterChange = quantity(current) + delta;
+                if (quantityAfterChange > entry.max || quantityAfterChange < 0) {
+                    throw new JuiceStockExceededException(id, requestedQuantity);
+                }
+                stateAfterChange = state(version(current) + 1, quantityAfterChange);
+            } while (!state.compareAndSet(current, stateAfterChange));
+        } catch (JuiceVersionMismatchException | JuiceStockExceededException e) {
+            write.cancel();
+            throw e;
+        }
+        write.commit(delta);
+        return entry.toDTO(stateAfterChange);
+    }
+
+    /**
+     * Starts recording a change of the juice before it is applied, so a failure leaves the
+     * stock untouched. Once applied, a change cannot be taken back safely, since concurrent
+     * changes may already have been checked against it, so committing the returned write must
+     * not fail.
+     */
+    protected StockWrite beginWrite(Long id) {
+        return new StockWrite() {
+            @Override
+            public void commit(int delta) {
+                scheduleWrite(id);
+            }
+
+            @Override
+            public void cancel() {
+            }
+        };
+    }
+
+    @Override
+    public JuiceDTO overlay(JuiceDTO juiceDTO) {
+        StockEntry entry = entries.get(juiceDTO.getId());
+        if (entry != null) {
+            long state = entry.state.get();
+            juiceDTO.setQuantity(quantity(state));
+            juiceDTO.setVersion(version(state));
+        }
+        return juiceDTO;
+    }
+
+    @Override
+    public boolean overlaysQuantity() {
+        return true;
+    }
+
+    @Override
+    public void evict(Long id) {
+        entries.remove(id);
+    }
+
+    private StockEntry load(Long id) throws JuiceNotFoundException {
+        StockEntry entry = entries.get(id);
+        if (entry != null) {
+            return entry;
+        }
+        entry = entries.computeIfAbsent(id, key -> juiceRepository.findById(key)
+                .map(juice -> new StockEntry(juiceMapper.toDTO(juice), juice.getMax(), state(juice.getVersion(), juice.getQuantity())))
+                .orElse(null));
+        if (entry == null) {
+            throw new JuiceNotFoundException(id);
+        }
+        return entry;
+    }
+
+    private void scheduleWrite(Long id) {
+        if (pendingWrites.add(id)) {
+            try {
+                writeBehindExecutor.execute(() -> write(id));
+            } catch (RejectedExecutionException e) {
+                pendingWrites.remove(id);
+                log.error("Could not schedule the stock write of juice {}, retrying on next change", id, e);
+            }
+        }
+    }
+
+    private void write(Long id) {
+        pendingWrites.remove(id);
+        StockEntry entry = entries.get(id);
+        if (entry == null) {
+            return;
+        }
+        try {
+            long state = entry.state.get();
+            if (juiceRepository.updateQuantityAndVersion(id, quantity(state), version(state)) == 0) {
+                entries.remove(id, entry);
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not write stock of juice {}, retrying on next change", id, e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        if (writeBehindExecutor instanceof ExecutorService) {
+            ExecutorService executorService = (ExecutorService) writeBehindExecutor;
+            executorService.shutdown();
+            executorService.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Packs the version in the high and the quantity in the low 32 bits, so both are checked
+     * and changed by a single compare-and-set.
+     */
+    private static long state(long version, int quantity) {
+        return version << 32 | quantity & 0xFFFFFFFFL;
+    }
+
+    private static long version(long state) {
+        return state >>> 32;
+    }
+
+    private static int quantity(long state) {
+        return (int) state;
+    }
+
+    protected interface StockWrite {
+
+        void commit(int delta);
+
+        void cancel();
+    }
+
+    private static final class StockEntry {
+
+        private final JuiceDTO template;
+        private final int max;
+        private final AtomicLong state;
+
+        private StockEntry(JuiceDTO template, int max, long state) {
+            this.template = template;
+            this.max = max;
+            this.state = new AtomicLong(state);
+        }
+
+        private JuiceDTO toDTO(long state) {
+            return new JuiceDTO(template.getId(),
+                    template.getName(),
+                    template.getBrand(),
+                    template.getMax(),
+                    quantity(state),
+                    template.getType(),
+                    version(state));
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.pratice.juicestock.stock;
+
+import com.pratice.juicestock.changes.JuiceChangeListener;
+import com.pratice.juicestock.changes.Tombstones;
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.dto.StockStatisticsDTO;
+import com.pratice.juicestock.dto.StockTotalsDTO;
+import com.pratice.juicestock.enums.JuiceType;
+import com.pratice.juicestock.enums.StockChangeType;
+import com.pratice.juicestock.repository.JuiceRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stock totals per {@link JuiceType} and per brand, kept up to date from the result of every
+ * write instead of being summed from the {@code juice} table on each read. The table is read
+ * once on startup; afterwards a read only walks the groups. Every juice is tracked with the
+ * version it was last seen at, so a result that arrives after a newer one is ignored, and a
+ * deleted juice leaves a tombstone so that a write finishing after the delete cannot bring it
+ * back; ids are never reused, so the tombstone outranks every version. Tombstones are dropped
+ * once no late write can arrive any more, see {@link Tombstones}.
+ * <p>
+ * There is no global lock: a write swaps the entry of its juice atomically and adds the
+ * difference to {@link LongAdder} totals, so writes to different juices never wait on each
+ * other. A snapshot taken during a write may see it in some totals and not yet in others.
+ * <p>
+ * A juice is low on stock when its quantity is at or below
+ * {@code juicestock.stats.low-stock-percent} of its max, and near its max when the quantity
+ * is at or above {@code juicestock.metrics.near-max-percent} of it.
+ */
+@Component
+public class StockStatistics implements SmartLifecycle, JuiceChangeListener {
+
+    private static final Entry REMOVED = new Entry();
+
+    private final JuiceRepository juiceRepository;
+    private final StockEngine stockEngine;
+    private final int lowStockPercent;
+    private final int nearMaxPercent;
+    private final ConcurrentMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final Tombstones tombstones;
+    private final Totals total = new Totals();
+    private final ConcurrentMap<JuiceType, Totals> totalsByType = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Totals> totalsByBrand = new ConcurrentSkipListMap<>();
+    private volatile boolean running;
+
+    @Autowired
+    public StockStatistics(JuiceRepository juiceRepository,
+                           StockEngine stockEngine,
+                           @Value("${juicestock.stats.low-stock-percent:10}") int lowStockPercent,
+                           @Value("${juicestock.metrics.near-max-percent:90}") int nearMaxPercent,
+                           @Value("${juicestock.changes.tombstone-ttl:1m}") Duration tombstoneTtl) {
+        this.juiceRepository = juiceRepository;
+        this.stockEngine = stockEngine;
+        this.lowStockPercent = lowStockPercent;
+        this.nearMaxPercent = nearMaxPercent;
+        this.tombstones = new Tombstones(tombstoneTtl);
+    }
+
+    public int getNearMaxPercent() {
+        return nearMaxPercent;
+    }
+
+    public void update(JuiceDTO juiceDTO) {
+        entries.compute(juiceDTO.getId(), (id, current) -> {
+            if (current == REMOVED || current != null && current.isNewerThan(juiceDTO.getVersion())) {
+                return current;
+            }
+            if (current != null) {
+                add(current, -1);
+            }
+            Entry entry = new Entry(juiceDTO, lowStockPercent, nearMaxPercent);
+            add(entry, 1);
+            return entry;
+        });
+    }
+
+    public void remove(Long id) {
+        Entry entry = entries.put(id, REMOVED);
+        if (entry != null && entry != REMOVED) {
+            add(entry, -1);
+        }
+        tombstones.lay(id, expired -> entries.remove(expired, REMOVED));
+    }
+
+    @Override
+    public void juiceSaved(StockChangeType type, JuiceDTO juiceDTO) {
+        update(juiceDTO);
+    }
+
+    @Override
+    public void juiceDeleted(Long id, String name) {
+        remove(id);
+    }
+
+    public StockStatisticsDTO snapshot() {
+        Map<JuiceType, StockTotalsDTO> byType = new LinkedHashMap<>();
+        for (JuiceType type : JuiceType.values()) {
+            Totals totals = totalsByType.get(type);
+            if (totals != null && !totals.isEmpty()) {
+                byType.put(type, totals.toDTO());
+            }
+        }
+        Map<String, StockTotalsDTO> byBrand = new LinkedHashMap<>();
+        totalsByBrand.forEach((brand, totals) -> {
+            if (!totals.isEmpty()) {
+                byBrand.put(brand, totals.toDTO());
+            }
+        });
+        return new StockStatisticsDTO(total.toDTO(), byType, byBrand);
+    }
+
+    public long units() {
+        return total.quantity.sum();
+    }
+
+    public long nearMax() {
+        return total.nearMax.sum();
+    }
+
+    private void add(Entry entry, int sign) {
+        total.add(entry, sign);
+        totalsByType.computeIfAbsent(entry.type, key -> new Totals()).add(entry, sign);
+        totalsByBrand.computeIfAbsent(entry.brand, key -> new Totals()).add(entry, sign);
+    }
+
+    /**
+     * Loads the juices that no write has reported yet. Runs before the web server starts, so
+     * the first read already covers the whole table.
+     */
+    @Override
+    public void start() {
+        juiceRepository.findAllJuiceDTOs()
+                .stream()
+                .map(stockEngine::overlay)
+                .forEach(this::update);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    private static final class Entry {
+
+        private final JuiceType type;
+        private final String brand;
+        private final int max;
+        private final int quantity;
+        private final Long version;
+        private final boolean lowStock;
+        private final boolean nearMax;
+
+        private Entry(JuiceDTO juiceDTO, int lowStockPercent, int nearMaxPercent) {
+            this.type = juiceDTO.getType();
+            this.brand = juiceDTO.getBrand();
+            this.max = juiceDTO.getMax();
+            this.quantity = juiceDTO.getQuantity();
+            this.version = juiceDTO.getVersion();
+            this.lowStock = (long) quantity * 100 <= (long) max * lowStockPercent;
+            this.nearMax = (long) quantity * 100 >= (long) max * nearMaxPercent;
+        }
+
+        /**
+         * Creates the tombstone of a deleted juice.
+         */
+        private Entry() {
+            this.type = null;
+            this.brand = null;
+            this.max = 0;
+            this.quantity = 0;
+            this.version = null;
+            this.lowStock = false;
+            this.nearMax = false;
+        }
+
+        private boolean isNewerThan(Long otherVersion) {
+            return version != null && otherVersion != null && version >= otherVersion;
+        }
+    }
+
+    private static final class Totals {
+
+        private final LongAdder juices = new LongAdder();
+        private final LongAdder quantity = new LongAdder();
+        private final LongAdder max = new LongAdder();
+        private final LongAdder lowStock = new LongAdder();
+        private final LongAdder nearMax = new LongAdder();
+
+        private void add(Entry entry, int sign) {
+            juices.add(sign);
+            quantity.add((long) sign * entry.quantity);
+            max.add((long) sign * entry.max);
+            if (entry.lowStock) {
+                lowStock.add(sign);
+            }
+            if (entry.nearMax) {
+                nearMax.add(sign);
+            }
+        }
+
+        private boolean isEmpty() {
+            return juices.sum() == 0;
+        }
+
+        private StockTotalsDTO toDTO() {
+            long quantity = this.quantity.sum();
+            long max = this.max.sum();
+            return new StockTotalsDTO(juices.sum(), quantity, max, max == 0 ? 0 : (double) quantity / max, lowStock.sum());
+        }
+    }
+}
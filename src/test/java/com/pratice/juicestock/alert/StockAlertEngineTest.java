@@ -0,0 +1,143 @@
+package com.pratice.juicestock.alert;
+
+import com.pratice.juicestock.builder.JuiceDTOBuilder;
+import com.pratice.juicestock.dto.StockAlertDTO;
+import com.pratice.juicestock.enums.JuiceType;
+import com.pratice.juicestock.enums.StockAlertStatus;
+import com.pratice.juicestock.enums.StockAlertType;
+import com.pratice.juicestock.repository.JuiceRepository;
+import com.pratice.juicestock.stock.DatabaseStockEngine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@ExtendWith(MockitoExtension.class)
+public class StockAlertEngineTest {
+
+    @Mock
+    private JuiceRepository juiceRepository;
+
+    private MockEnvironment environment;
+
+    private QueueStockAlertSink sink;
+
+    private StockAlertEngine stockAlertEngine;
+
+    @BeforeEach
+    void setUp() {
+        environment = new MockEnvironment();
+        sink = new QueueStockAlertSink(100);
+        stockAlertEngine = new StockAlertEngine(juiceRepository,
+                new DatabaseStockEngine(juiceRepository),
+                environment,
+                new StockAlertDispatcher(new SimpleMeterRegistry(), Collections.singletonList(sink), Runnable::run),
+                true,
+                "10%",
+                "",
+                "5%",
+                Duration.ofMinutes(1));
+    }
+
+    @Test
+    void whenStockFallsToLowThresholdThenLowStockAlertIsRaisedOnce() {
+        // when
+        stockAlertEngine.update(JuiceDTOBuilder.builder().max(100).quantity(50).version(0L).build().toJuiceDTO());
+        stockAlertEngine.update(JuiceDTOBuilder.builder().max(100).quantity(10).version(1L).build().toJuiceDTO());
+        stockAlertEngine.update(JuiceDTOBuilder.builder().max(100).quantity(8).version(2L).build().toJuiceDTO());
+
+        // then
+        List<StockAlertDTO> alerts = sink.drain();
+        assertThat(alerts, hasSize(1));
+        assertThat(alerts.get(0).getType(), is(equalTo(StockAlertType.LOW_STOCK)));
+        assertThat(alerts.get(0).getStatus(), is(equalTo(StockAlertStatus.RAISED)));
+        assertThat(alerts.get(0).getQuantity(), is(equalTo(10)));
+        assertThat(alerts.get(0).getThreshold(), is(equalTo(10)));
+    }
+
+    @Test
+    void whenStockRecoversWithinHysteresisThenAlertIsClearedOnlyPastIt() {
+        // given
+        stockAlertEngine.update(JuiceDTOBuilder.builder().max(100).quantity(9).version(0L).build().toJuiceDTO());
+        sink.drain();
+
+        // when
+        stockAlertEngine.update(JuiceDTOBuilder.builder().max(100).quantity(15).version(1L).build().toJuiceDTO());
+        List<StockAlertDTO> alertsWithinHysteresis = sink.drain();
+        stockAlertEngine.update(JuiceDTOBuilder.builder().max(100).quantity(16).version(2L).build().toJuiceDTO());
+
+        // then
+        assertThat(alertsWithinHysteresis, is(empty()));
+        List<StockAlertDTO> alerts = sink.drain();
+        assertThat(alerts, hasSize(1));
+        assertThat(alerts.get(0).getStatus(), is(equalTo(StockAlertStatus.CLEARED)));
+    }
+
+    @Test
+    void whenJuiceOrTypeHasThresholdsThenTheyOverrideTheDefaults() {
+        // given
+        environment.setProperty("juicestock.alerts.juices.Apple juice.low", "3");
+        environment.setProperty("juicestock.alerts.types.ORANGE.high", "90%");
+
+        // when
+        stockAlertEngine.update(JuiceDTOBuilder.builder().max(100).quantity(5).version(0L).build().toJuiceDTO());
+        stockAlertEngine.update(JuiceDTOBuilder.builder().id(2L).name("Orange juice").type(JuiceType.ORANGE)
+                .max(200).quantity(180).version(0L).build().toJuiceDTO());
+
+        // then
+        List<StockAlertDTO> alerts = sink.drain();
+        assertThat(alerts, hasSize(1));
+        assertThat(alerts.get(0).getId(), is(equalTo(2L)));
+        assertThat(alerts.get(0).getType(), is(equalTo(StockAlertType.HIGH_STOCK)));
+        assertThat(alerts.get(0).getThreshold(), is(equalTo(180)));
+    }
+
+    @Test
+    void whenOlderVersionArrivesAfterNewerOneThenItIsIgnored() {
+        // when
+        stockAlertEngine.update(JuiceDTOBuilder.builder().max(100).quantity(50).version(2L).build().toJuiceDTO());
+        stockAlertEngine.update(JuiceDTOBuilder.builder().max(100).quantity(5).version(1L).build().toJuiceDTO());
+
+        // then
+        assertThat(sink.drain(), is(empty()));
+    }
+
+    @Test
+    void whenJuiceWithRaisedAlertIsRemovedThenAlertIsCleared() {
+        // given
+        stockAlertEngine.update(JuiceDTOBuilder.builder().max(100).quantity(5).version(0L).build().toJuiceDTO());
+        sink.drain();
+
+        // when
+        stockAlertEngine.remove(1L);
+
+        // then
+        List<StockAlertDTO> alerts = sink.drain();
+        assertThat(alerts, hasSize(1));
+        assertThat(alerts.get(0).getType(), is(equalTo(StockAlertType.LOW_STOCK)));
+        assertThat(alerts.get(0).getStatus(), is(equalTo(StockAlertStatus.CLEARED)));
+    }
+
+    @Test
+    void whenWriteArrivesAfterJuiceIsRemovedThenNoAlertIsRaised() {
+        // given
+        stockAlertEngine.update(JuiceDTOBuilder.builder().max(100).quantity(50).version(0L).build().toJuiceDTO());
+
+        // when
+        stockAlertEngine.remove(1L);
+        stockAlertEngine.update(JuiceDTOBuilder.builder().max(100).quantity(5).version(1L).build().toJuiceDTO());
+
+        // then
+        assertThat(sink.drain(), is(empty()));
+    }
+}
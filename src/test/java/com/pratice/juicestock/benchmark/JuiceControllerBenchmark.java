@@ -0,0 +1,97 @@
+package com.pratice.juicestock.benchmark;
+
+import com.pratice.juicestock.JuicestockApplication;
+import com.pratice.juicestock.builder.JuiceDTOBuilder;
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.exception.JuiceAlreadyRegisteredException;
+import com.pratice.juicestock.service.JuiceService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stock changes over HTTP with more concurrent clients than Tomcat threads. The journal
+ * stock mode makes every change wait for the next group fsync, which is the blocking
+ * round trip that holds a Tomcat thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JuiceControllerBenchmark {
+
+    private static final int TOMCAT_THREADS = 8;
+    private static final int CLIENT_THREADS = 64;
+
+    private ConfigurableApplicationContext context;
+
+    private HttpClient httpClient;
+
+    private URI incrementUri;
+
+    private URI decrementUri;
+
+    @State(Scope.Thread)
+    public static class StockDirection {
+
+        private boolean increment;
+
+        boolean next() {
+            increment = !increment;
+            return increment;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, JuiceAlreadyRegisteredException {
+        context = new SpringApplicationBuilder(JuicestockApplication.class)
+                .properties("server.port=0",
+                        "server.tomcat.threads.max=" + TOMCAT_THREADS,
+                        "server.tomcat.threads.min-spare=" + TOMCAT_THREADS,
+                        "spring.datasource.url=jdbc:h2:mem:juicestock-benchmark;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                        "spring.autoconfigure.exclude=org.springframework.boot.devtools.autoconfigure.DevToolsDataSourceAutoConfiguration",
+                        "juicestock.stock.mode=journal",
+                        "juicestock.journal.directory=" + Files.createTempDirectory("juicestock-journal"),
+                        "logging.level.root=WARN")
+                .run();
+        JuiceDTO juiceDTO = context.getBean(JuiceService.class).createJuice(JuiceDTOBuilder.builder()
+                .id(null)
+                .max(CLIENT_THREADS * 2)
+                .quantity(CLIENT_THREADS)
+                .build()
+                .toJuiceDTO());
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        String juiceUrl = "http://localhost:" + port + "/api/v1/juices/" + juiceDTO.getId();
+        incrementUri = URI.create(juiceUrl + "/increment");
+        decrementUri = URI.create(juiceUrl + "/decrement");
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(CLIENT_THREADS)
+    public int changeStock(StockDirection direction) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(direction.next() ? incrementUri : decrementUri)
+                .header("Content-Type", "application/json")
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"quantity\":1}"))
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
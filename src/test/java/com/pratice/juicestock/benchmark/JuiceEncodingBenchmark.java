@@ -0,0 +1,87 @@
+package com.pratice.juicestock.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.google.protobuf.CodedOutputStream;
+import com.pratice.juicestock.builder.JuiceDTOBuilder;
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.enums.JuiceType;
+import com.pratice.juicestock.protobuf.JuiceProtobuf;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode time of a list of juices per format. The encoded size per juice of each format is
+ * reported next to it as the {@code bytesPerJuice} secondary result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JuiceEncodingBenchmark {
+
+    @Param({"json", "smile", "cbor", "protobuf"})
+    private String format;
+
+    @Param({"100", "1000"})
+    private int listSize;
+
+    private ObjectWriter juiceListWriter;
+
+    private List<JuiceDTO> juices;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper;
+        switch (format) {
+            case "smile":
+                objectMapper = new ObjectMapper(new SmileFactory()).enable(SerializationFeature.WRITE_ENUMS_USING_INDEX);
+                break;
+            case "cbor":
+                objectMapper = new ObjectMapper(new CBORFactory()).enable(SerializationFeature.WRITE_ENUMS_USING_INDEX);
+                break;
+            default:
+                objectMapper = new ObjectMapper();
+        }
+        juiceListWriter = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, JuiceDTO.class));
+        juices = new ArrayList<>(listSize);
+        JuiceType[] types = JuiceType.values();
+        for (long id = 1; id <= listSize; id++) {
+            juices.add(JuiceDTOBuilder.builder().id(id).name("Juice " + id).type(types[(int) (id % types.length)])
+                    .quantity((int) (id % 50)).version(id % 7).build().toJuiceDTO());
+        }
+    }
+
+    @Benchmark
+    public byte[] encodeList(EncodedSize encodedSize) throws IOException {
+        byte[] encoded;
+        if ("protobuf".equals(format)) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            CodedOutputStream output = CodedOutputStream.newInstance(outputStream);
+            JuiceProtobuf.writeList(output, juices);
+            output.flush();
+            encoded = outputStream.toByteArray();
+        } else {
+            encoded = juiceListWriter.writeValueAsBytes(juices);
+        }
+        encodedSize.bytesPerJuice = (double) encoded.length / listSize;
+        return encoded;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class EncodedSize {
+
+        public double bytesPerJuice;
+    }
+}
@@ -0,0 +1,52 @@
+package com.pratice.juicestock.benchmark;
+
+import com.pratice.juicestock.builder.JuiceDTOBuilder;
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.entity.Juice;
+import com.pratice.juicestock.mapper.JuiceMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JuiceMapperBenchmark {
+
+    private final JuiceMapper juiceMapper = JuiceMapper.INSTANCE;
+
+    private JuiceDTO juiceDTO;
+
+    private Juice juice;
+
+    @Setup
+    public void setUp() {
+        juiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        juice = juiceMapper.toModel(juiceDTO);
+    }
+
+    @Benchmark
+    public Juice toModel() {
+        return juiceMapper.toModel(juiceDTO);
+    }
+
+    @Benchmark
+    public JuiceDTO toDTO() {
+        return juiceMapper.toDTO(juice);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public JuiceDTO roundTrip() {
+        return juiceMapper.toDTO(juiceMapper.toModel(juiceDTO));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public JuiceDTO roundTripContended() {
+        return juiceMapper.toDTO(juiceMapper.toModel(juiceDTO));
+    }
+}
@@ -0,0 +1,50 @@
+package com.pratice.juicestock.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.pratice.juicestock.builder.JuiceDTOBuilder;
+import com.pratice.juicestock.dto.JuiceDTO;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JuiceSerializationBenchmark {
+
+    @Param({"1", "100", "1000"})
+    private int listSize;
+
+    private ObjectWriter juiceListWriter;
+
+    private List<JuiceDTO> juices;
+
+    @Setup
+    public void setUp() {
+        juiceListWriter = new ObjectMapper().writerFor(new ObjectMapper().getTypeFactory()
+                .constructCollectionType(List.class, JuiceDTO.class));
+        juices = new ArrayList<>(listSize);
+        for (long id = 1; id <= listSize; id++) {
+            juices.add(JuiceDTOBuilder.builder().id(id).name("Juice " + id).build().toJuiceDTO());
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public byte[] serializeList() throws JsonProcessingException {
+        return juiceListWriter.writeValueAsBytes(juices);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] serializeListContended() throws JsonProcessingException {
+        return juiceListWriter.writeValueAsBytes(juices);
+    }
+}
@@ -0,0 +1,125 @@
+package com.pratice.juicestock.benchmark;
+
+import com.pratice.juicestock.JuicestockApplication;
+import com.pratice.juicestock.builder.JuiceDTOBuilder;
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.exception.JuiceAlreadyRegisteredException;
+import com.pratice.juicestock.exception.JuiceNotFoundException;
+import com.pratice.juicestock.exception.JuiceStockExceededException;
+import com.pratice.juicestock.service.JuiceService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JuiceServiceBenchmark {
+
+    private static final int CONTENDED_THREADS = 4;
+
+    @Param({"100", "1000"})
+    private int catalogSize;
+
+    @Param({"database", "coalescing", "ledger", "journal"})
+    private String stockMode;
+
+    private ConfigurableApplicationContext context;
+
+    private JuiceService juiceService;
+
+    private JuiceDTO hotJuice;
+
+    @State(Scope.Thread)
+    public static class StockDirection {
+
+        private boolean increment;
+
+        boolean next() {
+            increment = !increment;
+            return increment;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, JuiceAlreadyRegisteredException {
+        context = new SpringApplicationBuilder(JuicestockApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=jdbc:h2:mem:juicestock-benchmark;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                        "spring.autoconfigure.exclude=org.springframework.boot.devtools.autoconfigure.DevToolsDataSourceAutoConfiguration",
+                        "juicestock.stock.mode=" + stockMode,
+                        "juicestock.journal.directory=" + Files.createTempDirectory("juicestock-journal"),
+                        "logging.level.root=WARN")
+                .run();
+        juiceService = context.getBean(JuiceService.class);
+        for (int i = 0; i < catalogSize; i++) {
+            hotJuice = juiceService.createJuice(JuiceDTOBuilder.builder()
+                    .id(null)
+                    .name("Juice " + i)
+                    .max(500)
+                    .quantity(250)
+                    .build()
+                    .toJuiceDTO());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public JuiceDTO increment(StockDirection direction) throws JuiceNotFoundException {
+        return changeStock(direction);
+    }
+
+    @Benchmark
+    @Threads(CONTENDED_THREADS)
+    public JuiceDTO incrementContended(StockDirection direction) throws JuiceNotFoundException {
+        return changeStock(direction);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public JuiceDTO findByName() throws JuiceNotFoundException {
+        return juiceService.findByName(hotJuice.getName());
+    }
+
+    @Benchmark
+    @Threads(CONTENDED_THREADS)
+    public JuiceDTO findByNameContended() throws JuiceNotFoundException {
+        return juiceService.findByName(hotJuice.getName());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public List<JuiceDTO> listAll() {
+        return juiceService.listAll();
+    }
+
+    @Benchmark
+    @Threads(CONTENDED_THREADS)
+    public List<JuiceDTO> listAllContended() {
+        return juiceService.listAll();
+    }
+
+    private JuiceDTO changeStock(StockDirection direction) throws JuiceNotFoundException {
+        try {
+            return direction.next()
+                    ? juiceService.increment(hotJuice.getId(), 1)
+                    : juiceService.decrement(hotJuice.getId(), 1);
+        } catch (JuiceStockExceededException e) {
+            return null;
+        }
+    }
+}
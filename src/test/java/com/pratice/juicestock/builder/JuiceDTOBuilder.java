@@ -25,12 +25,15 @@ public class JuiceDTOBuilder {
     @Builder.Default
     private JuiceType type = JuiceType.APPLE;
 
+    private Long version;
+
     public JuiceDTO toJuiceDTO() {
         return new JuiceDTO(id,
                 name,
                 brand,
                 max,
                 quantity,
-                type);
+                type,
+                version);
     }
 }
@@ -0,0 +1,145 @@
+package com.pratice.juicestock.bulk;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.dto.JuiceImportErrorDTO;
+import com.pratice.juicestock.dto.JuiceImportResultDTO;
+import com.pratice.juicestock.exception.InvalidImportException;
+import com.pratice.juicestock.exception.JuiceAlreadyRegisteredException;
+import com.pratice.juicestock.repository.JuiceRepository;
+import com.pratice.juicestock.service.JuiceService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import javax.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class JuiceImporterTest {
+
+    @Mock
+    private JuiceService juiceService;
+
+    @Mock
+    private JuiceRepository juiceRepository;
+
+    private JuiceImporter juiceImporter;
+
+    @BeforeEach
+    void setUp() {
+        juiceImporter = new JuiceImporter(juiceService, juiceRepository, new ObjectMapper(),
+                Validation.buildDefaultValidatorFactory().getValidator(), 2);
+    }
+
+    @Test
+    void whenCsvIsImportedThenValidRowsAreCreatedInChunksAndInvalidOnesReported() throws Exception {
+        // given
+        String csv = "type,name,brand,max,quantity\r\n"
+                + "APPLE,\"Apple, green\",Natural,50,10\r\n"
+                + "ORANGE,Orange juice,Natural,600,10\r\n"
+                + "orange,\"Orange\n\"\"light\"\"\",Natural,50,ten\r\n"
+                + "GRAPEFRUIT,Grapefruit juice,Natural,50,10\r\n"
+                + "\r\n"
+                + "APPLE,Apple juice,Natural,50,10\r\n"
+                + "APPLE,Apple juice,Natural,50,20\r\n";
+
+        // when
+        when(juiceRepository.findNamesIn(anyCollection())).thenReturn(Collections.singletonList("Grapefruit juice"));
+        when(juiceService.createJuices(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // then
+        JuiceImportResultDTO result = juiceImporter.importCsv(asInputStream(csv));
+
+        ArgumentCaptor<List<JuiceDTO>> chunks = ArgumentCaptor.forClass(List.class);
+        verify(juiceService, times(2)).createJuices(chunks.capture());
+        assertThat(names(chunks.getAllValues().get(0)), is(equalTo(Collections.singletonList("Apple, green"))));
+        assertThat(names(chunks.getAllValues().get(1)), is(equalTo(Collections.singletonList("Apple juice"))));
+        assertThat(result.getImported(), is(equalTo(2L)));
+        assertThat(result.getErrors(), contains(
+                new JuiceImportErrorDTO(3L, "Orange juice", "max must be less than or equal to 500"),
+                new JuiceImportErrorDTO(4L, null, "quantity must be a whole number"),
+                new JuiceImportErrorDTO(6L, "Grapefruit juice", new JuiceAlreadyRegisteredException("Grapefruit juice").getMessage()),
+                new JuiceImportErrorDTO(9L, "Apple juice", new JuiceAlreadyRegisteredException("Apple juice").getMessage())));
+    }
+
+    @Test
+    void whenNdjsonIsImportedThenMalformedLinesAreReported() throws Exception {
+        // given
+        String ndjson = "{\"name\":\"Apple juice\",\"brand\":\"Natural\",\"max\":50,\"quantity\":10,\"type\":\"APPLE\",\"id\":7}\n"
+                + "{\"name\":\"Orange juice\",\n"
+                + "{\"name\":\"Grape juice\",\"brand\":\"Natural\",\"max\":50,\"quantity\":10}\n";
+
+        // when
+        when(juiceRepository.findNamesIn(anyCollection())).thenReturn(Collections.emptyList());
+        when(juiceService.createJuices(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // then
+        JuiceImportResultDTO result = juiceImporter.importNdjson(asInputStream(ndjson));
+
+        ArgumentCaptor<List<JuiceDTO>> chunks = ArgumentCaptor.forClass(List.class);
+        verify(juiceService, times(1)).createJuices(chunks.capture());
+        assertThat(chunks.getValue().get(0).getId(), is(nullValue()));
+        assertThat(result.getImported(), is(equalTo(1L)));
+        assertThat(result.getErrors(), hasSize(2));
+        assertThat(result.getErrors().get(0).getLine(), is(equalTo(2L)));
+        assertThat(result.getErrors().get(1), is(equalTo(new JuiceImportErrorDTO(3L, "Grape juice", "type must not be null"))));
+    }
+
+    @Test
+    void whenChunkFailsOnConstraintThenRowsAreCreatedOneByOne() throws Exception {
+        // given
+        String ndjson = "{\"name\":\"Apple juice\",\"brand\":\"Natural\",\"max\":50,\"quantity\":10,\"type\":\"APPLE\"}\n"
+                + "{\"name\":\"Orange juice\",\"brand\":\"Natural\",\"max\":50,\"quantity\":10,\"type\":\"ORANGE\"}\n";
+
+        // when
+        when(juiceRepository.findNamesIn(anyCollection())).thenReturn(Collections.emptyList());
+        when(juiceService.createJuices(anyList())).thenThrow(DataIntegrityViolationException.class);
+        when(juiceService.createJuice(ArgumentMatchers.any(JuiceDTO.class))).thenAnswer(invocation -> {
+            JuiceDTO juiceDTO = invocation.getArgument(0);
+            if (juiceDTO.getName().equals("Apple juice")) {
+                throw new JuiceAlreadyRegisteredException(juiceDTO.getName());
+            }
+            return juiceDTO;
+        });
+
+        // then
+        JuiceImportResultDTO result = juiceImporter.importNdjson(asInputStream(ndjson));
+
+        assertThat(result.getImported(), is(equalTo(1L)));
+        assertThat(result.getErrors(), contains(
+                new JuiceImportErrorDTO(1L, "Apple juice", new JuiceAlreadyRegisteredException("Apple juice").getMessage())));
+    }
+
+    @Test
+    void whenCsvHeaderLacksARequiredColumnThenThrowAnException() {
+        assertThrows(InvalidImportException.class,
+                () -> juiceImporter.importCsv(asInputStream("name,brand,max,type\nApple juice,Natural,50,APPLE\n")));
+        verifyNoInteractions(juiceService);
+    }
+
+    private static InputStream asInputStream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> names(List<JuiceDTO> juiceDTOs) {
+        return juiceDTOs.stream().map(JuiceDTO::getName).collect(Collectors.toList());
+    }
+}
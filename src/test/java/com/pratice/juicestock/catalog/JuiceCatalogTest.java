@@ -0,0 +1,154 @@
+package com.pratice.juicestock.catalog;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pratice.juicestock.builder.JuiceDTOBuilder;
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.dto.JuiceFilterDTO;
+import com.pratice.juicestock.enums.JuiceType;
+import com.pratice.juicestock.repository.JuiceRepository;
+import com.pratice.juicestock.stock.DatabaseStockEngine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Sort;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class JuiceCatalogTest {
+
+    @Mock
+    private JuiceRepository juiceRepository;
+
+    private JuiceCatalog juiceCatalog;
+
+    private JuiceDTO appleJuiceDTO = JuiceDTOBuilder.builder().id(1L).name("Apple").brand("Del Valle")
+            .max(100).quantity(5).type(JuiceType.APPLE).version(0L).build().toJuiceDTO();
+    private JuiceDTO orangeJuiceDTO = JuiceDTOBuilder.builder().id(2L).name("Orange").brand("Tial")
+            .max(100).quantity(60).type(JuiceType.ORANGE).version(0L).build().toJuiceDTO();
+    private JuiceDTO cranberryJuiceDTO = JuiceDTOBuilder.builder().id(3L).name("Cranberry").brand("Del Valle")
+            .max(50).quantity(20).type(JuiceType.CRANBERRY).version(0L).build().toJuiceDTO();
+
+    @BeforeEach
+    void setUp() {
+        juiceCatalog = new JuiceCatalog(juiceRepository, new DatabaseStockEngine(juiceRepository), true, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void whenFilterAndSortAreGivenThenMatchingJuicesAreReturnedInOrder() {
+        // given
+        start(appleJuiceDTO, orangeJuiceDTO, cranberryJuiceDTO);
+        JuiceFilterDTO brandFilter = new JuiceFilterDTO();
+        brandFilter.setBrand("Del Valle");
+        JuiceFilterDTO lowStockFilter = new JuiceFilterDTO();
+        lowStockFilter.setBelowPercent(50);
+
+        // then
+        assertThat(ids(juiceCatalog.select(new JuiceFilterDTO(), Sort.by("id"))), is(equalTo(Arrays.asList(1L, 2L, 3L))));
+        assertThat(ids(juiceCatalog.select(brandFilter, Sort.by("name").and(Sort.by("id")))), is(equalTo(Arrays.asList(1L, 3L))));
+        assertThat(ids(juiceCatalog.select(lowStockFilter, Sort.by(Sort.Direction.DESC, "quantity"))), is(equalTo(Arrays.asList(3L, 1L))));
+        assertThat(juiceCatalog.select(new JuiceFilterDTO(), Sort.by("id")).get(2), is(equalTo(cranberryJuiceDTO)));
+    }
+
+    @Test
+    void whenSortIsNotSupportedOrCatalogIsNotStartedThenNothingIsSelected() {
+        // then
+        assertThat(juiceCatalog.select(new JuiceFilterDTO(), Sort.by("id")), is(nullValue()));
+
+        start(appleJuiceDTO);
+        assertThat(juiceCatalog.select(new JuiceFilterDTO(), Sort.by("brand", "name")), is(nullValue()));
+    }
+
+    @Test
+    void whenJuicesAreWrittenThenNextSnapshotHasThemAndEarlierOneIsUnchanged() {
+        // given
+        start(appleJuiceDTO, orangeJuiceDTO);
+        CatalogSnapshot before = juiceCatalog.snapshot();
+        JuiceDTO restockedAppleJuiceDTO = JuiceDTOBuilder.builder().id(1L).name("Apple").brand("Del Valle")
+                .max(100).quantity(90).type(JuiceType.APPLE).version(1L).build().toJuiceDTO();
+        JuiceDTO staleAppleJuiceDTO = JuiceDTOBuilder.builder().id(1L).name("Apple").brand("Del Valle")
+                .max(100).quantity(70).type(JuiceType.APPLE).version(0L).build().toJuiceDTO();
+
+        // then
+        juiceCatalog.update(restockedAppleJuiceDTO);
+        juiceCatalog.update(cranberryJuiceDTO);
+        juiceCatalog.remove(orangeJuiceDTO.getId());
+        CatalogSnapshot after = juiceCatalog.snapshot();
+        juiceCatalog.update(staleAppleJuiceDTO);
+
+        assertThat(before.size(), is(equalTo(2)));
+        assertThat(before.quantity(0), is(equalTo(5)));
+        assertThat(after.size(), is(equalTo(2)));
+        assertThat(juiceCatalog.select(new JuiceFilterDTO(), Sort.by("id")),
+                is(equalTo(Arrays.asList(restockedAppleJuiceDTO, cranberryJuiceDTO))));
+    }
+
+    @Test
+    void whenWriteArrivesAfterJuiceIsRemovedThenJuiceStaysRemoved() {
+        // given
+        start(appleJuiceDTO, orangeJuiceDTO);
+        JuiceDTO lateOrangeJuiceDTO = JuiceDTOBuilder.builder().id(2L).name("Orange").brand("Tial")
+                .max(100).quantity(70).type(JuiceType.ORANGE).version(1L).build().toJuiceDTO();
+
+        // then
+        juiceCatalog.remove(orangeJuiceDTO.getId());
+        juiceCatalog.snapshot();
+        juiceCatalog.update(lateOrangeJuiceDTO);
+
+        assertThat(ids(juiceCatalog.select(new JuiceFilterDTO(), Sort.by("id"))), is(equalTo(Collections.singletonList(1L))));
+    }
+
+    @Test
+    void whenJuicesAreWrittenThenCatalogVersionMovesForwardEvenIfDisabled() {
+        // given
+        JuiceCatalog disabledJuiceCatalog = new JuiceCatalog(juiceRepository, new DatabaseStockEngine(juiceRepository), false, Duration.ofMinutes(1));
+        CatalogVersion initial = disabledJuiceCatalog.version();
+
+        // when
+        disabledJuiceCatalog.update(appleJuiceDTO);
+        disabledJuiceCatalog.update(appleJuiceDTO);
+        disabledJuiceCatalog.remove(appleJuiceDTO.getId());
+
+        // then
+        CatalogVersion current = disabledJuiceCatalog.version();
+        assertThat(current.getVersion(), is(equalTo(initial.getVersion() + 3)));
+        assertThat(current.eTag(), is(not(equalTo(initial.eTag()))));
+        assertThat(current.getLastModified(), is(greaterThanOrEqualTo(initial.getLastModified())));
+        assertThat(disabledJuiceCatalog.snapshot().size(), is(equalTo(0)));
+    }
+
+    @Test
+    void whenSelectionIsSerializedThenItMatchesListOfJuices() throws Exception {
+        // given
+        ObjectMapper objectMapper = new ObjectMapper();
+        start(appleJuiceDTO, orangeJuiceDTO);
+
+        // when
+        List<JuiceDTO> juices = juiceCatalog.select(new JuiceFilterDTO(), Sort.by("id"));
+
+        // then
+        assertThat(objectMapper.writeValueAsString(juices),
+                is(equalTo(objectMapper.writeValueAsString(Arrays.asList(appleJuiceDTO, orangeJuiceDTO)))));
+        assertThat(objectMapper.writeValueAsString(Collections.singletonMap("juices", juices)),
+                containsString("\"type\":\"ORANGE\""));
+    }
+
+    private void start(JuiceDTO... juiceDTOs) {
+        when(juiceRepository.findAllJuiceDTOs()).thenReturn(Arrays.asList(juiceDTOs));
+        juiceCatalog.start();
+    }
+
+    private static List<Long> ids(List<JuiceDTO> juices) {
+        return juices.stream().map(JuiceDTO::getId).collect(Collectors.toList());
+    }
+}
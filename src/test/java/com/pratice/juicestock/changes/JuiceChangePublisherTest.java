@@ -0,0 +1,71 @@
+package com.pratice.juicestock.changes;
+
+import com.pratice.juicestock.builder.JuiceDTOBuilder;
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.enums.StockChangeType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class JuiceChangePublisherTest {
+
+    @Mock
+    private JuiceChangeListener firstListener;
+
+    @Mock
+    private JuiceChangeListener secondListener;
+
+    private JuiceChangePublisher juiceChangePublisher;
+
+    private JuiceDTO juiceDTO = JuiceDTOBuilder.builder().version(0L).build().toJuiceDTO();
+
+    @BeforeEach
+    void setUp() {
+        juiceChangePublisher = new JuiceChangePublisher(Arrays.asList(firstListener, secondListener));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void whenChangeIsPublishedInsideTransactionThenListenersGetItOnlyAfterCommit() {
+        // given
+        TransactionSynchronizationManager.initSynchronization();
+
+        // when
+        juiceChangePublisher.saved(StockChangeType.INCREMENTED, juiceDTO);
+        juiceChangePublisher.deleted(juiceDTO.getId(), juiceDTO.getName());
+
+        // then
+        verifyNoInteractions(firstListener, secondListener);
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(firstListener).juiceSaved(StockChangeType.INCREMENTED, juiceDTO);
+        verify(secondListener).juiceDeleted(juiceDTO.getId(), juiceDTO.getName());
+    }
+
+    @Test
+    void whenListenerFailsThenOthersStillGetTheChange() {
+        // given
+        doThrow(new IllegalStateException("broken")).when(firstListener).juiceSaved(StockChangeType.CREATED, juiceDTO);
+
+        // when
+        juiceChangePublisher.saved(StockChangeType.CREATED, juiceDTO);
+
+        // then
+        verify(secondListener).juiceSaved(StockChangeType.CREATED, juiceDTO);
+    }
+}
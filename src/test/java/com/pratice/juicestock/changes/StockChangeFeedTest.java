@@ -0,0 +1,172 @@
+package com.pratice.juicestock.changes;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pratice.juicestock.builder.JuiceDTOBuilder;
+import com.pratice.juicestock.bulk.JuiceImporter;
+import com.pratice.juicestock.cache.IdempotencyCache;
+import com.pratice.juicestock.controller.JuiceController;
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.enums.StockChangeType;
+import com.pratice.juicestock.limit.ClientIdentity;
+import com.pratice.juicestock.service.JuiceService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@ExtendWith(MockitoExtension.class)
+public class StockChangeFeedTest {
+
+    private static final String JUICE_CHANGES_URL_PATH = "/api/v1/juices/changes";
+
+    @Mock
+    private JuiceService juiceService;
+
+    @Mock
+    private JuiceImporter juiceImporter;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private List<Runnable> deliveries;
+
+    private JuiceDTO juiceDTO = JuiceDTOBuilder.builder().version(0L).build().toJuiceDTO();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        deliveries = new ArrayList<>();
+    }
+
+    @Test
+    void whenChangesArePublishedThenSubscriberReceivesThemInOrder() throws Exception {
+        // given
+        StockChangeFeed stockChangeFeed = newFeed(StockChangeFeed.SlowSubscriberPolicy.DISCONNECT);
+        MvcResult mvcResult = subscribe(stockChangeFeed, MockMvcRequestBuilders.get(JUICE_CHANGES_URL_PATH));
+
+        // then
+        stockChangeFeed.publish(StockChangeType.CREATED, juiceDTO.getId(), juiceDTO);
+        stockChangeFeed.publish(StockChangeType.DELETED, juiceDTO.getId(), null);
+        deliver();
+
+        String events = mvcResult.getResponse().getContentAsString();
+        assertThat(events, containsString("id:1\nevent:CREATED\ndata:{\"sequence\":1,\"type\":\"CREATED\",\"id\":1,"));
+        assertThat(events, containsString("id:2\nevent:DELETED\ndata:{\"sequence\":2,\"type\":\"DELETED\",\"id\":1,\"juice\":null}"));
+        assertThat(events.indexOf("id:1"), is(lessThan(events.indexOf("id:2"))));
+    }
+
+    @Test
+    void whenSubscriberResumesThenOnlyChangesAfterLastEventIdAreSent() throws Exception {
+        // given
+        StockChangeFeed stockChangeFeed = newFeed(StockChangeFeed.SlowSubscriberPolicy.DISCONNECT);
+        stockChangeFeed.publish(StockChangeType.CREATED, juiceDTO.getId(), juiceDTO);
+        stockChangeFeed.publish(StockChangeType.INCREMENTED, juiceDTO.getId(), juiceDTO);
+        stockChangeFeed.publish(StockChangeType.DECREMENTED, juiceDTO.getId(), juiceDTO);
+
+        // when
+        MvcResult mvcResult = subscribe(stockChangeFeed, MockMvcRequestBuilders.get(JUICE_CHANGES_URL_PATH)
+                .header("Last-Event-ID", "1"));
+        deliver();
+
+        // then
+        String events = mvcResult.getResponse().getContentAsString();
+        assertThat(events, not(containsString("event:CREATED")));
+        assertThat(events, containsString("id:2\nevent:INCREMENTED"));
+        assertThat(events, containsString("id:3\nevent:DECREMENTED"));
+    }
+
+    @Test
+    void whenSubscriberFallsBehindWithDisconnectPolicyThenItIsDisconnected() throws Exception {
+        // given
+        StockChangeFeed stockChangeFeed = newFeed(StockChangeFeed.SlowSubscriberPolicy.DISCONNECT);
+        MvcResult mvcResult = subscribe(stockChangeFeed, MockMvcRequestBuilders.get(JUICE_CHANGES_URL_PATH));
+
+        // when
+        for (int i = 0; i < 5; i++) {
+            stockChangeFeed.publish(StockChangeType.INCREMENTED, juiceDTO.getId(), juiceDTO);
+        }
+        deliver();
+
+        // then
+        assertThat(mvcResult.getResponse().getContentAsString(), is(emptyString()));
+        assertThat(meterRegistry.get(StockChangeFeed.SLOW_SUBSCRIBER_COUNTER).tag("policy", "disconnect").counter().count(), is(equalTo(1.0)));
+        assertThat(meterRegistry.get(StockChangeFeed.SUBSCRIBERS_GAUGE).gauge().value(), is(equalTo(0.0)));
+    }
+
+    @Test
+    void whenSubscriberFallsBehindWithDropPolicyThenOnlyLatestChangesAreSent() throws Exception {
+        // given
+        StockChangeFeed stockChangeFeed = newFeed(StockChangeFeed.SlowSubscriberPolicy.DROP);
+        MvcResult mvcResult = subscribe(stockChangeFeed, MockMvcRequestBuilders.get(JUICE_CHANGES_URL_PATH));
+
+        // when
+        for (int i = 0; i < 6; i++) {
+            stockChangeFeed.publish(StockChangeType.INCREMENTED, juiceDTO.getId(), juiceDTO);
+        }
+        deliver();
+
+        // then
+        String events = mvcResult.getResponse().getContentAsString();
+        assertThat(events, not(containsString("id:2\n")));
+        assertThat(events, containsString("id:3\n"));
+        assertThat(events, containsString("id:6\n"));
+        assertThat(meterRegistry.get(StockChangeFeed.SUBSCRIBERS_GAUGE).gauge().value(), is(equalTo(1.0)));
+    }
+
+    @Test
+    void whenSubscriberResumesAfterRestartThenItSeesAGapInTheSequence() throws Exception {
+        // given
+        StockChangeFeed restartedStockChangeFeed = newFeed(StockChangeFeed.SlowSubscriberPolicy.DISCONNECT, 2000);
+        MvcResult mvcResult = subscribe(restartedStockChangeFeed, MockMvcRequestBuilders.get(JUICE_CHANGES_URL_PATH)
+                .header("Last-Event-ID", "1002"));
+
+        // when
+        restartedStockChangeFeed.publish(StockChangeType.INCREMENTED, juiceDTO.getId(), juiceDTO);
+        deliver();
+
+        // then
+        String events = mvcResult.getResponse().getContentAsString();
+        assertThat(events, containsString("id:2001\nevent:INCREMENTED"));
+        assertThat(events, not(containsString("id:1003\n")));
+    }
+
+    /**
+     * Delivery tasks are queued and only run by {@link #deliver()}, so the subscriber falls
+     * behind when more than four changes are published in between.
+     */
+    private StockChangeFeed newFeed(StockChangeFeed.SlowSubscriberPolicy slowSubscriberPolicy) {
+        return newFeed(slowSubscriberPolicy, 0);
+    }
+
+    private StockChangeFeed newFeed(StockChangeFeed.SlowSubscriberPolicy slowSubscriberPolicy, long epoch) {
+        return new StockChangeFeed(meterRegistry, 8, 4, slowSubscriberPolicy, Duration.ofMinutes(1), deliveries::add, epoch);
+    }
+
+    private MvcResult subscribe(StockChangeFeed stockChangeFeed, MockHttpServletRequestBuilder requestBuilder) throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new JuiceController(juiceService, new ObjectMapper(), stockChangeFeed, juiceImporter,
+                new IdempotencyCache(meterRegistry, 16, Duration.ofMinutes(1)), new ClientIdentity("X-Client-Id", Collections.emptyList())))
+                .build();
+        return mockMvc.perform(requestBuilder.accept(MediaType.TEXT_EVENT_STREAM)).andReturn();
+    }
+
+    private void deliver() {
+        while (!deliveries.isEmpty()) {
+            deliveries.remove(0).run();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.pratice.juicestock.changes;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class TombstonesTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final Tombstones tombstones = new Tombstones(Duration.ofSeconds(10), clock::get);
+
+    @Test
+    void whenTombstonesAreYoungerThanTheTtlThenTheyAreKept() {
+        // given
+        List<Long> expired = new ArrayList<>();
+
+        // when
+        tombstones.lay(1L, expired::add);
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(9));
+        tombstones.lay(2L, expired::add);
+
+        // then
+        assertThat(expired, is(empty()));
+        assertThat(tombstones.size(), is(equalTo(2)));
+    }
+
+    @Test
+    void whenTombstonesAreOlderThanTheTtlThenTheyExpireInTheOrderTheyWereLaid() {
+        // given
+        List<Long> expired = new ArrayList<>();
+
+        // when
+        tombstones.lay(1L, expired::add);
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        tombstones.lay(2L, expired::add);
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        tombstones.lay(3L, expired::add);
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        tombstones.lay(4L, expired::add);
+
+        // then
+        assertThat(expired, contains(1L, 2L));
+        assertThat(tombstones.size(), is(equalTo(2)));
+    }
+}
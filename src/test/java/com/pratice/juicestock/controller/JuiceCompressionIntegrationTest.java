@@ -0,0 +1,70 @@
+package com.pratice.juicestock.controller;
+
+import com.pratice.juicestock.builder.JuiceDTOBuilder;
+import com.pratice.juicestock.service.JuiceService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.equalToIgnoringCase;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class JuiceCompressionIntegrationTest {
+
+    private static final String JUICE_API_URL_PATH = "/api/v1/juices";
+    private static final String BRAND = "Compression";
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private JuiceService juiceService;
+
+    private final List<Long> createdIds = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (Long id : createdIds) {
+            juiceService.deleteById(id);
+        }
+    }
+
+    @Test
+    void whenLargeListingIsRequestedWithGzipThenItIsCompressedAndTaggedWeakly() throws Exception {
+        // given
+        for (int i = 0; i < 40; i++) {
+            createdIds.add(juiceService.createJuice(JuiceDTOBuilder.builder().id(null).name("Compression juice " + i)
+                    .brand(BRAND).build().toJuiceDTO()).getId());
+        }
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+        requestHeaders.set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+
+        // when
+        ResponseEntity<byte[]> response = restTemplate.exchange(JUICE_API_URL_PATH + "?brand=" + BRAND,
+                HttpMethod.GET, new HttpEntity<>(requestHeaders), byte[].class);
+
+        // then
+        assertThat(response.getStatusCode(), is(equalTo(HttpStatus.OK)));
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING), is(equalTo("gzip")));
+        assertThat(response.getHeaders().getETag(), startsWith("W/"));
+        assertThat(response.getHeaders().getVary(), hasItem(equalToIgnoringCase(HttpHeaders.ACCEPT)));
+    }
+}
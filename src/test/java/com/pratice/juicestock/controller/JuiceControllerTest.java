@@ -1,53 +1,112 @@
 package com.pratice.juicestock.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pratice.juicestock.builder.JuiceDTOBuilder;
+import com.pratice.juicestock.bulk.JuiceImporter;
+import com.pratice.juicestock.cache.IdempotencyCache;
+import com.pratice.juicestock.catalog.CatalogVersion;
+import com.pratice.juicestock.changes.StockChangeFeed;
 import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.dto.JuiceFilterDTO;
+import com.pratice.juicestock.dto.JuiceImportErrorDTO;
+import com.pratice.juicestock.dto.JuiceImportResultDTO;
+import com.pratice.juicestock.dto.JuicePageDTO;
+import com.pratice.juicestock.dto.JuiceSuggestionDTO;
 import com.pratice.juicestock.dto.QuantityDTO;
+import com.pratice.juicestock.dto.StockAdjustmentBatchDTO;
+import com.pratice.juicestock.dto.StockAdjustmentDTO;
+import com.pratice.juicestock.dto.StockAdjustmentResultDTO;
+import com.pratice.juicestock.dto.StockStatisticsDTO;
+import com.pratice.juicestock.dto.StockTotalsDTO;
+import com.pratice.juicestock.enums.JuiceType;
 import com.pratice.juicestock.exception.JuiceNotFoundException;
+import com.pratice.juicestock.exception.JuiceStockExceededException;
+import com.pratice.juicestock.exception.JuiceVersionMismatchException;
+import com.pratice.juicestock.limit.ClientIdentity;
 import com.pratice.juicestock.service.JuiceService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.data.web.SortHandlerMethodArgumentResolver;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.ResultHandler;
+import org.springframework.test.web.servlet.ResultMatcher;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.view.json.MappingJackson2JsonView;
 
+import java.time.Duration;
 import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
 
 import static com.pratice.juicestock.utils.JsonConvertionUtils.asJsonString;
 import static org.hamcrest.core.Is.is;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
 public class JuiceControllerTest {
 
-    private static final String JUICE_API_URL_PATH = "api/v1/juices";
+    private static final String JUICE_API_URL_PATH = "/api/v1/juices";
     private static final long VALID_JUICE_ID = 1L;
     private static final long INVALID_JUICE_ID = 2L;
     private static final String JUICE_API_SUBPATH_INCREMENT_URL = "/increment";
     private static final String JUICE_API_SUBPATH_DECREMENT_URL = "/decrement";
+    private static final String JUICE_API_SUBPATH_STOCK_ADJUSTMENTS_URL = "/stock-adjustments";
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
 
     private MockMvc mockMvc;
     
     @Mock
     private JuiceService juiceService;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private StockChangeFeed stockChangeFeed;
+
+    @Mock
+    private JuiceImporter juiceImporter;
+
+    @Spy
+    private IdempotencyCache idempotencyCache = new IdempotencyCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(1));
+
+    @Spy
+    private ClientIdentity clientIdentity = new ClientIdentity("X-Client-Id", Collections.emptyList());
     
     @InjectMocks
     private JuiceController juiceController;
     
+    private CatalogVersion catalogVersion = new CatalogVersion(42L, 1_600_000_000_000L);
+
     @BeforeEach
     void setUp() {
+        lenient().when(juiceService.catalogVersion()).thenReturn(catalogVersion);
         mockMvc = MockMvcBuilders.standaloneSetup(juiceController)
-                .setCustomArgumentResolvers(new PageableHandlerMethodArgumentResolver())
+                .setCustomArgumentResolvers(new PageableHandlerMethodArgumentResolver(), new SortHandlerMethodArgumentResolver())
                 .setViewResolvers((s, locale) -> new MappingJackson2JsonView())
                 .build();
     }
@@ -61,7 +120,7 @@ public class JuiceControllerTest {
         when(juiceService.createJuice(juiceDTO)).thenReturn(juiceDTO);
         
         // then
-        mockMvc.perform(post(JUICE_API_URL_PATH)
+        perform(post(JUICE_API_URL_PATH)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(asJsonString(juiceDTO)))
                 .andExpect(status().isCreated())
@@ -77,7 +136,7 @@ public class JuiceControllerTest {
         juiceDTO.setBrand(null);
         
         // then
-        mockMvc.perform(post(JUICE_API_URL_PATH)
+        perform(post(JUICE_API_URL_PATH)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(asJsonString(juiceDTO)))
                 .andExpect(status().isBadRequest());
@@ -86,20 +145,93 @@ public class JuiceControllerTest {
     @Test
     void whenGETIsCalledWithValidNameThenOkStatusIsReturned() throws Exception {
         // given
-        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().version(2L).build().toJuiceDTO();
         
         // when
         when(juiceService.findByName(juiceDTO.getName())).thenReturn(juiceDTO);
         
         // then
-        mockMvc.perform(MockMvcRequestBuilders.get(JUICE_API_URL_PATH + "/" + juiceDTO.getName())
+        perform(MockMvcRequestBuilders.get(JUICE_API_URL_PATH + "/" + juiceDTO.getName())
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.name", is(juiceDTO.getName())))
                 .andExpect(jsonPath("$.brand", is(juiceDTO.getBrand())))
-                .andExpect(jsonPath("$.type", is(juiceDTO.getType().toString())));
+                .andExpect(jsonPath("$.type", is(juiceDTO.getType().toString())))
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"" + juiceDTO.getVersion() + "\""))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT));
     }
     
+    @Test
+    void whenGETStatsIsCalledThenStatisticsAreReturned() throws Exception {
+        // given
+        StockTotalsDTO stockTotalsDTO = new StockTotalsDTO(1, 10, 50, 0.2, 0);
+        StockStatisticsDTO stockStatisticsDTO = new StockStatisticsDTO(stockTotalsDTO,
+                Collections.singletonMap(JuiceType.APPLE, stockTotalsDTO),
+                Collections.singletonMap("Natural", stockTotalsDTO));
+
+        // when
+        when(juiceService.statistics()).thenReturn(stockStatisticsDTO);
+
+        // then
+        perform(MockMvcRequestBuilders.get(JUICE_API_URL_PATH + "/stats")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total.quantity", is(10)))
+                .andExpect(jsonPath("$.byType.APPLE.fillRatio", is(0.2)))
+                .andExpect(jsonPath("$.byBrand.Natural.juices", is(1)));
+        verify(juiceService, never()).findByName("stats");
+    }
+
+    @Test
+    void whenGETSearchIsCalledThenSuggestionsAreReturned() throws Exception {
+        // given
+        JuiceSuggestionDTO juiceSuggestionDTO = new JuiceSuggestionDTO(1L, "Apple juice", "Natural", JuiceType.APPLE);
+
+        // when
+        when(juiceService.search("app", 5)).thenReturn(Collections.singletonList(juiceSuggestionDTO));
+
+        // then
+        perform(MockMvcRequestBuilders.get(JUICE_API_URL_PATH + "/search")
+                .param("q", "app")
+                .param("limit", "5")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name", is("Apple juice")))
+                .andExpect(jsonPath("$[0].type", is("APPLE")));
+        verify(juiceService, never()).findByName("search");
+    }
+
+    @Test
+    void whenGETChangesIsCalledWithLastEventIdThenChangesAfterItAreStreamed() throws Exception {
+        // when
+        when(stockChangeFeed.subscribe(5L)).thenReturn(new SseEmitter());
+
+        // then
+        mockMvc.perform(MockMvcRequestBuilders.get(JUICE_API_URL_PATH + "/changes")
+                .header("Last-Event-ID", "5")
+                .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted());
+        verify(stockChangeFeed, times(1)).subscribe(5L);
+        verify(juiceService, never()).findByName("changes");
+    }
+
+    @Test
+    void whenGETIsCalledWithCurrentETagOfCachedJuiceThenNotModifiedStatusIsReturned() throws Exception {
+        // given
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().version(2L).build().toJuiceDTO();
+
+        // when
+        when(juiceService.findCachedByName(juiceDTO.getName())).thenReturn(juiceDTO);
+
+        // then
+        perform(MockMvcRequestBuilders.get(JUICE_API_URL_PATH + "/" + juiceDTO.getName())
+                .header(HttpHeaders.IF_NONE_MATCH, "W/\"2\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"2\""))
+                .andExpect(content().string(""));
+        verify(juiceService, never()).findByName(juiceDTO.getName());
+    }
+
     @Test
     void whenGETIsCalledWithoutRegisteredNameThenNotFoundStatusIsReturned() throws Exception {
         // given
@@ -109,7 +241,7 @@ public class JuiceControllerTest {
         when(juiceService.findByName(juiceDTO.getName())).thenThrow(JuiceNotFoundException.class);
         
         // then
-        mockMvc.perform(MockMvcRequestBuilders.get(JUICE_API_URL_PATH + "/" + juiceDTO.getName())
+        perform(MockMvcRequestBuilders.get(JUICE_API_URL_PATH + "/" + juiceDTO.getName())
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound());
     }
@@ -120,10 +252,10 @@ public class JuiceControllerTest {
         JuiceDTO juiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
         
         // when
-        when(juiceService.listAll()).thenReturn(Collections.singletonList(juiceDTO));
+        when(juiceService.listAll(any(JuiceFilterDTO.class), any(Sort.class))).thenReturn(Collections.singletonList(juiceDTO));
         
         // then
-        mockMvc.perform(MockMvcRequestBuilders.get(JUICE_API_URL_PATH)
+        perform(MockMvcRequestBuilders.get(JUICE_API_URL_PATH)
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("[0].name", is(juiceDTO.getName())))
@@ -131,20 +263,166 @@ public class JuiceControllerTest {
                 .andExpect(jsonPath("[0].type", is(juiceDTO.getType().toString())));
     }
     
+    @Test
+    void whenGETListIsCalledThenCatalogVersionIsReturnedAsETagAndLastModified() throws Exception {
+        // when
+        when(juiceService.listAll(any(JuiceFilterDTO.class), any(Sort.class))).thenReturn(Collections.emptyList());
+
+        // then
+        perform(MockMvcRequestBuilders.get(JUICE_API_URL_PATH))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"42\""))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andExpect(header().dateValue(HttpHeaders.LAST_MODIFIED, catalogVersion.getLastModified()));
+    }
+
+    @Test
+    void whenGETListIsCalledWithCurrentCatalogETagThenNotModifiedStatusIsReturnedWithoutListing() throws Exception {
+        // then
+        perform(MockMvcRequestBuilders.get(JUICE_API_URL_PATH)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"41\", \"42\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        perform(MockMvcRequestBuilders.get(JUICE_API_URL_PATH)
+                .header(HttpHeaders.IF_MODIFIED_SINCE, catalogVersion.getLastModified()))
+                .andExpect(status().isNotModified());
+        verify(juiceService, never()).listAll(any(JuiceFilterDTO.class), any(Sort.class));
+    }
+
     @Test
     void whenGETListWithoutJuicesIsCalledThenOkStatusIsReturned() throws Exception {
         // given
         JuiceDTO juiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
         
         // when
-        when(juiceService.listAll()).thenReturn(Collections.singletonList(juiceDTO));
+        when(juiceService.listAll(any(JuiceFilterDTO.class), any(Sort.class))).thenReturn(Collections.singletonList(juiceDTO));
         
         // then
-        mockMvc.perform(MockMvcRequestBuilders.get(JUICE_API_URL_PATH)
+        perform(MockMvcRequestBuilders.get(JUICE_API_URL_PATH)
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk());
     }
     
+    @Test
+    void whenGETListWithFiltersIsCalledThenTheyArePassedToTheService() throws Exception {
+        // given
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().type(JuiceType.ORANGE).build().toJuiceDTO();
+        JuiceFilterDTO juiceFilterDTO = JuiceFilterDTO.builder()
+                .type(JuiceType.ORANGE)
+                .brand(juiceDTO.getBrand())
+                .minQuantity(1)
+                .belowPercent(30)
+                .build();
+
+        // when
+        when(juiceService.listAll(juiceFilterDTO, Sort.by(Sort.Direction.DESC, "quantity"))).thenReturn(Collections.singletonList(juiceDTO));
+
+        // then
+        perform(MockMvcRequestBuilders.get(JUICE_API_URL_PATH)
+                .param("type", "ORANGE")
+                .param("brand", juiceDTO.getBrand())
+                .param("minQuantity", "1")
+                .param("belowPercent", "30")
+                .param("sort", "quantity,desc")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("[0].type", is(JuiceType.ORANGE.toString())));
+    }
+
+    @Test
+    void whenGETListWithOutOfRangeFilterIsCalledThenBadRequestStatusIsReturned() throws Exception {
+        perform(MockMvcRequestBuilders.get(JUICE_API_URL_PATH)
+                .param("belowPercent", "0")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(juiceService);
+    }
+
+    @Test
+    void whenGETListWithLimitIsCalledThenAPageIsReturned() throws Exception {
+        // given
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+
+        // when
+        when(juiceService.listPage(null, 1)).thenReturn(new JuicePageDTO(Collections.singletonList(juiceDTO), "MQ"));
+
+        // then
+        perform(MockMvcRequestBuilders.get(JUICE_API_URL_PATH)
+                .param("limit", "1")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.juices[0].name", is(juiceDTO.getName())))
+                .andExpect(jsonPath("$.nextCursor", is("MQ")));
+    }
+
+    @Test
+    void whenGETListIsCalledAcceptingNdjsonThenOneJuicePerLineIsStreamed() throws Exception {
+        // given
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+
+        // when
+        doAnswer(invocation -> {
+            Consumer<JuiceDTO> consumer = invocation.getArgument(0);
+            consumer.accept(juiceDTO);
+            consumer.accept(juiceDTO);
+            return null;
+        }).when(juiceService).streamAll(any());
+
+        // then
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get(JUICE_API_URL_PATH)
+                .accept("application/x-ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().string(asJsonString(juiceDTO) + "\n" + asJsonString(juiceDTO)));
+    }
+
+    @Test
+    void whenGETListIsCalledAcceptingCsvThenOneJuicePerRowIsStreamed() throws Exception {
+        // given
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().name("Apple, \"green\"").version(3L).build().toJuiceDTO();
+
+        // when
+        doAnswer(invocation -> {
+            Consumer<JuiceDTO> consumer = invocation.getArgument(0);
+            consumer.accept(juiceDTO);
+            return null;
+        }).when(juiceService).streamAll(any());
+
+        // then
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get(JUICE_API_URL_PATH)
+                .accept("text/csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().string("id,name,brand,max,quantity,type,version\r\n"
+                        + "1,\"Apple, \"\"green\"\"\",Natural,50,10,APPLE,3\r\n"));
+    }
+
+    @Test
+    void whenPOSTImportIsCalledWithCsvThenImportResultIsReturned() throws Exception {
+        // given
+        JuiceImportResultDTO juiceImportResultDTO = new JuiceImportResultDTO(1L,
+                Collections.singletonList(new JuiceImportErrorDTO(3L, "Grape juice", "max must be less than or equal to 500")));
+
+        // when
+        when(juiceImporter.importCsv(any())).thenReturn(juiceImportResultDTO);
+
+        // then
+        perform(MockMvcRequestBuilders.post(JUICE_API_URL_PATH + "/import")
+                .contentType("text/csv")
+                .content("name,brand,max,quantity,type\nApple juice,Natural,50,10,APPLE\nGrape juice,Natural,600,10,APPLE\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported", is(1)))
+                .andExpect(jsonPath("$.errors[0].line", is(3)))
+                .andExpect(jsonPath("$.errors[0].name", is("Grape juice")));
+        verify(juiceImporter, never()).importNdjson(any());
+    }
+
     @Test
     void whenDELETEIsCalledWithValidIdThenNoContentStatusIsReturned() throws Exception {
         // given
@@ -154,7 +432,7 @@ public class JuiceControllerTest {
         doNothing().when(juiceService).deleteById(juiceDTO.getId());
         
         // then
-        mockMvc.perform(MockMvcRequestBuilders.delete(JUICE_API_URL_PATH + "/" + juiceDTO.getId())
+        perform(MockMvcRequestBuilders.delete(JUICE_API_URL_PATH + "/" + juiceDTO.getId())
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNoContent());
     }
@@ -165,7 +443,7 @@ public class JuiceControllerTest {
         doThrow(JuiceNotFoundException.class).when(juiceService).deleteById(INVALID_JUICE_ID);
         
         // then
-        mockMvc.perform(MockMvcRequestBuilders.delete(JUICE_API_URL_PATH + "/" + INVALID_JUICE_ID)
+        perform(MockMvcRequestBuilders.delete(JUICE_API_URL_PATH + "/" + INVALID_JUICE_ID)
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound());
     }
@@ -179,9 +457,9 @@ public class JuiceControllerTest {
         JuiceDTO juiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
         juiceDTO.setQuantity(juiceDTO.getQuantity() + quantityDTO.getQuantity());
         
-        when(juiceService.increment(VALID_JUICE_ID, quantityDTO.getQuantity())).thenReturn(juiceDTO);
+        when(juiceService.increment(VALID_JUICE_ID, quantityDTO.getQuantity(), null)).thenReturn(juiceDTO);
 
-        mockMvc.perform(MockMvcRequestBuilders.patch(JUICE_API_URL_PATH + "/" + VALID_JUICE_ID + JUICE_API_SUBPATH_INCREMENT_URL)
+        perform(MockMvcRequestBuilders.patch(JUICE_API_URL_PATH + "/" + VALID_JUICE_ID + JUICE_API_SUBPATH_INCREMENT_URL)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(asJsonString(quantityDTO))).andExpect(status().isOk())
                 .andExpect(jsonPath("$.name", is(juiceDTO.getName())))
@@ -190,83 +468,342 @@ public class JuiceControllerTest {
                 .andExpect(jsonPath("$.quantity", is(juiceDTO.getQuantity())));
     }
     
-    // Configurações opcionais
-
-//    @Test
-//    void whenPATCHIsCalledToIncrementGreatherThanMaxThenBadRequestStatusIsReturned() throws Exception {
-//        QuantityDTO quantityDTO = QuantityDTO.builder()
-//                .quantity(30)
-//                .build();
-//
-//        JuiceDTO JuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
-//        JuiceDTO.setQuantity(JuiceDTO.getQuantity() + quantityDTO.getQuantity());
-//
-//        when(JuiceService.increment(VALID_Juice_ID, quantityDTO.getQuantity())).thenThrow(JuiceStockExceededException.class);
-//
-//        mockMvc.perform(patch(Juice_API_URL_PATH + "/" + VALID_Juice_ID + Juice_API_SUBPATH_INCREMENT_URL)
-//                .contentType(MediaType.APPLICATION_JSON)
-//                .con(asJsonString(quantityDTO))).andExpect(status().isBadRequest());
-//    }
-
-//    @Test
-//    void whenPATCHIsCalledWithInvalidJuiceIdToIncrementThenNotFoundStatusIsReturned() throws Exception {
-//        QuantityDTO quantityDTO = QuantityDTO.builder()
-//                .quantity(30)
-//                .build();
-//
-//        when(JuiceService.increment(INVALID_Juice_ID, quantityDTO.getQuantity())).thenThrow(JuiceNotFoundException.class);
-//        mockMvc.perform(patch(Juice_API_URL_PATH + "/" + INVALID_Juice_ID + Juice_API_SUBPATH_INCREMENT_URL)
-//                .contentType(MediaType.APPLICATION_JSON)
-//                .content(asJsonString(quantityDTO)))
-//                .andExpect(status().isNotFound());
-//    }
-//
-//    @Test
-//    void whenPATCHIsCalledToDecrementDiscountThenOKstatusIsReturned() throws Exception {
-//        QuantityDTO quantityDTO = QuantityDTO.builder()
-//                .quantity(5)
-//                .build();
-//
-//        JuiceDTO JuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
-//        JuiceDTO.setQuantity(JuiceDTO.getQuantity() + quantityDTO.getQuantity());
-//
-//        when(JuiceService.decrement(VALID_Juice_ID, quantityDTO.getQuantity())).thenReturn(JuiceDTO);
-//
-//        mockMvc.perform(patch(Juice_API_URL_PATH + "/" + VALID_Juice_ID + Juice_API_SUBPATH_DECREMENT_URL)
-//                .contentType(MediaType.APPLICATION_JSON)
-//                .content(asJsonString(quantityDTO))).andExpect(status().isOk())
-//                .andExpect(jsonPath("$.name", is(JuiceDTO.getName())))
-//                .andExpect(jsonPath("$.brand", is(JuiceDTO.getBrand())))
-//                .andExpect(jsonPath("$.type", is(JuiceDTO.getType().toString())))
-//                .andExpect(jsonPath("$.quantity", is(JuiceDTO.getQuantity())));
-//    }
-//
-//    @Test
-//    void whenPATCHIsCalledToDEcrementLowerThanZeroThenBadRequestStatusIsReturned() throws Exception {
-//        QuantityDTO quantityDTO = QuantityDTO.builder()
-//                .quantity(60)
-//                .build();
-//
-//        JuiceDTO JuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
-//        JuiceDTO.setQuantity(JuiceDTO.getQuantity() + quantityDTO.getQuantity());
-//
-//        when(JuiceService.decrement(VALID_Juice_ID, quantityDTO.getQuantity())).thenThrow(JuiceStockExceededException.class);
-//
-//        mockMvc.perform(patch(Juice_API_URL_PATH + "/" + VALID_Juice_ID + Juice_API_SUBPATH_DECREMENT_URL)
-//                .contentType(MediaType.APPLICATION_JSON)
-//                .content(asJsonString(quantityDTO))).andExpect(status().isBadRequest());
-//    }
-//
-//    @Test
-//    void whenPATCHIsCalledWithInvalidJuiceIdToDecrementThenNotFoundStatusIsReturned() throws Exception {
-//        QuantityDTO quantityDTO = QuantityDTO.builder()
-//                .quantity(5)
-//                .build();
-//
-//        when(JuiceService.decrement(INVALID_Juice_ID, quantityDTO.getQuantity())).thenThrow(JuiceNotFoundException.class);
-//        mockMvc.perform(patch(Juice_API_URL_PATH + "/" + INVALID_Juice_ID + Juice_API_SUBPATH_DECREMENT_URL)
-//                .contentType(MediaType.APPLICATION_JSON)
-//                .content(asJsonString(quantityDTO)))
-//                .andExpect(status().isNotFound());
-//    }
+    @Test
+    void whenPATCHIsRepeatedWithTheSameIdempotencyKeyThenTheFirstResponseIsReplayed() throws Exception {
+        // given
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(10)
+                .build();
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().version(1L).build().toJuiceDTO();
+        juiceDTO.setQuantity(juiceDTO.getQuantity() + quantityDTO.getQuantity());
+
+        // when
+        when(juiceService.increment(VALID_JUICE_ID, quantityDTO.getQuantity(), null)).thenReturn(juiceDTO);
+
+        // then
+        for (int i = 0; i < 2; i++) {
+            perform(MockMvcRequestBuilders.patch(JUICE_API_URL_PATH + "/" + VALID_JUICE_ID + JUICE_API_SUBPATH_INCREMENT_URL)
+                    .header(IDEMPOTENCY_KEY, "retried-increment")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(asJsonString(quantityDTO)))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                    .andExpect(jsonPath("$.quantity", is(juiceDTO.getQuantity())));
+        }
+        verify(juiceService, times(1)).increment(VALID_JUICE_ID, quantityDTO.getQuantity(), null);
+    }
+
+    @Test
+    void whenDifferentClientsUseTheSameIdempotencyKeyThenEachRequestRuns() throws Exception {
+        // given
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(10)
+                .build();
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().version(1L).build().toJuiceDTO();
+
+        // when
+        when(juiceService.increment(VALID_JUICE_ID, quantityDTO.getQuantity(), null)).thenReturn(juiceDTO);
+
+        // then
+        for (String client : new String[]{"10.0.0.1", "10.0.0.2"}) {
+            perform(MockMvcRequestBuilders.patch(JUICE_API_URL_PATH + "/" + VALID_JUICE_ID + JUICE_API_SUBPATH_INCREMENT_URL)
+                    .with(request -> {
+                        request.setRemoteAddr(client);
+                        return request;
+                    })
+                    .header(IDEMPOTENCY_KEY, "shared-key")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(asJsonString(quantityDTO)))
+                    .andExpect(status().isOk());
+        }
+        verify(juiceService, times(2)).increment(VALID_JUICE_ID, quantityDTO.getQuantity(), null);
+    }
+
+    @Test
+    void whenIdempotencyKeyIsReusedForADifferentRequestThenUnprocessableEntityStatusIsReturned() throws Exception {
+        // given
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(10)
+                .build();
+
+        // when
+        when(juiceService.createJuice(juiceDTO)).thenReturn(juiceDTO);
+        perform(post(JUICE_API_URL_PATH)
+                .header(IDEMPOTENCY_KEY, "reused")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(juiceDTO)))
+                .andExpect(status().isCreated());
+
+        // then
+        perform(MockMvcRequestBuilders.patch(JUICE_API_URL_PATH + "/" + VALID_JUICE_ID + JUICE_API_SUBPATH_INCREMENT_URL)
+                .header(IDEMPOTENCY_KEY, "reused")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO)))
+                .andExpect(status().isUnprocessableEntity());
+        verify(juiceService, never()).increment(VALID_JUICE_ID, quantityDTO.getQuantity(), null);
+    }
+
+    @Test
+    void whenRequestWithIdempotencyKeyFailsThenItCanBeRetried() throws Exception {
+        // given
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(10)
+                .build();
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+
+        // when
+        when(juiceService.decrement(VALID_JUICE_ID, quantityDTO.getQuantity(), null))
+                .thenThrow(JuiceNotFoundException.class)
+                .thenReturn(juiceDTO);
+
+        // then
+        perform(MockMvcRequestBuilders.patch(JUICE_API_URL_PATH + "/" + VALID_JUICE_ID + JUICE_API_SUBPATH_DECREMENT_URL)
+                .header(IDEMPOTENCY_KEY, "failed-decrement")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO)))
+                .andExpect(status().isNotFound());
+        perform(MockMvcRequestBuilders.patch(JUICE_API_URL_PATH + "/" + VALID_JUICE_ID + JUICE_API_SUBPATH_DECREMENT_URL)
+                .header(IDEMPOTENCY_KEY, "failed-decrement")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO)))
+                .andExpect(status().isOk());
+        verify(juiceService, times(2)).decrement(VALID_JUICE_ID, quantityDTO.getQuantity(), null);
+    }
+
+    @Test
+    void whenPATCHIsCalledToIncrementGreatherThanMaxThenBadRequestStatusIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(30)
+                .build();
+
+        when(juiceService.increment(VALID_JUICE_ID, quantityDTO.getQuantity(), null)).thenThrow(JuiceStockExceededException.class);
+
+        perform(MockMvcRequestBuilders.patch(JUICE_API_URL_PATH + "/" + VALID_JUICE_ID + JUICE_API_SUBPATH_INCREMENT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO))).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenPATCHIsCalledWithInvalidJuiceIdToIncrementThenNotFoundStatusIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(30)
+                .build();
+
+        when(juiceService.increment(INVALID_JUICE_ID, quantityDTO.getQuantity(), null)).thenThrow(JuiceNotFoundException.class);
+        perform(MockMvcRequestBuilders.patch(JUICE_API_URL_PATH + "/" + INVALID_JUICE_ID + JUICE_API_SUBPATH_INCREMENT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void whenPATCHIsCalledToDecrementDiscountThenOKstatusIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(5)
+                .build();
+
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        juiceDTO.setQuantity(juiceDTO.getQuantity() - quantityDTO.getQuantity());
+
+        when(juiceService.decrement(VALID_JUICE_ID, quantityDTO.getQuantity(), null)).thenReturn(juiceDTO);
+
+        perform(MockMvcRequestBuilders.patch(JUICE_API_URL_PATH + "/" + VALID_JUICE_ID + JUICE_API_SUBPATH_DECREMENT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO))).andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is(juiceDTO.getName())))
+                .andExpect(jsonPath("$.brand", is(juiceDTO.getBrand())))
+                .andExpect(jsonPath("$.type", is(juiceDTO.getType().toString())))
+                .andExpect(jsonPath("$.quantity", is(juiceDTO.getQuantity())));
+    }
+
+    @Test
+    void whenPATCHIsCalledToDEcrementLowerThanZeroThenBadRequestStatusIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(60)
+                .build();
+
+        when(juiceService.decrement(VALID_JUICE_ID, quantityDTO.getQuantity(), null)).thenThrow(JuiceStockExceededException.class);
+
+        perform(MockMvcRequestBuilders.patch(JUICE_API_URL_PATH + "/" + VALID_JUICE_ID + JUICE_API_SUBPATH_DECREMENT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO))).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenPATCHIsCalledToIncrementZeroThenBadRequestStatusIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(0)
+                .build();
+
+        perform(MockMvcRequestBuilders.patch(JUICE_API_URL_PATH + "/" + VALID_JUICE_ID + JUICE_API_SUBPATH_INCREMENT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO))).andExpect(status().isBadRequest());
+        verifyNoInteractions(juiceService);
+    }
+
+    @Test
+    void whenPATCHIsCalledToIncrementANegativeQuantityThenBadRequestStatusIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(-1000)
+                .build();
+
+        perform(MockMvcRequestBuilders.patch(JUICE_API_URL_PATH + "/" + VALID_JUICE_ID + JUICE_API_SUBPATH_INCREMENT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO))).andExpect(status().isBadRequest());
+        verifyNoInteractions(juiceService);
+    }
+
+    @Test
+    void whenPATCHIsCalledToDecrementZeroThenBadRequestStatusIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(0)
+                .build();
+
+        perform(MockMvcRequestBuilders.patch(JUICE_API_URL_PATH + "/" + VALID_JUICE_ID + JUICE_API_SUBPATH_DECREMENT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO))).andExpect(status().isBadRequest());
+        verifyNoInteractions(juiceService);
+    }
+
+    @Test
+    void whenPATCHIsCalledToDecrementANegativeQuantityThenBadRequestStatusIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(-1000)
+                .build();
+
+        perform(MockMvcRequestBuilders.patch(JUICE_API_URL_PATH + "/" + VALID_JUICE_ID + JUICE_API_SUBPATH_DECREMENT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO))).andExpect(status().isBadRequest());
+        verifyNoInteractions(juiceService);
+    }
+
+    @Test
+    void whenPATCHIsCalledWithInvalidJuiceIdToDecrementThenNotFoundStatusIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(5)
+                .build();
+
+        when(juiceService.decrement(INVALID_JUICE_ID, quantityDTO.getQuantity(), null)).thenThrow(JuiceNotFoundException.class);
+        perform(MockMvcRequestBuilders.patch(JUICE_API_URL_PATH + "/" + INVALID_JUICE_ID + JUICE_API_SUBPATH_DECREMENT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void whenPATCHIsCalledWithIfMatchThenExpectedVersionIsPassedAndNewETagIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(10)
+                .build();
+
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().version(4L).build().toJuiceDTO();
+
+        when(juiceService.increment(VALID_JUICE_ID, quantityDTO.getQuantity(), 3L)).thenReturn(juiceDTO);
+
+        perform(MockMvcRequestBuilders.patch(JUICE_API_URL_PATH + "/" + VALID_JUICE_ID + JUICE_API_SUBPATH_INCREMENT_URL)
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""))
+                .andExpect(jsonPath("$.version", is(4)));
+    }
+
+    @Test
+    void whenPATCHIsCalledWithStaleIfMatchThenPreconditionFailedStatusIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(5)
+                .build();
+
+        when(juiceService.decrement(VALID_JUICE_ID, quantityDTO.getQuantity(), 3L)).thenThrow(JuiceVersionMismatchException.class);
+
+        perform(MockMvcRequestBuilders.patch(JUICE_API_URL_PATH + "/" + VALID_JUICE_ID + JUICE_API_SUBPATH_DECREMENT_URL)
+                .header(HttpHeaders.IF_MATCH, "W/\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO)))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void whenPATCHIsCalledWithMalformedIfMatchThenItCanNeverMatch() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(5)
+                .build();
+
+        when(juiceService.increment(VALID_JUICE_ID, quantityDTO.getQuantity(), -1L)).thenThrow(JuiceVersionMismatchException.class);
+
+        perform(MockMvcRequestBuilders.patch(JUICE_API_URL_PATH + "/" + VALID_JUICE_ID + JUICE_API_SUBPATH_INCREMENT_URL)
+                .header(HttpHeaders.IF_MATCH, "three")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO)))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void whenStockChangeKeepsConflictingThenConflictStatusIsReturned() throws Exception {
+        QuantityDTO quantityDTO = QuantityDTO.builder()
+                .quantity(5)
+                .build();
+
+        when(juiceService.increment(VALID_JUICE_ID, quantityDTO.getQuantity(), null)).thenThrow(OptimisticLockingFailureException.class);
+
+        perform(MockMvcRequestBuilders.patch(JUICE_API_URL_PATH + "/" + VALID_JUICE_ID + JUICE_API_SUBPATH_INCREMENT_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(quantityDTO)))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void whenPOSTIsCalledWithStockAdjustmentsThenOkStatusIsReturned() throws Exception {
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        List<StockAdjustmentDTO> adjustments = Collections.singletonList(new StockAdjustmentDTO(VALID_JUICE_ID, 5));
+        StockAdjustmentBatchDTO stockAdjustmentBatchDTO = new StockAdjustmentBatchDTO(adjustments);
+
+        when(juiceService.adjustStock(adjustments))
+                .thenReturn(Collections.singletonList(StockAdjustmentResultDTO.applied(VALID_JUICE_ID, 5, juiceDTO)));
+
+        perform(post(JUICE_API_URL_PATH + JUICE_API_SUBPATH_STOCK_ADJUSTMENTS_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(stockAdjustmentBatchDTO)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("[0].id", is((int) VALID_JUICE_ID)))
+                .andExpect(jsonPath("[0].juice.name", is(juiceDTO.getName())));
+    }
+
+    @Test
+    void whenPOSTIsCalledWithOutOfRangeStockAdjustmentThenBadRequestStatusIsReturned() throws Exception {
+        StockAdjustmentBatchDTO stockAdjustmentBatchDTO = new StockAdjustmentBatchDTO(
+                Collections.singletonList(new StockAdjustmentDTO(VALID_JUICE_ID, 500)));
+
+        perform(post(JUICE_API_URL_PATH + JUICE_API_SUBPATH_STOCK_ADJUSTMENTS_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(stockAdjustmentBatchDTO)))
+                .andExpect(status().isBadRequest());
+    }
+
+    private ResultActions perform(RequestBuilder requestBuilder) throws Exception {
+        MvcResult mvcResult = mockMvc.perform(requestBuilder).andReturn();
+        if (mvcResult.getRequest().isAsyncStarted()) {
+            return mockMvc.perform(asyncDispatch(mvcResult));
+        }
+        return new ResultActions() {
+            @Override
+            public ResultActions andExpect(ResultMatcher matcher) throws Exception {
+                matcher.match(mvcResult);
+                return this;
+            }
+
+            @Override
+            public ResultActions andDo(ResultHandler handler) throws Exception {
+                handler.handle(mvcResult);
+                return this;
+            }
+
+            @Override
+            public MvcResult andReturn() {
+                return mvcResult;
+            }
+        };
+    }
 }
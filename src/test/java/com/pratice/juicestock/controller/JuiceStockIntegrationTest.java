@@ -0,0 +1,134 @@
+package com.pratice.juicestock.controller;
+
+import com.pratice.juicestock.builder.JuiceDTOBuilder;
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.dto.StockAdjustmentBatchDTO;
+import com.pratice.juicestock.dto.StockAdjustmentDTO;
+import com.pratice.juicestock.enums.JuiceType;
+import com.pratice.juicestock.service.JuiceService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.pratice.juicestock.utils.JsonConvertionUtils.asJsonString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "juicestock.load-shedding.enabled=false")
+@AutoConfigureMockMvc
+public class JuiceStockIntegrationTest {
+
+    private static final String JUICE_API_URL_PATH = "/api/v1/juices";
+    private static final String BRAND = "Integration";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JuiceService juiceService;
+
+    private final List<Long> createdIds = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (Long id : createdIds) {
+            juiceService.deleteById(id);
+        }
+    }
+
+    @Test
+    void whenStockIsAdjustedInBatchThenListingAndStatisticsShowTheNewQuantities() throws Exception {
+        // given
+        JuiceDTO appleJuiceDTO = create(JuiceDTOBuilder.builder().id(null).name("Integration apple juice").brand(BRAND)
+                .max(50).quantity(10).build().toJuiceDTO());
+        JuiceDTO orangeJuiceDTO = create(JuiceDTOBuilder.builder().id(null).name("Integration orange juice").brand(BRAND)
+                .type(JuiceType.ORANGE).max(50).quantity(20).build().toJuiceDTO());
+        StockAdjustmentBatchDTO batch = new StockAdjustmentBatchDTO(Arrays.asList(
+                new StockAdjustmentDTO(appleJuiceDTO.getId(), 15),
+                new StockAdjustmentDTO(orangeJuiceDTO.getId(), -5)));
+
+        // when
+        perform(post(JUICE_API_URL_PATH + "/stock-adjustments")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(batch)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].juice.version", is((int) (appleJuiceDTO.getVersion() + 1))))
+                .andExpect(jsonPath("$[1].juice.version", is((int) (orangeJuiceDTO.getVersion() + 1))));
+
+        // then
+        perform(get(JUICE_API_URL_PATH).param("brand", BRAND))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].quantity", contains(25, 15)));
+        perform(get(JUICE_API_URL_PATH + "/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.byBrand." + BRAND + ".quantity", is(40)));
+    }
+
+    @Test
+    void whenBatchesAdjustTheSameJuiceConcurrentlyThenConflictsAreRetriedWithoutLosingUpdates() throws Exception {
+        // given
+        JuiceDTO juiceDTO = create(JuiceDTOBuilder.builder().id(null).name("Integration grapefruit juice").brand(BRAND)
+                .type(JuiceType.GRAPEFRUIT).max(50).quantity(10).build().toJuiceDTO());
+        int threads = 4;
+        int adjustmentsPerThread = 5;
+        List<StockAdjustmentDTO> batch = Collections.singletonList(new StockAdjustmentDTO(juiceDTO.getId(), 1));
+
+        // when
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            tasks.add(() -> {
+                int applied = 0;
+                for (int j = 0; j < adjustmentsPerThread; j++) {
+                    if (juiceService.adjustStock(batch).get(0).getJuice() != null) {
+                        applied++;
+                    }
+                }
+                return applied;
+            });
+        }
+        int applied = 0;
+        for (Future<Integer> future : executorService.invokeAll(tasks)) {
+            applied += future.get();
+        }
+        executorService.shutdown();
+
+        // then
+        assertThat(applied, is(threads * adjustmentsPerThread));
+        assertThat(juiceService.findByName(juiceDTO.getName()).getQuantity(), is(juiceDTO.getQuantity() + threads * adjustmentsPerThread));
+    }
+
+    private JuiceDTO create(JuiceDTO juiceDTO) throws Exception {
+        JuiceDTO createdJuiceDTO = juiceService.createJuice(juiceDTO);
+        createdIds.add(createdJuiceDTO.getId());
+        return createdJuiceDTO;
+    }
+
+    private ResultActions perform(RequestBuilder requestBuilder) throws Exception {
+        ResultActions resultActions = mockMvc.perform(requestBuilder);
+        MvcResult mvcResult = resultActions.andReturn();
+        return mvcResult.getRequest().isAsyncStarted() ? mockMvc.perform(asyncDispatch(mvcResult)) : resultActions;
+    }
+}
@@ -0,0 +1,206 @@
+package com.pratice.juicestock.journal;
+
+import com.pratice.juicestock.builder.JuiceDTOBuilder;
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.entity.Juice;
+import com.pratice.juicestock.mapper.JuiceMapper;
+import com.pratice.juicestock.repository.JuiceRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class StockJournalTest {
+
+    @Mock
+    private JuiceRepository juiceRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path directory;
+
+    private JuiceMapper juiceMapper = JuiceMapper.INSTANCE;
+
+    @Test
+    void whenCheckpointIsCalledThenJournalIsFoldedIntoTheDatabase() throws Exception {
+        // given
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        Juice juice = juiceMapper.toModel(juiceDTO);
+        StockJournal stockJournal = newStockJournal(DataSize.ofMegabytes(1));
+
+        // when
+        when(juiceRepository.findAllById(anyIterable())).thenReturn(Collections.singletonList(juice));
+        when(juiceRepository.updateQuantity(anyLong(), anyInt())).thenReturn(1);
+
+        // then
+        stockJournal.recover();
+        stockJournal.append(juiceDTO.getId(), 5);
+        stockJournal.append(juiceDTO.getId(), -2);
+        stockJournal.checkpoint();
+        stockJournal.close();
+
+        verify(juiceRepository, times(1)).updateQuantity(juiceDTO.getId(), juiceDTO.getQuantity() + 3);
+        assertThat(StockSnapshot.read(directory).getQuantities(), hasEntry(juiceDTO.getId(), juiceDTO.getQuantity() + 3));
+    }
+
+    @Test
+    void whenJournalIsNotCheckpointedThenRecoveryReplaysIt() throws Exception {
+        // given
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        Juice juice = juiceMapper.toModel(juiceDTO);
+        Path segment = directory.resolve("stock-00000000000000000000.journal");
+        JournalSegment journalSegment = JournalSegment.create(directory, 0, 16);
+        journalSegment.append(juiceDTO.getId(), 4, System.currentTimeMillis());
+        journalSegment.append(juiceDTO.getId(), 1, System.currentTimeMillis());
+        journalSegment.force();
+        journalSegment.close();
+
+        // when
+        when(juiceRepository.findAllById(anyIterable())).thenReturn(Collections.singletonList(juice));
+        when(juiceRepository.updateQuantity(anyLong(), anyInt())).thenReturn(1);
+
+        // then
+        StockJournal stockJournal = newStockJournal(DataSize.ofKilobytes(1));
+        stockJournal.recover();
+
+        verify(juiceRepository, times(1)).updateQuantity(juiceDTO.getId(), juiceDTO.getQuantity() + 5);
+        assertThat(Files.exists(segment), is(false));
+        stockJournal.close();
+    }
+
+    @Test
+    void whenSegmentIsFullThenJournalRollsToANewOne() throws Exception {
+        // given
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        Juice juice = juiceMapper.toModel(juiceDTO);
+        StockJournal stockJournal = newStockJournal(DataSize.ofBytes(JournalSegment.RECORD_SIZE * 2));
+
+        // when
+        when(juiceRepository.findAllById(anyIterable())).thenReturn(Collections.singletonList(juice));
+        when(juiceRepository.updateQuantity(anyLong(), anyInt())).thenReturn(1);
+
+        // then
+        stockJournal.recover();
+        for (int i = 0; i < 5; i++) {
+            stockJournal.append(juiceDTO.getId(), 1);
+        }
+        stockJournal.close();
+
+        assertThat(StockSnapshot.read(directory).getQuantities(), hasEntry(juiceDTO.getId(), juiceDTO.getQuantity() + 5));
+    }
+
+    @Test
+    void whenAppendingThreadIsInterruptedThenRecordIsStillKeptAndInterruptIsPassedOn() throws Exception {
+        // given
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        Juice juice = juiceMapper.toModel(juiceDTO);
+        StockJournal stockJournal = newStockJournal(DataSize.ofMegabytes(1));
+
+        // when
+        when(juiceRepository.findAllById(anyIterable())).thenReturn(Collections.singletonList(juice));
+        when(juiceRepository.updateQuantity(anyLong(), anyInt())).thenReturn(1);
+
+        // then
+        stockJournal.recover();
+        Thread.currentThread().interrupt();
+        stockJournal.append(juiceDTO.getId(), 5);
+        assertThat(Thread.interrupted(), is(true));
+        stockJournal.close();
+
+        assertThat(StockSnapshot.read(directory).getQuantities(), hasEntry(juiceDTO.getId(), juiceDTO.getQuantity() + 5));
+    }
+
+    @Test
+    void whenReservationIsCancelledThenLaterRecordsAreStillRecovered() throws Exception {
+        // given
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        Juice juice = juiceMapper.toModel(juiceDTO);
+        JournalSegment journalSegment = JournalSegment.create(directory, 0, 16);
+        int cancelled = journalSegment.reserve();
+        journalSegment.append(juiceDTO.getId(), 4, System.currentTimeMillis());
+        journalSegment.write(cancelled, juiceDTO.getId(), 0, System.currentTimeMillis());
+        journalSegment.force();
+        journalSegment.close();
+
+        // when
+        when(juiceRepository.findAllById(anyIterable())).thenReturn(Collections.singletonList(juice));
+        when(juiceRepository.updateQuantity(anyLong(), anyInt())).thenReturn(1);
+
+        // then
+        StockJournal stockJournal = newStockJournal(DataSize.ofKilobytes(1));
+        stockJournal.recover();
+
+        verify(juiceRepository, times(1)).updateQuantity(juiceDTO.getId(), juiceDTO.getQuantity() + 4);
+        stockJournal.close();
+    }
+
+    @Test
+    void whenRecordIsWrittenAfterAnEmptySlotThenItIsNotDurableUntilTheSlotIsWritten() throws Exception {
+        // given
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        JournalSegment journalSegment = JournalSegment.create(directory, 0, 16);
+        int first = journalSegment.reserve();
+        int second = journalSegment.reserve();
+
+        // when
+        journalSegment.write(second, juiceDTO.getId(), 4, System.currentTimeMillis());
+        journalSegment.force();
+
+        // then
+        assertThat(journalSegment.isDurable(second), is(false));
+        journalSegment.write(first, juiceDTO.getId(), 1, System.currentTimeMillis());
+        journalSegment.force();
+        assertThat(journalSegment.isDurable(second), is(true));
+        journalSegment.close();
+    }
+
+    @Test
+    void whenEarlierSlotIsStillReservedThenLaterAppendWaitsForIt() throws Exception {
+        // given
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        Juice juice = juiceMapper.toModel(juiceDTO);
+        StockJournal stockJournal = newStockJournal(DataSize.ofMegabytes(1));
+
+        // when
+        when(juiceRepository.findAllById(anyIterable())).thenReturn(Collections.singletonList(juice));
+        when(juiceRepository.updateQuantity(anyLong(), anyInt())).thenReturn(1);
+        stockJournal.recover();
+        StockJournal.Reservation reservation = stockJournal.reserve();
+        CompletableFuture<Void> append = CompletableFuture.runAsync(() -> stockJournal.append(juiceDTO.getId(), 5));
+
+        // then
+        assertThrows(TimeoutException.class, () -> append.get(100, TimeUnit.MILLISECONDS));
+        reservation.cancel(juiceDTO.getId());
+        append.get(5, TimeUnit.SECONDS);
+        stockJournal.close();
+
+        assertThat(StockSnapshot.read(directory).getQuantities(), hasEntry(juiceDTO.getId(), juiceDTO.getQuantity() + 5));
+    }
+
+    private StockJournal newStockJournal(DataSize segmentSize) {
+        return new StockJournal(juiceRepository, transactionManager, directory.toString(), segmentSize,
+                Duration.ofMillis(1), Duration.ofHours(1));
+    }
+}
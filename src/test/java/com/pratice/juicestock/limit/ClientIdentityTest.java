@@ -0,0 +1,50 @@
+package com.pratice.juicestock.limit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class ClientIdentityTest {
+
+    private static final String CLIENT_HEADER = "X-Client-Id";
+    private static final String PROXY_ADDRESS = "10.0.0.1";
+
+    private final ClientIdentity clientIdentity = new ClientIdentity(CLIENT_HEADER, Collections.singletonList(PROXY_ADDRESS));
+
+    @Test
+    void whenRequestComesStraightFromTheClientThenItsHeaderIsIgnored() {
+        // given
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("192.168.0.7");
+        request.addHeader(CLIENT_HEADER, "rotated-id");
+
+        // then
+        assertThat(clientIdentity.of(request), is(equalTo("192.168.0.7")));
+    }
+
+    @Test
+    void whenRequestComesFromATrustedProxyThenTheHeaderNamesTheClient() {
+        // given
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr(PROXY_ADDRESS);
+        request.addHeader(CLIENT_HEADER, "client-a");
+
+        // then
+        assertThat(clientIdentity.of(request), is(equalTo("client-a")));
+    }
+
+    @Test
+    void whenTrustedProxySendsNoHeaderThenTheProxyAddressIsUsed() {
+        // given
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr(PROXY_ADDRESS);
+
+        // then
+        assertThat(clientIdentity.of(request), is(equalTo(PROXY_ADDRESS)));
+    }
+}
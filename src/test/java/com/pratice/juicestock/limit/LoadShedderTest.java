@@ -0,0 +1,116 @@
+package com.pratice.juicestock.limit;
+
+import com.pratice.juicestock.metrics.JuiceServiceMetrics;
+import com.pratice.juicestock.stock.StockStatistics;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@ExtendWith(MockitoExtension.class)
+public class LoadShedderTest {
+
+    @Mock
+    private StockStatistics stockStatistics;
+
+    private MockClock clock;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private JuiceServiceMetrics juiceServiceMetrics;
+
+    private LoadShedder loadShedder;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MockClock();
+        meterRegistry = new SimpleMeterRegistry(SimpleConfig.DEFAULT, clock);
+        juiceServiceMetrics = new JuiceServiceMetrics(meterRegistry, stockStatistics);
+        loadShedder = new LoadShedder(meterRegistry, juiceServiceMetrics, true,
+                Duration.ofMillis(500), Duration.ofMillis(100), Duration.ofSeconds(1), 0.5, 1.0, 10);
+    }
+
+    @Test
+    void whenP99StaysAboveTheLimitThenMoreRequestsAreShedUntilItRecovers() {
+        // when
+        operations(9, Duration.ofMillis(10));
+        operations(1, Duration.ofSeconds(2));
+        loadShedder.evaluate();
+        assertThat(loadShedder.ratio(), is(equalTo(0.5)));
+        operations(20, Duration.ofSeconds(1));
+        loadShedder.evaluate();
+
+        // then
+        assertThat(loadShedder.ratio(), is(equalTo(1.0)));
+        assertThat(loadShedder.shed("increment"), is(true));
+        assertThat(meterRegistry.get(LoadShedder.SHED_COUNTER).tag("endpoint", "increment").counter().count(), is(equalTo(1.0)));
+        assertThat(meterRegistry.get(LoadShedder.SHED_RATIO_GAUGE).gauge().value(), is(equalTo(1.0)));
+
+        operations(100, Duration.ofMillis(10));
+        loadShedder.evaluate();
+        assertThat(loadShedder.ratio(), is(equalTo(0.5)));
+        loadShedder.evaluate();
+        assertThat(loadShedder.ratio(), is(equalTo(0.0)));
+        assertThat(loadShedder.shed("increment"), is(false));
+    }
+
+    @Test
+    void whenTooFewOperationsFinishedThenTheirLatencyIsIgnored() {
+        // when
+        operations(5, Duration.ofSeconds(5));
+        loadShedder.evaluate();
+
+        // then
+        assertThat(loadShedder.ratio(), is(equalTo(0.0)));
+    }
+
+    @Test
+    void whenConnectionsAreWaitedForTooLongThenRequestsAreShed() {
+        // given
+        Timer poolAcquireTimer = meterRegistry.timer(LoadShedder.POOL_ACQUIRE_TIMER);
+        poolAcquireTimer.record(Duration.ofMillis(10));
+        loadShedder.evaluate();
+        assertThat(loadShedder.ratio(), is(equalTo(0.0)));
+
+        // when
+        poolAcquireTimer.record(Duration.ofMillis(150));
+        poolAcquireTimer.record(Duration.ofMillis(250));
+        loadShedder.evaluate();
+
+        // then
+        assertThat(loadShedder.ratio(), is(equalTo(0.5)));
+    }
+
+    @Test
+    void whenOnlyStreamingOperationsAreSlowThenNoRequestIsShed() {
+        // when
+        operations(20, Duration.ofMillis(10));
+        operations("streamAll", false, 20, Duration.ofSeconds(30));
+        loadShedder.evaluate();
+
+        // then
+        assertThat(loadShedder.ratio(), is(equalTo(0.0)));
+    }
+
+    private void operations(int count, Duration latency) {
+        operations("increment", true, count, latency);
+    }
+
+    private void operations(String operation, boolean loadSignal, int count, Duration latency) {
+        for (int i = 0; i < count; i++) {
+            Timer.Sample sample = juiceServiceMetrics.start();
+            clock.add(latency);
+            juiceServiceMetrics.success(sample, operation, loadSignal);
+        }
+    }
+}
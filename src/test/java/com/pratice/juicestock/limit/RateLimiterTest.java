@@ -0,0 +1,147 @@
+package com.pratice.juicestock.limit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pratice.juicestock.bulk.JuiceImporter;
+import com.pratice.juicestock.cache.IdempotencyCache;
+import com.pratice.juicestock.changes.StockChangeFeed;
+import com.pratice.juicestock.controller.JuiceController;
+import com.pratice.juicestock.metrics.JuiceServiceMetrics;
+import com.pratice.juicestock.service.JuiceService;
+import com.pratice.juicestock.stock.StockStatistics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+public class RateLimiterTest {
+
+    private static final String ENDPOINT = "statistics";
+
+    @Mock
+    private JuiceService juiceService;
+
+    @Mock
+    private StockStatistics stockStatistics;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private MockEnvironment environment;
+
+    private AtomicLong clock;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        environment = new MockEnvironment();
+        clock = new AtomicLong();
+    }
+
+    @Test
+    void whenBurstIsSpentThenClientWaitsForTheNextToken() {
+        // given
+        RateLimiter rateLimiter = newRateLimiter(3, 2);
+
+        // when
+        for (int i = 0; i < 3; i++) {
+            assertThat(rateLimiter.tryAcquire(ENDPOINT, "client-a"), is(equalTo(0L)));
+        }
+
+        // then
+        assertThat(rateLimiter.tryAcquire(ENDPOINT, "client-a"), is(equalTo(TimeUnit.MILLISECONDS.toNanos(500))));
+        assertThat(rateLimiter.tryAcquire(ENDPOINT, "client-b"), is(equalTo(0L)));
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertThat(rateLimiter.tryAcquire(ENDPOINT, "client-a"), is(equalTo(0L)));
+        assertThat(rateLimiter.tryAcquire(ENDPOINT, "client-a"), is(greaterThan(0L)));
+        assertThat(meterRegistry.get(RateLimiter.LIMITED_COUNTER).tag("endpoint", ENDPOINT).counter().count(), is(equalTo(2.0)));
+    }
+
+    @Test
+    void whenEndpointHasItsOwnLimitThenItOverridesTheDefault() {
+        // given
+        environment.setProperty("juicestock.rate-limit.endpoints.importJuices.capacity", "1");
+        environment.setProperty("juicestock.rate-limit.endpoints.importJuices.per-second", "0.1");
+        environment.setProperty("juicestock.rate-limit.endpoints.changes.per-second", "0");
+        RateLimiter rateLimiter = newRateLimiter(3, 2);
+
+        // then
+        assertThat(rateLimiter.tryAcquire("importJuices", "client-a"), is(equalTo(0L)));
+        assertThat(rateLimiter.tryAcquire("importJuices", "client-a"), is(equalTo(TimeUnit.SECONDS.toNanos(10))));
+        for (int i = 0; i < 10; i++) {
+            assertThat(rateLimiter.tryAcquire("changes", "client-a"), is(equalTo(0L)));
+        }
+    }
+
+    @Test
+    void whenClientIsLimitedThenTooManyRequestsStatusIsReturnedWithRetryAfter() throws Exception {
+        // given
+        RateLimitInterceptor rateLimitInterceptor = new RateLimitInterceptor(newRateLimiter(1, 0.5), newLoadShedder(), new ClientIdentity("X-Client-Id", Collections.emptyList()));
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(newController())
+                .addInterceptors(rateLimitInterceptor)
+                .build();
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        // when
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/juices/stats").header("X-Client-Id", "client-a"));
+
+        // then
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/juices/stats").header("X-Client-Id", "client-a"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "2"));
+    }
+
+    @Test
+    void whenLoadIsShedThenServiceUnavailableStatusIsReturnedWithRetryAfter() throws Exception {
+        // given
+        LoadShedder loadShedder = newLoadShedder();
+        meterRegistry.timer(LoadShedder.POOL_ACQUIRE_TIMER).record(Duration.ofSeconds(1));
+        loadShedder.evaluate();
+        RateLimitInterceptor rateLimitInterceptor = new RateLimitInterceptor(newRateLimiter(1, 0.5), loadShedder, new ClientIdentity("X-Client-Id", Collections.emptyList()));
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(newController())
+                .addInterceptors(rateLimitInterceptor)
+                .build();
+
+        // then
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/juices/stats"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+        verifyNoInteractions(juiceService);
+        assertThat(meterRegistry.get(LoadShedder.SHED_COUNTER).tag("endpoint", ENDPOINT).counter().count(), is(equalTo(1.0)));
+    }
+
+    private RateLimiter newRateLimiter(long capacity, double perSecond) {
+        return new RateLimiter(meterRegistry, environment, true, capacity, perSecond, 100, Duration.ofMinutes(1), clock::get);
+    }
+
+    /**
+     * Sheds every request once the pool wait goes over its limit.
+     */
+    private LoadShedder newLoadShedder() {
+        return new LoadShedder(meterRegistry, new JuiceServiceMetrics(meterRegistry, stockStatistics), true,
+                Duration.ofMillis(500), Duration.ofMillis(100), Duration.ofSeconds(1), 1.0, 1.0, 1);
+    }
+
+    private JuiceController newController() {
+        return new JuiceController(juiceService, new ObjectMapper(),
+                new StockChangeFeed(meterRegistry, 16, 16, StockChangeFeed.SlowSubscriberPolicy.DISCONNECT, Duration.ZERO, Runnable::run, 0),
+                null, new IdempotencyCache(meterRegistry, 16, Duration.ofMinutes(1)), new ClientIdentity("X-Client-Id", Collections.emptyList()));
+    }
+}
@@ -0,0 +1,110 @@
+package com.pratice.juicestock.protobuf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.UnknownFieldSet;
+import com.pratice.juicestock.builder.JuiceDTOBuilder;
+import com.pratice.juicestock.catalog.CatalogVersion;
+import com.pratice.juicestock.config.WebConfig;
+import com.pratice.juicestock.controller.JuiceController;
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.dto.JuiceFilterDTO;
+import com.pratice.juicestock.enums.JuiceType;
+import com.pratice.juicestock.service.JuiceService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.SortHandlerMethodArgumentResolver;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class JuiceProtobufHttpMessageConverterTest {
+
+    private static final String JUICE_API_URL_PATH = "/api/v1/juices";
+
+    @Mock
+    private JuiceService juiceService;
+
+    private MockMvc mockMvc;
+
+    private JuiceDTO appleJuiceDTO = JuiceDTOBuilder.builder().id(1L).name("Apple").type(JuiceType.APPLE).version(3L).build().toJuiceDTO();
+    private JuiceDTO orangeJuiceDTO = JuiceDTOBuilder.builder().id(2L).name("Orange").type(JuiceType.ORANGE).quantity(0).version(0L).build().toJuiceDTO();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        List<HttpMessageConverter<?>> converters = new ArrayList<>();
+        converters.add(new MappingJackson2HttpMessageConverter());
+        new WebConfig(null, new Jackson2ObjectMapperBuilder()).extendMessageConverters(converters);
+        mockMvc = MockMvcBuilders.standaloneSetup(new JuiceController(juiceService, new ObjectMapper(), null, null, null, null))
+                .setCustomArgumentResolvers(new SortHandlerMethodArgumentResolver())
+                .setMessageConverters(converters.toArray(new HttpMessageConverter<?>[0]))
+                .build();
+        when(juiceService.catalogVersion()).thenReturn(new CatalogVersion(1L, 0L));
+        when(juiceService.listAll(ArgumentMatchers.any(JuiceFilterDTO.class), ArgumentMatchers.any(Sort.class)))
+                .thenReturn(Arrays.asList(appleJuiceDTO, orangeJuiceDTO));
+    }
+
+    @Test
+    void whenListIsRequestedAsProtobufThenEachJuiceIsAJuiceListEntryWithTypeOrdinal() throws Exception {
+        // when
+        MvcResult mvcResult = get(JuiceProtobuf.MEDIA_TYPE);
+
+        // then
+        assertThat(mvcResult.getResponse().getContentType(), is(equalTo(JuiceProtobuf.MEDIA_TYPE)));
+        UnknownFieldSet juiceList = UnknownFieldSet.parseFrom(mvcResult.getResponse().getContentAsByteArray());
+        List<com.google.protobuf.ByteString> juices = juiceList.getField(1).getLengthDelimitedList();
+        assertThat(juices, hasSize(2));
+        UnknownFieldSet orange = UnknownFieldSet.parseFrom(juices.get(1));
+        assertThat(orange.getField(2).getLengthDelimitedList().get(0).toStringUtf8(), is(equalTo("Orange")));
+        assertThat(orange.getField(5).getVarintList(), contains(0L));
+        assertThat(orange.getField(6).getVarintList(), contains((long) JuiceType.ORANGE.ordinal() + 1));
+        assertThat(JuiceProtobuf.read(CodedInputStream.newInstance(juices.get(0).toByteArray())), is(equalTo(appleJuiceDTO)));
+    }
+
+    @Test
+    void whenListIsRequestedAsCborThenTypeIsWrittenAsOrdinal() throws Exception {
+        // when
+        MvcResult mvcResult = get("application/cbor");
+
+        // then
+        JsonNode juices = new ObjectMapper(new CBORFactory()).readTree(mvcResult.getResponse().getContentAsByteArray());
+        assertThat(juices.size(), is(equalTo(2)));
+        assertThat(juices.get(1).get("type").intValue(), is(equalTo(JuiceType.ORANGE.ordinal())));
+        assertThat(juices.get(1).get("name").textValue(), is(equalTo("Orange")));
+    }
+
+    @Test
+    void whenNoFormatIsRequestedThenJsonIsReturned() throws Exception {
+        // when
+        MvcResult mvcResult = get("*/*");
+
+        // then
+        assertThat(mvcResult.getResponse().getContentType(), startsWith("application/json"));
+        assertThat(mvcResult.getResponse().getContentAsString(), containsString("\"type\":\"ORANGE\""));
+    }
+
+    private MvcResult get(String accept) throws Exception {
+        return mockMvc.perform(MockMvcRequestBuilders.get(JUICE_API_URL_PATH).header(HttpHeaders.ACCEPT, accept)).andReturn();
+    }
+}
@@ -0,0 +1,117 @@
+package com.pratice.juicestock.repository;
+
+import com.pratice.juicestock.builder.JuiceDTOBuilder;
+import com.pratice.juicestock.config.HibernateCacheConfig;
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.entity.Juice;
+import com.pratice.juicestock.mapper.JuiceMapper;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@DataJpaTest
+@Import(HibernateCacheConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class CachedJuiceRepositoryTest {
+
+    @Autowired
+    private JuiceRepository juiceRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        juiceRepository.deleteAll();
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    void whenJuiceIsLookedUpByNameAgainThenNoQueryIsRun() {
+        // given
+        Juice juice = save(JuiceDTOBuilder.builder().build().toJuiceDTO());
+        juiceRepository.findJuiceDTOByName(juice.getName());
+
+        // when
+        statistics.clear();
+        Optional<JuiceDTO> foundJuiceDTO = juiceRepository.findJuiceDTOByName(juice.getName());
+
+        // then
+        assertThat(foundJuiceDTO.map(JuiceDTO::getId), is(equalTo(Optional.of(juice.getId()))));
+        assertThat(statistics.getPrepareStatementCount(), is(equalTo(0L)));
+        assertThat(statistics.getNaturalIdCacheHitCount(), is(equalTo(1L)));
+    }
+
+    @Test
+    void whenStockIsIncrementedThenTheLookupReturnsTheNewQuantity() {
+        // given
+        Juice juice = save(JuiceDTOBuilder.builder().quantity(10).build().toJuiceDTO());
+        juiceRepository.findJuiceDTOByName(juice.getName());
+
+        // when
+        int updated = juiceRepository.incrementQuantity(juice.getId(), 5);
+
+        // then
+        Optional<JuiceDTO> foundJuiceDTO = juiceRepository.findJuiceDTOByName(juice.getName());
+        assertThat(updated, is(equalTo(1)));
+        assertThat(foundJuiceDTO.map(JuiceDTO::getQuantity), is(equalTo(Optional.of(15))));
+        assertThat(foundJuiceDTO.map(JuiceDTO::getVersion), is(equalTo(Optional.of(juice.getVersion() + 1))));
+    }
+
+    @Test
+    void whenJuiceIsDeletedThenItsNameIsReturnedAndItIsNoLongerFound() {
+        // given
+        Juice juice = save(JuiceDTOBuilder.builder().build().toJuiceDTO());
+        juiceRepository.findJuiceDTOByName(juice.getName());
+
+        // when
+        Optional<String> deletedName = juiceRepository.deleteJuiceById(juice.getId());
+
+        // then
+        assertThat(deletedName, is(equalTo(Optional.of(juice.getName()))));
+        assertThat(juiceRepository.findJuiceDTOByName(juice.getName()).isPresent(), is(false));
+        assertThat(juiceRepository.deleteJuiceById(juice.getId()).isPresent(), is(false));
+    }
+
+    @Test
+    void whenJuiceIsDeletedAndRegisteredAgainThenItsNameResolvesToTheNewJuice() {
+        // given
+        Juice deletedJuice = save(JuiceDTOBuilder.builder().build().toJuiceDTO());
+        juiceRepository.findJuiceDTOByName(deletedJuice.getName());
+
+        // when
+        juiceRepository.deleteJuiceById(deletedJuice.getId());
+        Juice registeredJuice = save(JuiceDTOBuilder.builder().brand("Other").build().toJuiceDTO());
+
+        // then
+        Optional<JuiceDTO> foundJuiceDTO = juiceRepository.findJuiceDTOByName(deletedJuice.getName());
+        assertThat(foundJuiceDTO.map(JuiceDTO::getId), is(equalTo(Optional.of(registeredJuice.getId()))));
+        assertThat(foundJuiceDTO.map(JuiceDTO::getBrand), is(equalTo(Optional.of("Other"))));
+    }
+
+    private Juice save(JuiceDTO juiceDTO) {
+        Juice juice = JuiceMapper.INSTANCE.toModel(juiceDTO);
+        juice.setId(null);
+        return juiceRepository.save(juice);
+    }
+}
@@ -0,0 +1,103 @@
+package com.pratice.juicestock.search;
+
+import com.pratice.juicestock.builder.JuiceDTOBuilder;
+import com.pratice.juicestock.dto.JuiceSuggestionDTO;
+import com.pratice.juicestock.repository.JuiceRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@ExtendWith(MockitoExtension.class)
+public class JuiceSearchIndexTest {
+
+    @Mock
+    private JuiceRepository juiceRepository;
+
+    private JuiceSearchIndex juiceSearchIndex;
+
+    @BeforeEach
+    void setUp() {
+        juiceSearchIndex = new JuiceSearchIndex(juiceRepository, Duration.ofMinutes(1));
+        juiceSearchIndex.add(JuiceDTOBuilder.builder().id(1L).name("Apple juice").brand("Del Valle").build().toJuiceDTO());
+        juiceSearchIndex.add(JuiceDTOBuilder.builder().id(2L).name("Café Orange").brand("Apricot Farms").build().toJuiceDTO());
+        juiceSearchIndex.add(JuiceDTOBuilder.builder().id(3L).name("Grape juice").brand("Maguary").build().toJuiceDTO());
+    }
+
+    @Test
+    void whenQueryIsAPrefixInAnotherCaseThenJuiceIsFound() {
+        // when
+        List<JuiceSuggestionDTO> found = juiceSearchIndex.search("APP", 10);
+
+        // then
+        assertThat(ids(found), contains(1L));
+    }
+
+    @Test
+    void whenQueryHasNoAccentThenAccentedNameIsFound() {
+        // when
+        List<JuiceSuggestionDTO> found = juiceSearchIndex.search("cafe", 10);
+
+        // then
+        assertThat(ids(found), contains(2L));
+    }
+
+    @Test
+    void whenQueryIsThePrefixOfALaterWordThenJuiceIsFound() {
+        // when
+        List<JuiceSuggestionDTO> found = juiceSearchIndex.search("jui", 10);
+
+        // then
+        assertThat(ids(found), contains(1L, 3L));
+    }
+
+    @Test
+    void whenQueryMatchesNamesAndBrandsThenNameMatchesComeFirst() {
+        // when
+        List<JuiceSuggestionDTO> found = juiceSearchIndex.search("ap", 10);
+
+        // then
+        assertThat(ids(found), contains(1L, 2L));
+    }
+
+    @Test
+    void whenMoreJuicesMatchThanTheLimitThenOnlyTheFirstAreReturned() {
+        // when
+        List<JuiceSuggestionDTO> found = juiceSearchIndex.search("juice", 1);
+
+        // then
+        assertThat(ids(found), contains(1L));
+    }
+
+    @Test
+    void whenJuiceIsRemovedThenItIsNoLongerFound() {
+        // when
+        juiceSearchIndex.remove(1L);
+
+        // then
+        assertThat(juiceSearchIndex.search("apple", 10), is(empty()));
+        assertThat(juiceSearchIndex.search("valle", 10), is(empty()));
+    }
+
+    @Test
+    void whenCreationIsReportedAfterJuiceIsRemovedThenItIsNotIndexedAgain() {
+        // when
+        juiceSearchIndex.remove(1L);
+        juiceSearchIndex.add(JuiceDTOBuilder.builder().id(1L).name("Apple juice").brand("Del Valle").build().toJuiceDTO());
+
+        // then
+        assertThat(juiceSearchIndex.search("apple", 10), is(empty()));
+    }
+
+    private static List<Long> ids(List<JuiceSuggestionDTO> suggestions) {
+        return suggestions.stream().map(JuiceSuggestionDTO::getId).collect(Collectors.toList());
+    }
+}
@@ -1,22 +1,61 @@
 package com.pratice.juicestock.service;
 
+import com.pratice.juicestock.alert.StockAlertDispatcher;
+import com.pratice.juicestock.alert.StockAlertEngine;
 import com.pratice.juicestock.builder.JuiceDTOBuilder;
+import com.pratice.juicestock.cache.JuiceNameCache;
+import com.pratice.juicestock.catalog.JuiceCatalog;
+import com.pratice.juicestock.changes.JuiceChangePublisher;
+import com.pratice.juicestock.changes.StockChangeFeed;
 import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.dto.JuiceFilterDTO;
+import com.pratice.juicestock.dto.JuicePageDTO;
+import com.pratice.juicestock.dto.StockAdjustmentDTO;
+import com.pratice.juicestock.dto.StockAdjustmentResultDTO;
+import com.pratice.juicestock.dto.StockStatisticsDTO;
 import com.pratice.juicestock.entity.Juice;
+import com.pratice.juicestock.exception.InvalidCursorException;
+import com.pratice.juicestock.exception.InvalidSortException;
 import com.pratice.juicestock.exception.JuiceAlreadyRegisteredException;
 import com.pratice.juicestock.exception.JuiceNotFoundException;
 import com.pratice.juicestock.exception.JuiceStockExceededException;
+import com.pratice.juicestock.exception.JuiceVersionMismatchException;
 import com.pratice.juicestock.mapper.JuiceMapper;
+import com.pratice.juicestock.metrics.JuiceServiceMetrics;
+import com.pratice.juicestock.metrics.TimedOperationAspect;
 import com.pratice.juicestock.repository.JuiceRepository;
+import com.pratice.juicestock.search.JuiceSearchIndex;
+import com.pratice.juicestock.stock.DatabaseStockEngine;
+import com.pratice.juicestock.stock.StockEngine;
+import com.pratice.juicestock.stock.StockLedger;
+import com.pratice.juicestock.stock.StockStatistics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.sql.SQLException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
@@ -33,9 +72,43 @@ public class JuiceServiceTest {
 
     private JuiceMapper juiceMapper = JuiceMapper.INSTANCE;
 
-    @InjectMocks
+    private SimpleMeterRegistry meterRegistry;
+
     private JuiceService juiceService;
 
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        juiceService = newJuiceService(new DatabaseStockEngine(juiceRepository));
+    }
+
+    private JuiceService newJuiceService(StockEngine stockEngine) {
+        StockStatistics stockStatistics = new StockStatistics(juiceRepository, stockEngine, 10, 90, Duration.ofMinutes(1));
+        JuiceServiceMetrics juiceServiceMetrics = new JuiceServiceMetrics(meterRegistry, stockStatistics);
+        JuiceNameCache juiceNameCache = new JuiceNameCache(meterRegistry, 100, Duration.ofMinutes(1));
+        JuiceCatalog juiceCatalog = new JuiceCatalog(juiceRepository, stockEngine, true, Duration.ofMinutes(1));
+        JuiceSearchIndex juiceSearchIndex = new JuiceSearchIndex(juiceRepository, Duration.ofMinutes(1));
+        JuiceChangePublisher juiceChangePublisher = new JuiceChangePublisher(Arrays.asList(juiceNameCache,
+                stockStatistics,
+                juiceCatalog,
+                juiceSearchIndex,
+                new StockAlertEngine(juiceRepository, stockEngine, new MockEnvironment(),
+                        new StockAlertDispatcher(meterRegistry, Collections.emptyList(), Runnable::run), true, "10%", "", "5%", Duration.ofMinutes(1)),
+                new StockChangeFeed(meterRegistry, 16, 16, StockChangeFeed.SlowSubscriberPolicy.DISCONNECT, Duration.ZERO, Runnable::run, 0)));
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(new JuiceService(juiceRepository,
+                stockEngine,
+                juiceNameCache,
+                juiceServiceMetrics,
+                new ConflictRetryPolicy(juiceServiceMetrics, 3, Duration.ZERO, Duration.ZERO),
+                stockStatistics,
+                juiceCatalog,
+                juiceSearchIndex,
+                juiceChangePublisher));
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(new TimedOperationAspect(juiceServiceMetrics));
+        return proxyFactory.getProxy();
+    }
+
     @Test
     void whenJuiceInformedThenItShouldBeCreated() throws JuiceAlreadyRegisteredException {
         // given
@@ -43,7 +116,6 @@ public class JuiceServiceTest {
         Juice expectedSavedJuice = juiceMapper.toModel(expectedJuiceDTO);
 
         // when
-        when(juiceRepository.findByName(expectedJuiceDTO.getName())).thenReturn(Optional.empty());
         when(juiceRepository.save(expectedSavedJuice)).thenReturn(expectedSavedJuice);
 
         // then
@@ -52,27 +124,43 @@ public class JuiceServiceTest {
         assertThat(createdJuiceDTO.getId(), is(equalTo(expectedJuiceDTO.getId())));
         assertThat(createdJuiceDTO.getName(), is(equalTo(expectedJuiceDTO.getName())));
         assertThat(createdJuiceDTO.getQuantity(), is(equalTo(expectedJuiceDTO.getQuantity())));
+        verify(juiceRepository, never()).findJuiceDTOByName(expectedJuiceDTO.getName());
     }
 
+    @Test
     void whenAlreadyRegisteredJuiceInformedThenAnExceptionShouldBeThrown() {
         // given
         JuiceDTO expectedJuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
         Juice duplicatedJuice = juiceMapper.toModel(expectedJuiceDTO);
+        ConstraintViolationException nameViolation = new ConstraintViolationException("could not execute statement",
+                new SQLException(), "PUBLIC." + Juice.NAME_UNIQUE_CONSTRAINT + "_INDEX_4 ON PUBLIC.JUICE(NAME)");
 
         // when
-        when(juiceRepository.findByName(expectedJuiceDTO.getName())).thenReturn(Optional.of(duplicatedJuice));
+        when(juiceRepository.save(duplicatedJuice)).thenThrow(new DataIntegrityViolationException("duplicated", nameViolation));
 
         // then
         assertThrows(JuiceAlreadyRegisteredException.class, () -> juiceService.createJuice(expectedJuiceDTO));
     }
 
+    @Test
+    void whenOtherConstraintIsViolatedThenTheOriginalExceptionIsThrown() {
+        // given
+        JuiceDTO expectedJuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        Juice invalidJuice = juiceMapper.toModel(expectedJuiceDTO);
+
+        // when
+        when(juiceRepository.save(invalidJuice)).thenThrow(new DataIntegrityViolationException("not null"));
+
+        // then
+        assertThrows(DataIntegrityViolationException.class, () -> juiceService.createJuice(expectedJuiceDTO));
+    }
+
     void whenValidJuiceNameIsGivenThenReturnAJuice() throws JuiceNotFoundException {
         // given
         JuiceDTO expectedFoundJuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
-        Juice expectedFoundJuice = juiceMapper.toModel(expectedFoundJuiceDTO);
 
         // when
-        when(juiceRepository.findByName(expectedFoundJuice.getName())).thenReturn(Optional.of(expectedFoundJuice));
+        when(juiceRepository.findJuiceDTOByName(expectedFoundJuiceDTO.getName())).thenReturn(Optional.of(expectedFoundJuiceDTO));
 
         // then
         JuiceDTO foundJuiceDTO = juiceService.findByName(expectedFoundJuiceDTO.getName());
@@ -80,13 +168,48 @@ public class JuiceServiceTest {
         assertThat(foundJuiceDTO, is(equalTo(expectedFoundJuiceDTO)));
     }
 
+    @Test
+    void whenSameJuiceNameIsGivenTwiceThenItIsLoadedOnlyOnce() throws JuiceNotFoundException {
+        // given
+        JuiceDTO expectedFoundJuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+
+        // when
+        when(juiceRepository.findJuiceDTOByName(expectedFoundJuiceDTO.getName())).thenReturn(Optional.of(expectedFoundJuiceDTO));
+
+        // then
+        juiceService.findByName(expectedFoundJuiceDTO.getName());
+        JuiceDTO foundJuiceDTO = juiceService.findByName(expectedFoundJuiceDTO.getName());
+
+        assertThat(foundJuiceDTO, is(equalTo(expectedFoundJuiceDTO)));
+        verify(juiceRepository, times(1)).findJuiceDTOByName(expectedFoundJuiceDTO.getName());
+    }
+
+    @Test
+    void whenIncrementIsCalledThenCachedJuiceIsReloaded() throws JuiceNotFoundException, JuiceStockExceededException {
+        // given
+        JuiceDTO expectedJuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        Juice expectedJuice = juiceMapper.toModel(expectedJuiceDTO);
+
+        // when
+        when(juiceRepository.findJuiceDTOByName(expectedJuiceDTO.getName())).thenReturn(Optional.of(expectedJuiceDTO));
+        when(juiceRepository.incrementQuantity(expectedJuiceDTO.getId(), 10)).thenReturn(1);
+        when(juiceRepository.findById(expectedJuiceDTO.getId())).thenReturn(Optional.of(expectedJuice));
+
+        // then
+        juiceService.findByName(expectedJuiceDTO.getName());
+        juiceService.increment(expectedJuiceDTO.getId(), 10);
+        juiceService.findByName(expectedJuiceDTO.getName());
+
+        verify(juiceRepository, times(2)).findJuiceDTOByName(expectedJuiceDTO.getName());
+    }
+
     @Test
     void whenNotRegisteredJuiceNameIsGivenThenThrowAnException() {
         // given
         JuiceDTO expectedFoundJuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
 
         // when
-        when(juiceRepository.findByName(expectedFoundJuiceDTO.getName())).thenReturn(Optional.empty());
+        when(juiceRepository.findJuiceDTOByName(expectedFoundJuiceDTO.getName())).thenReturn(Optional.empty());
 
         // then
         assertThrows(JuiceNotFoundException.class, () -> juiceService.findByName(expectedFoundJuiceDTO.getName()));
@@ -96,10 +219,9 @@ public class JuiceServiceTest {
     void whenListJuiceIsCalledThenReturnAListOfJuices() {
         // given
         JuiceDTO expectedFoundJuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
-        Juice expectedFoundJuice = juiceMapper.toModel(expectedFoundJuiceDTO);
 
         // when
-        when(juiceRepository.findAll()).thenReturn(Collections.singletonList(expectedFoundJuice));
+        when(juiceRepository.findAllJuiceDTOs()).thenReturn(Collections.singletonList(expectedFoundJuiceDTO));
 
         // then
         List<JuiceDTO> foundListJuicesDTO = juiceService.listAll();
@@ -111,7 +233,7 @@ public class JuiceServiceTest {
     @Test
     void whenListJuiceIsCalledThenReturnAnEmptyListOfJuices() {
         // when
-        when(juiceRepository.findAll()).thenReturn(Collections.EMPTY_LIST);
+        when(juiceRepository.findAllJuiceDTOs()).thenReturn(Collections.EMPTY_LIST);
 
         // then
         List<JuiceDTO> foundListJuicesDTO = juiceService.listAll();
@@ -119,49 +241,115 @@ public class JuiceServiceTest {
         assertThat(foundListJuicesDTO, is(empty()));
     }
 
+    @Test
+    void whenListPageIsCalledWithMoreJuicesThanLimitThenReturnNextCursor() throws InvalidCursorException {
+        // given
+        JuiceDTO firstJuice = JuiceDTOBuilder.builder().id(1L).build().toJuiceDTO();
+        JuiceDTO secondJuice = JuiceDTOBuilder.builder().id(2L).name("Orange juice").build().toJuiceDTO();
+
+        // when
+        when(juiceRepository.findJuiceDTOsAfter(0L, PageRequest.of(0, 2))).thenReturn(Arrays.asList(firstJuice, secondJuice));
+        when(juiceRepository.findJuiceDTOsAfter(1L, PageRequest.of(0, 2))).thenReturn(Collections.singletonList(secondJuice));
+
+        // then
+        JuicePageDTO firstPage = juiceService.listPage(null, 1);
+        JuicePageDTO lastPage = juiceService.listPage(firstPage.getNextCursor(), 1);
+
+        assertThat(firstPage.getJuices(), hasSize(1));
+        assertThat(firstPage.getJuices().get(0).getId(), is(equalTo(firstJuice.getId())));
+        assertThat(firstPage.getNextCursor(), is(notNullValue()));
+        assertThat(lastPage.getJuices().get(0).getId(), is(equalTo(secondJuice.getId())));
+        assertThat(lastPage.getNextCursor(), is(nullValue()));
+    }
+
+    @Test
+    void whenListPageIsCalledWithInvalidCursorThenThrowAnException() {
+        assertThrows(InvalidCursorException.class, () -> juiceService.listPage("not a cursor", 10));
+    }
+
+    @Test
+    void whenStreamAllIsCalledThenEachJuiceIsConsumed() {
+        // given
+        JuiceDTO expectedJuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        List<JuiceDTO> streamedJuices = new ArrayList<>();
+
+        // when
+        when(juiceRepository.streamAll()).thenReturn(Stream.of(expectedJuiceDTO));
+
+        // then
+        juiceService.streamAll(streamedJuices::add);
+
+        assertThat(streamedJuices, contains(expectedJuiceDTO));
+    }
+
     @Test
     void whenExclusionIsCalledWithValidIdThenAJuiceShouldBeDeleted() throws JuiceNotFoundException {
         // given
         JuiceDTO expectedDeletedJuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
-        Juice expectedDeletedJuice = juiceMapper.toModel(expectedDeletedJuiceDTO);
 
         // when
-        when(juiceRepository.findById(expectedDeletedJuiceDTO.getId())).thenReturn(Optional.of(expectedDeletedJuice));
-        doNothing().when(juiceRepository).deleteById(expectedDeletedJuiceDTO.getId());
+        when(juiceRepository.deleteJuiceById(expectedDeletedJuiceDTO.getId())).thenReturn(Optional.of(expectedDeletedJuiceDTO.getName()));
 
         // then
         juiceService.deleteById(expectedDeletedJuiceDTO.getId());
 
-        verify(juiceRepository, times(1)).findById(expectedDeletedJuiceDTO.getId());
-        verify(juiceRepository, times(1)).deleteById(expectedDeletedJuiceDTO.getId());
+        verify(juiceRepository, never()).findById(expectedDeletedJuiceDTO.getId());
+        verify(juiceRepository, times(1)).deleteJuiceById(expectedDeletedJuiceDTO.getId());
     }
 
     @Test
-    void whenIncrementIsCalledThenIncrementJuiceStock() throws JuiceNotFoundException, JuiceStockExceededException {
+    void whenCachedJuiceIsDeletedThenItIsNoLongerFoundByName() throws JuiceNotFoundException {
         // given
-        JuiceDTO expectedJuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
-        Juice expectedJuice = juiceMapper.toModel(expectedJuiceDTO);
+        JuiceDTO deletedJuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        when(juiceRepository.findJuiceDTOByName(deletedJuiceDTO.getName()))
+                .thenReturn(Optional.of(deletedJuiceDTO))
+                .thenReturn(Optional.empty());
+        juiceService.findByName(deletedJuiceDTO.getName());
 
         // when
-        when(juiceRepository.findById(expectedJuiceDTO.getId())).thenReturn(Optional.of(expectedJuice));
-        when(juiceRepository.save(expectedJuice)).thenReturn(expectedJuice);
+        when(juiceRepository.deleteJuiceById(deletedJuiceDTO.getId())).thenReturn(Optional.of(deletedJuiceDTO.getName()));
+        juiceService.deleteById(deletedJuiceDTO.getId());
+
+        // then
+        assertThat(juiceService.findCachedByName(deletedJuiceDTO.getName()), is(nullValue()));
+        assertThrows(JuiceNotFoundException.class, () -> juiceService.findByName(deletedJuiceDTO.getName()));
+    }
+
+    @Test
+    void whenExclusionIsCalledWithInvalidIdThenThrowAnException() {
+        // when
+        when(juiceRepository.deleteJuiceById(INVALID_JUICE_ID)).thenReturn(Optional.empty());
+
+        // then
+        assertThrows(JuiceNotFoundException.class, () -> juiceService.deleteById(INVALID_JUICE_ID));
+    }
 
+    @Test
+    void whenIncrementIsCalledThenIncrementJuiceStock() throws JuiceNotFoundException, JuiceStockExceededException {
+        // given
+        JuiceDTO expectedJuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
         int quantityToIncrement = 10;
         int expectedQuantityAfterIncrement = expectedJuiceDTO.getQuantity() + quantityToIncrement;
+        Juice expectedIncrementedJuice = juiceMapper.toModel(expectedJuiceDTO);
+        expectedIncrementedJuice.setQuantity(expectedQuantityAfterIncrement);
+
+        // when
+        when(juiceRepository.incrementQuantity(expectedJuiceDTO.getId(), quantityToIncrement)).thenReturn(1);
+        when(juiceRepository.findById(expectedJuiceDTO.getId())).thenReturn(Optional.of(expectedIncrementedJuice));
 
         // then
         JuiceDTO incrementedJuiceDTO = juiceService.increment(expectedJuiceDTO.getId(), quantityToIncrement);
 
         assertThat(expectedQuantityAfterIncrement, equalTo(incrementedJuiceDTO.getQuantity()));
         assertThat(expectedQuantityAfterIncrement, lessThan(expectedJuiceDTO.getMax()));
+        verify(juiceRepository, never()).save(expectedIncrementedJuice);
     }
 
     @Test
     void whenIncrementIsGreatherThanMaxThenThrowException() {
         JuiceDTO expectedJuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
-        Juice expectedJuice = juiceMapper.toModel(expectedJuiceDTO);
 
-        when(juiceRepository.findById(expectedJuiceDTO.getId())).thenReturn(Optional.of(expectedJuice));
+        when(juiceRepository.existsById(expectedJuiceDTO.getId())).thenReturn(true);
 
         int quantityToIncrement = 80;
         assertThrows(JuiceStockExceededException.class, () -> juiceService.increment(expectedJuiceDTO.getId(), quantityToIncrement));
@@ -169,75 +357,272 @@ public class JuiceServiceTest {
 
     @Test
     void whenIncrementAfterSumIsGreatherThanMaxThenThrowException() {
-        JuiceDTO expectedJuiceDTO =JuiceDTOBuilder.builder().build().toJuiceDTO();
-        Juice expectedJuice = juiceMapper.toModel(expectedJuiceDTO);
+        JuiceDTO expectedJuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
 
-        when(juiceRepository.findById(expectedJuiceDTO.getId())).thenReturn(Optional.of(expectedJuice));
+        when(juiceRepository.incrementQuantity(expectedJuiceDTO.getId(), 45)).thenReturn(0);
+        when(juiceRepository.existsById(expectedJuiceDTO.getId())).thenReturn(true);
 
         int quantityToIncrement = 45;
         assertThrows(JuiceStockExceededException.class, () -> juiceService.increment(expectedJuiceDTO.getId(), quantityToIncrement));
     }
 
+    @Test
+    void whenIncrementIsRejectedThenExceededOutcomeIsRecorded() {
+        JuiceDTO expectedJuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+
+        when(juiceRepository.incrementQuantity(expectedJuiceDTO.getId(), 45)).thenReturn(0);
+        when(juiceRepository.existsById(expectedJuiceDTO.getId())).thenReturn(true);
+
+        assertThrows(JuiceStockExceededException.class, () -> juiceService.increment(expectedJuiceDTO.getId(), 45));
+
+        assertThat(meterRegistry.get(JuiceServiceMetrics.OPERATION_TIMER)
+                .tag("operation", "increment")
+                .tag("outcome", JuiceServiceMetrics.OUTCOME_EXCEEDED)
+                .timer()
+                .count(), is(equalTo(1L)));
+        assertThat(meterRegistry.get(JuiceServiceMetrics.REJECTION_COUNTER)
+                .tag("operation", "increment")
+                .counter()
+                .count(), is(equalTo(1.0)));
+    }
+
+    @Test
+    void whenStockChangesThenStatisticsFollowWithoutReadingTheTable() throws Exception {
+        // given
+        JuiceDTO expectedJuiceDTO = JuiceDTOBuilder.builder().version(0L).build().toJuiceDTO();
+        Juice expectedJuice = juiceMapper.toModel(expectedJuiceDTO);
+        expectedJuice.setVersion(0L);
+        Juice expectedIncrementedJuice = juiceMapper.toModel(expectedJuiceDTO);
+        expectedIncrementedJuice.setQuantity(expectedJuiceDTO.getQuantity() + 5);
+        expectedIncrementedJuice.setVersion(1L);
+
+        // when
+        when(juiceRepository.save(juiceMapper.toModel(expectedJuiceDTO))).thenReturn(expectedJuice);
+        when(juiceRepository.incrementQuantity(expectedJuiceDTO.getId(), 5)).thenReturn(1);
+        when(juiceRepository.findById(expectedJuiceDTO.getId())).thenReturn(Optional.of(expectedIncrementedJuice));
+
+        // then
+        juiceService.createJuice(expectedJuiceDTO);
+        juiceService.increment(expectedJuiceDTO.getId(), 5);
+        StockStatisticsDTO statistics = juiceService.statistics();
+
+        assertThat(statistics.getTotal().getQuantity(), is(equalTo(expectedJuiceDTO.getQuantity() + 5L)));
+        assertThat(statistics.getByType().get(expectedJuiceDTO.getType()).getJuices(), is(equalTo(1L)));
+        assertThat(statistics.getByBrand().get(expectedJuiceDTO.getBrand()).getMax(), is(equalTo((long) expectedJuiceDTO.getMax())));
+        verify(juiceRepository, never()).findAllJuiceDTOs();
+    }
+
+    @Test
+    void whenIncrementIsCalledWithStaleVersionThenThrowException() {
+        JuiceDTO expectedJuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        Juice expectedJuice = juiceMapper.toModel(expectedJuiceDTO);
+        expectedJuice.setVersion(5L);
+
+        when(juiceRepository.incrementQuantityIfVersion(expectedJuiceDTO.getId(), 10, 4L)).thenReturn(0);
+        when(juiceRepository.findById(expectedJuiceDTO.getId())).thenReturn(Optional.of(expectedJuice));
+
+        assertThrows(JuiceVersionMismatchException.class, () -> juiceService.increment(expectedJuiceDTO.getId(), 10, 4L));
+        verify(juiceRepository, never()).incrementQuantity(anyLong(), anyInt());
+    }
+
     @Test
     void whenIncrementIsCalledWithInvalidIdThenThrowException() {
         int quantityToIncrement = 10;
 
-        when(juiceRepository.findById(INVALID_JUICE_ID)).thenReturn(Optional.empty());
+        when(juiceRepository.existsById(INVALID_JUICE_ID)).thenReturn(false);
 
         assertThrows(JuiceNotFoundException.class, () -> juiceService.increment(INVALID_JUICE_ID, quantityToIncrement));
     }
 
-    // Configurações opcionais
-
-//    @Test
-//    void whenDecrementIsCalledThenDecrementJuiceStock() throws JuiceNotFoundException, JuiceStockExceededException {
-//        JuiceDTO expectedJuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
-//        Juice expectedJuice = JuiceMapper.toModel(expectedJuiceDTO);
-//
-//        when(JuiceRepository.findById(expectedJuiceDTO.getId())).thenReturn(Optional.of(expectedJuice));
-//        when(JuiceRepository.save(expectedJuice)).thenReturn(expectedJuice);
-//
-//        int quantityToDecrement = 5;
-//        int expectedQuantityAfterDecrement = expectedJuiceDTO.getQuantity() - quantityToDecrement;
-//        JuiceDTO incrementedJuiceDTO = JuiceService.decrement(expectedJuiceDTO.getId(), quantityToDecrement);
-//
-//        assertThat(expectedQuantityAfterDecrement, equalTo(incrementedJuiceDTO.getQuantity()));
-//        assertThat(expectedQuantityAfterDecrement, greaterThan(0));
-//    }
-//
-//    @Test
-//    void whenDecrementIsCalledToEmptyStockThenEmptyJuiceStock() throws JuiceNotFoundException, JuiceStockExceededException {
-//        JuiceDTO expectedJuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
-//        Juice expectedJuice = JuiceMapper.toModel(expectedJuiceDTO);
-//
-//        when(JuiceRepository.findById(expectedJuiceDTO.getId())).thenReturn(Optional.of(expectedJuice));
-//        when(JuiceRepository.save(expectedJuice)).thenReturn(expectedJuice);
-//
-//        int quantityToDecrement = 10;
-//        int expectedQuantityAfterDecrement = expectedJuiceDTO.getQuantity() - quantityToDecrement;
-//        JuiceDTO incrementedJuiceDTO = JuiceService.decrement(expectedJuiceDTO.getId(), quantityToDecrement);
-//
-//        assertThat(expectedQuantityAfterDecrement, equalTo(0));
-//        assertThat(expectedQuantityAfterDecrement, equalTo(incrementedJuiceDTO.getQuantity()));
-//    }
-//
-//    @Test
-//    void whenDecrementIsLowerThanZeroThenThrowException() {
-//        JuiceDTO expectedJuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
-//        Juice expectedJuice = JuiceMapper.toModel(expectedJuiceDTO);
-//
-//        when(JuiceRepository.findById(expectedJuiceDTO.getId())).thenReturn(Optional.of(expectedJuice));
-//
-//        int quantityToDecrement = 80;
-//        assertThrows(JuiceStockExceededException.class, () -> JuiceService.decrement(expectedJuiceDTO.getId(), quantityToDecrement));
-//    }
-//
-//    @Test
-//    void whenDecrementIsCalledWithInvalidIdThenThrowException() {
-//        int quantityToDecrement = 10;
-//
-//        when(JuiceRepository.findById(INVALID_Juice_ID)).thenReturn(Optional.empty());
-//
-//        assertThrows(JuiceNotFoundException.class, () -> JuiceService.decrement(INVALID_Juice_ID, quantityToDecrement));
-//    }
+    @Test
+    void whenDecrementIsCalledThenDecrementJuiceStock() throws JuiceNotFoundException, JuiceStockExceededException {
+        JuiceDTO expectedJuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        int quantityToDecrement = 5;
+        int expectedQuantityAfterDecrement = expectedJuiceDTO.getQuantity() - quantityToDecrement;
+        Juice expectedDecrementedJuice = juiceMapper.toModel(expectedJuiceDTO);
+        expectedDecrementedJuice.setQuantity(expectedQuantityAfterDecrement);
+
+        when(juiceRepository.decrementQuantity(expectedJuiceDTO.getId(), quantityToDecrement)).thenReturn(1);
+        when(juiceRepository.findById(expectedJuiceDTO.getId())).thenReturn(Optional.of(expectedDecrementedJuice));
+
+        JuiceDTO decrementedJuiceDTO = juiceService.decrement(expectedJuiceDTO.getId(), quantityToDecrement);
+
+        assertThat(expectedQuantityAfterDecrement, equalTo(decrementedJuiceDTO.getQuantity()));
+        assertThat(expectedQuantityAfterDecrement, greaterThan(0));
+    }
+
+    @Test
+    void whenDecrementIsCalledToEmptyStockThenEmptyJuiceStock() throws JuiceNotFoundException, JuiceStockExceededException {
+        JuiceDTO expectedJuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        int quantityToDecrement = 10;
+        int expectedQuantityAfterDecrement = expectedJuiceDTO.getQuantity() - quantityToDecrement;
+        Juice expectedDecrementedJuice = juiceMapper.toModel(expectedJuiceDTO);
+        expectedDecrementedJuice.setQuantity(expectedQuantityAfterDecrement);
+
+        when(juiceRepository.decrementQuantity(expectedJuiceDTO.getId(), quantityToDecrement)).thenReturn(1);
+        when(juiceRepository.findById(expectedJuiceDTO.getId())).thenReturn(Optional.of(expectedDecrementedJuice));
+
+        JuiceDTO decrementedJuiceDTO = juiceService.decrement(expectedJuiceDTO.getId(), quantityToDecrement);
+
+        assertThat(expectedQuantityAfterDecrement, equalTo(0));
+        assertThat(expectedQuantityAfterDecrement, equalTo(decrementedJuiceDTO.getQuantity()));
+    }
+
+    @Test
+    void whenDecrementIsLowerThanZeroThenThrowException() {
+        JuiceDTO expectedJuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+
+        when(juiceRepository.existsById(expectedJuiceDTO.getId())).thenReturn(true);
+
+        int quantityToDecrement = 80;
+        assertThrows(JuiceStockExceededException.class, () -> juiceService.decrement(expectedJuiceDTO.getId(), quantityToDecrement));
+    }
+
+    @Test
+    void whenDecrementIsCalledWithInvalidIdThenThrowException() {
+        int quantityToDecrement = 10;
+
+        when(juiceRepository.existsById(INVALID_JUICE_ID)).thenReturn(false);
+
+        assertThrows(JuiceNotFoundException.class, () -> juiceService.decrement(INVALID_JUICE_ID, quantityToDecrement));
+    }
+
+    @Test
+    void whenStockAdjustmentsAreGivenThenTheyAreCoalescedAndReportedPerJuice() {
+        // given
+        JuiceDTO expectedJuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        Juice expectedJuice = juiceMapper.toModel(expectedJuiceDTO);
+        List<StockAdjustmentDTO> adjustments = Arrays.asList(
+                new StockAdjustmentDTO(expectedJuiceDTO.getId(), 30),
+                new StockAdjustmentDTO(INVALID_JUICE_ID + 1, 5),
+                new StockAdjustmentDTO(expectedJuiceDTO.getId(), -15));
+
+        // when
+        when(juiceRepository.findAllById(anyCollection()))
+                .thenReturn(Collections.singletonList(expectedJuice));
+
+        // then
+        List<StockAdjustmentResultDTO> results = juiceService.adjustStock(adjustments);
+
+        assertThat(results, hasSize(2));
+        assertThat(results.get(0).getError(), is(nullValue()));
+        assertThat(results.get(0).getJuice().getQuantity(), is(equalTo(expectedJuiceDTO.getQuantity() + 15)));
+        assertThat(results.get(1).getError(), is(notNullValue()));
+    }
+
+    @Test
+    void whenStockAdjustmentExceedsMaxThenOnlyThatJuiceIsRejected() {
+        // given
+        JuiceDTO firstJuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        JuiceDTO secondJuiceDTO = JuiceDTOBuilder.builder().id(2L).name("Orange juice").build().toJuiceDTO();
+        List<StockAdjustmentDTO> adjustments = Arrays.asList(
+                new StockAdjustmentDTO(firstJuiceDTO.getId(), 80),
+                new StockAdjustmentDTO(secondJuiceDTO.getId(), 5));
+
+        // when
+        when(juiceRepository.findAllById(anyCollection()))
+                .thenReturn(Arrays.asList(juiceMapper.toModel(firstJuiceDTO), juiceMapper.toModel(secondJuiceDTO)));
+
+        // then
+        List<StockAdjustmentResultDTO> results = juiceService.adjustStock(adjustments);
+
+        assertThat(results.get(0).getError(), is(notNullValue()));
+        assertThat(results.get(0).getJuice(), is(nullValue()));
+        assertThat(results.get(1).getJuice().getQuantity(), is(equalTo(secondJuiceDTO.getQuantity() + 5)));
+    }
+
+    @Test
+    void whenStockAdjustmentConflictsThenItIsRetried() {
+        // given
+        JuiceDTO expectedJuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        List<StockAdjustmentDTO> adjustments = Collections.singletonList(new StockAdjustmentDTO(expectedJuiceDTO.getId(), 5));
+
+        // when
+        when(juiceRepository.findAllById(anyCollection()))
+                .thenReturn(Collections.singletonList(juiceMapper.toModel(expectedJuiceDTO)))
+                .thenReturn(Collections.singletonList(juiceMapper.toModel(expectedJuiceDTO)));
+        doThrow(new ObjectOptimisticLockingFailureException(Juice.class, expectedJuiceDTO.getId()))
+                .doNothing()
+                .when(juiceRepository).flush();
+
+        // then
+        List<StockAdjustmentResultDTO> results = juiceService.adjustStock(adjustments);
+
+        assertThat(results.get(0).getJuice().getQuantity(), is(equalTo(expectedJuiceDTO.getQuantity() + 5)));
+        assertThat(meterRegistry.get(JuiceServiceMetrics.CONFLICT_COUNTER).tag("operation", "adjustStock").counter().count(), is(equalTo(1.0)));
+        assertThat(meterRegistry.get(JuiceServiceMetrics.RETRY_COUNTER).tag("operation", "adjustStock").counter().count(), is(equalTo(1.0)));
+    }
+
+    @Test
+    void whenStockAdjustmentKeepsConflictingThenConflictIsThrownAfterLastAttempt() {
+        // given
+        JuiceDTO expectedJuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        List<StockAdjustmentDTO> adjustments = Collections.singletonList(new StockAdjustmentDTO(expectedJuiceDTO.getId(), 5));
+
+        // when
+        when(juiceRepository.findAllById(anyCollection()))
+                .thenAnswer(invocation -> Collections.singletonList(juiceMapper.toModel(expectedJuiceDTO)));
+        doThrow(new ObjectOptimisticLockingFailureException(Juice.class, expectedJuiceDTO.getId()))
+                .when(juiceRepository).flush();
+
+        // then
+        assertThrows(OptimisticLockingFailureException.class, () -> juiceService.adjustStock(adjustments));
+
+        verify(juiceRepository, times(3)).flush();
+        assertThat(meterRegistry.get(JuiceServiceMetrics.RETRY_COUNTER).tag("operation", "adjustStock").counter().count(), is(equalTo(2.0)));
+        assertThat(meterRegistry.get(JuiceServiceMetrics.OPERATION_TIMER)
+                .tag("operation", "adjustStock")
+                .tag("outcome", JuiceServiceMetrics.OUTCOME_CONFLICT)
+                .timer()
+                .count(), is(equalTo(1L)));
+    }
+
+    @Test
+    void whenListIsCalledWithSortThenIdBreaksTies() throws InvalidSortException {
+        // given
+        JuiceDTO expectedJuiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        JuiceFilterDTO juiceFilterDTO = JuiceFilterDTO.builder().type(expectedJuiceDTO.getType()).build();
+        Sort expectedSort = Sort.by(Sort.Direction.DESC, "quantity").and(Sort.by("id"));
+
+        // when
+        when(juiceRepository.findAll(ArgumentMatchers.<Specification<Juice>>any(), eq(expectedSort)))
+                .thenReturn(Collections.singletonList(juiceMapper.toModel(expectedJuiceDTO)));
+
+        // then
+        List<JuiceDTO> juices = juiceService.listAll(juiceFilterDTO, Sort.by(Sort.Direction.DESC, "quantity"));
+
+        assertThat(juices.get(0).getName(), is(equalTo(expectedJuiceDTO.getName())));
+    }
+
+    @Test
+    void whenStockIsKeptInMemoryThenQuantityFilterAndSortApplyToOverlaidQuantities() throws Exception {
+        // given
+        JuiceDTO appleJuiceDTO = JuiceDTOBuilder.builder().quantity(10).version(0L).build().toJuiceDTO();
+        JuiceDTO orangeJuiceDTO = JuiceDTOBuilder.builder().id(2L).name("Orange juice").quantity(45).version(0L).build().toJuiceDTO();
+        StockLedger stockLedger = new StockLedger(juiceRepository, Runnable::run);
+        JuiceService ledgerJuiceService = newJuiceService(stockLedger);
+        JuiceFilterDTO juiceFilterDTO = JuiceFilterDTO.builder().minQuantity(40).build();
+
+        // when
+        Juice appleJuice = juiceMapper.toModel(appleJuiceDTO);
+        appleJuice.setVersion(0L);
+        when(juiceRepository.findById(appleJuiceDTO.getId())).thenReturn(Optional.of(appleJuice));
+        when(juiceRepository.updateQuantityAndVersion(anyLong(), anyInt(), anyLong())).thenReturn(1);
+        when(juiceRepository.findAll(ArgumentMatchers.<Specification<Juice>>any()))
+                .thenReturn(Arrays.asList(juiceMapper.toModel(appleJuiceDTO), juiceMapper.toModel(orangeJuiceDTO)));
+        stockLedger.increment(appleJuiceDTO.getId(), 40);
+
+        // then
+        List<JuiceDTO> juices = ledgerJuiceService.listAll(juiceFilterDTO, Sort.by(Sort.Direction.DESC, "quantity"));
+
+        assertThat(juices.stream().map(JuiceDTO::getId).collect(Collectors.toList()), is(equalTo(Arrays.asList(1L, 2L))));
+        assertThat(juices.get(0).getQuantity(), is(equalTo(50)));
+        verify(juiceRepository, never()).findAll(ArgumentMatchers.<Specification<Juice>>any(), ArgumentMatchers.any(Sort.class));
+    }
+
+    @Test
+    void whenListIsCalledWithUnknownSortPropertyThenAnExceptionShouldBeThrown() {
+        assertThrows(InvalidSortException.class, () -> juiceService.listAll(new JuiceFilterDTO(), Sort.by("version")));
+        verifyNoInteractions(juiceRepository);
+    }
 }
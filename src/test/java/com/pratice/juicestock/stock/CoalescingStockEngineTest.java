@@ -0,0 +1,189 @@
+package com.pratice.juicestock.stock;
+
+import com.pratice.juicestock.builder.JuiceDTOBuilder;
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.dto.StockAdjustmentResultDTO;
+import com.pratice.juicestock.entity.Juice;
+import com.pratice.juicestock.exception.JuiceNotFoundException;
+import com.pratice.juicestock.exception.JuiceStockExceededException;
+import com.pratice.juicestock.exception.JuiceVersionMismatchException;
+import com.pratice.juicestock.mapper.JuiceMapper;
+import com.pratice.juicestock.repository.JuiceRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CoalescingStockEngineTest {
+
+    @Mock
+    private JuiceRepository juiceRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private JuiceMapper juiceMapper = JuiceMapper.INSTANCE;
+
+    private CoalescingStockEngine coalescingStockEngine;
+
+    @BeforeEach
+    void setUp() {
+        coalescingStockEngine = new CoalescingStockEngine(juiceRepository, transactionManager, 4);
+    }
+
+    @Test
+    void whenIncrementIsCalledThenQuantityAfterChangeIsReturned() throws Exception {
+        // given
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        Juice juice = juiceMapper.toModel(juiceDTO);
+        juice.setVersion(0L);
+
+        // when
+        when(juiceRepository.findAllById(anyCollection())).thenReturn(Collections.singletonList(juice));
+        when(juiceRepository.updateQuantityAndVersionIfVersion(anyLong(), anyInt(), anyLong(), anyLong())).thenAnswer(invocation -> {
+            if (!juice.getVersion().equals(invocation.getArgument(3))) {
+                return 0;
+            }
+            juice.setQuantity(invocation.getArgument(1));
+            juice.setVersion(invocation.getArgument(2));
+            return 1;
+        });
+
+        // then
+        JuiceDTO incrementedJuiceDTO = coalescingStockEngine.increment(juiceDTO.getId(), 5);
+
+        assertThat(incrementedJuiceDTO.getQuantity(), is(equalTo(juiceDTO.getQuantity() + 5)));
+        assertThat(incrementedJuiceDTO.getVersion(), is(equalTo(1L)));
+        assertThat(juice.getQuantity(), is(equalTo(juiceDTO.getQuantity() + 5)));
+    }
+
+    @Test
+    void whenIncrementIsCalledWithStaleVersionThenThrowException() {
+        // given
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        Juice juice = juiceMapper.toModel(juiceDTO);
+        juice.setVersion(3L);
+
+        // when
+        when(juiceRepository.findAllById(anyCollection())).thenReturn(Collections.singletonList(juice));
+
+        // then
+        assertThrows(JuiceVersionMismatchException.class, () -> coalescingStockEngine.increment(juiceDTO.getId(), 5, 2L));
+        verify(juiceRepository, never()).updateQuantityAndVersionIfVersion(anyLong(), anyInt(), anyLong(), anyLong());
+    }
+
+    @Test
+    void whenRowWasChangedSinceItWasReadThenConflictIsThrown() {
+        // given
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        Juice juice = juiceMapper.toModel(juiceDTO);
+        juice.setVersion(0L);
+
+        // when
+        when(juiceRepository.findAllById(anyCollection())).thenReturn(Collections.singletonList(juice));
+        when(juiceRepository.updateQuantityAndVersionIfVersion(juiceDTO.getId(), juiceDTO.getQuantity() + 5, 1L, 0L)).thenReturn(0);
+
+        // then
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> coalescingStockEngine.increment(juiceDTO.getId(), 5));
+    }
+
+    @Test
+    void whenIncrementIsCalledWithInvalidIdThenThrowException() {
+        // when
+        when(juiceRepository.findAllById(anyCollection())).thenReturn(Collections.emptyList());
+
+        // then
+        assertThrows(JuiceNotFoundException.class, () -> coalescingStockEngine.increment(2L, 5));
+    }
+
+    @Test
+    void whenAdjustIsCalledThenOnlyChangesWithinLimitsAreApplied() {
+        // given
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        Juice juice = juiceMapper.toModel(juiceDTO);
+        juice.setVersion(0L);
+        Map<Long, Integer> quantitiesById = new LinkedHashMap<>();
+        quantitiesById.put(juiceDTO.getId(), juiceDTO.getMax());
+        quantitiesById.put(2L, 1);
+
+        // when
+        when(juiceRepository.findAllById(anyCollection())).thenReturn(Collections.singletonList(juice));
+
+        // then
+        List<StockAdjustmentResultDTO> results = coalescingStockEngine.adjust(quantitiesById);
+
+        assertThat(results.get(0).getError(), containsString("exceeds the stock limits"));
+        assertThat(results.get(1).getError(), containsString("not found"));
+        assertThat(juice.getQuantity(), is(equalTo(juiceDTO.getQuantity())));
+    }
+
+    @Test
+    void whenConcurrentIncrementsAreCalledThenTheyAreCombinedWithoutLosingUpdates() throws Exception {
+        // given
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().max(500).quantity(0).build().toJuiceDTO();
+        Juice juice = juiceMapper.toModel(juiceDTO);
+        juice.setVersion(0L);
+        int threads = 8;
+        int incrementsPerThread = 100;
+
+        // when
+        when(juiceRepository.findAllById(anyCollection())).thenReturn(Collections.singletonList(juice));
+        when(juiceRepository.updateQuantityAndVersionIfVersion(anyLong(), anyInt(), anyLong(), anyLong())).thenAnswer(invocation -> {
+            if (!juice.getVersion().equals(invocation.getArgument(3))) {
+                return 0;
+            }
+            juice.setQuantity(invocation.getArgument(1));
+            juice.setVersion(invocation.getArgument(2));
+            return 1;
+        });
+
+        // then
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            tasks.add(() -> {
+                int rejected = 0;
+                for (int j = 0; j < incrementsPerThread; j++) {
+                    try {
+                        coalescingStockEngine.increment(juiceDTO.getId(), 1);
+                    } catch (JuiceStockExceededException e) {
+                        rejected++;
+                    }
+                }
+                return rejected;
+            });
+        }
+        int rejected = 0;
+        for (Future<Integer> future : executorService.invokeAll(tasks)) {
+            rejected += future.get();
+        }
+        executorService.shutdown();
+
+        assertThat(juice.getQuantity(), is(equalTo(juiceDTO.getMax())));
+        assertThat(juice.getVersion(), is(equalTo((long) juiceDTO.getMax())));
+        assertThat(rejected, is(equalTo(threads * incrementsPerThread - juiceDTO.getMax())));
+        verify(juiceRepository, atMost(threads * incrementsPerThread)).findAllById(anyCollection());
+    }
+}
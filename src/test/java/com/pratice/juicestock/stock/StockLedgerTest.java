@@ -0,0 +1,159 @@
+package com.pratice.juicestock.stock;
+
+import com.pratice.juicestock.builder.JuiceDTOBuilder;
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.entity.Juice;
+import com.pratice.juicestock.exception.JuiceStockExceededException;
+import com.pratice.juicestock.exception.JuiceVersionMismatchException;
+import com.pratice.juicestock.mapper.JuiceMapper;
+import com.pratice.juicestock.repository.JuiceRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class StockLedgerTest {
+
+    @Mock
+    private JuiceRepository juiceRepository;
+
+    private JuiceMapper juiceMapper = JuiceMapper.INSTANCE;
+
+    private StockLedger stockLedger;
+
+    @BeforeEach
+    void setUp() {
+        stockLedger = new StockLedger(juiceRepository, Runnable::run);
+    }
+
+    @Test
+    void whenIncrementIsCalledTwiceThenJuiceIsLoadedOnlyOnce() throws Exception {
+        // given
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        Juice juice = juiceMapper.toModel(juiceDTO);
+        juice.setVersion(0L);
+
+        // when
+        when(juiceRepository.findById(juiceDTO.getId())).thenReturn(Optional.of(juice));
+        when(juiceRepository.updateQuantityAndVersion(anyLong(), anyInt(), anyLong())).thenReturn(1);
+
+        // then
+        stockLedger.increment(juiceDTO.getId(), 5);
+        JuiceDTO incrementedJuiceDTO = stockLedger.increment(juiceDTO.getId(), 5);
+
+        assertThat(incrementedJuiceDTO.getQuantity(), is(equalTo(juiceDTO.getQuantity() + 10)));
+        verify(juiceRepository, times(1)).findById(juiceDTO.getId());
+        verify(juiceRepository, times(1)).updateQuantityAndVersion(juiceDTO.getId(), juiceDTO.getQuantity() + 10, 2L);
+    }
+
+    @Test
+    void whenIncrementExceedsMaxThenStockIsNotChanged() throws Exception {
+        // given
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        Juice juice = juiceMapper.toModel(juiceDTO);
+        juice.setVersion(0L);
+
+        // when
+        when(juiceRepository.findById(juiceDTO.getId())).thenReturn(Optional.of(juice));
+
+        // then
+        assertThrows(JuiceStockExceededException.class, () -> stockLedger.increment(juiceDTO.getId(), juiceDTO.getMax()));
+
+        assertThat(stockLedger.overlay(JuiceDTOBuilder.builder().build().toJuiceDTO()).getQuantity(), is(equalTo(juiceDTO.getQuantity())));
+        verify(juiceRepository, never()).updateQuantityAndVersion(anyLong(), anyInt(), anyLong());
+    }
+
+    @Test
+    void whenIncrementIsCalledWithStaleVersionThenStockIsNotChanged() throws Exception {
+        // given
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        Juice juice = juiceMapper.toModel(juiceDTO);
+        juice.setVersion(0L);
+
+        // when
+        when(juiceRepository.findById(juiceDTO.getId())).thenReturn(Optional.of(juice));
+        when(juiceRepository.updateQuantityAndVersion(anyLong(), anyInt(), anyLong())).thenReturn(1);
+
+        // then
+        JuiceDTO incrementedJuiceDTO = stockLedger.increment(juiceDTO.getId(), 1, 0L);
+        assertThrows(JuiceVersionMismatchException.class, () -> stockLedger.increment(juiceDTO.getId(), 1, 0L));
+
+        assertThat(incrementedJuiceDTO.getVersion(), is(equalTo(1L)));
+        assertThat(stockLedger.overlay(JuiceDTOBuilder.builder().build().toJuiceDTO()).getQuantity(), is(equalTo(juiceDTO.getQuantity() + 1)));
+    }
+
+    @Test
+    void whenDecrementIsLowerThanZeroThenStockIsNotChanged() throws Exception {
+        // given
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().build().toJuiceDTO();
+        Juice juice = juiceMapper.toModel(juiceDTO);
+        juice.setVersion(0L);
+
+        // when
+        when(juiceRepository.findById(juiceDTO.getId())).thenReturn(Optional.of(juice));
+        when(juiceRepository.updateQuantityAndVersion(juiceDTO.getId(), 0, 1L)).thenReturn(1);
+
+        // then
+        JuiceDTO decrementedJuiceDTO = stockLedger.decrement(juiceDTO.getId(), juiceDTO.getQuantity());
+        assertThrows(JuiceStockExceededException.class, () -> stockLedger.decrement(juiceDTO.getId(), 1));
+
+        assertThat(decrementedJuiceDTO.getQuantity(), is(equalTo(0)));
+        verify(juiceRepository, times(1)).updateQuantityAndVersion(juiceDTO.getId(), 0, 1L);
+    }
+
+    @Test
+    void whenConcurrentIncrementsAreCalledThenNoUpdateIsLost() throws Exception {
+        // given
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().max(500).quantity(0).build().toJuiceDTO();
+        Juice juice = juiceMapper.toModel(juiceDTO);
+        juice.setVersion(0L);
+        int threads = 8;
+        int incrementsPerThread = 100;
+
+        // when
+        when(juiceRepository.findById(juiceDTO.getId())).thenReturn(Optional.of(juice));
+        lenient().when(juiceRepository.updateQuantityAndVersion(anyLong(), anyInt(), anyLong())).thenReturn(1);
+
+        // then
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            tasks.add(() -> {
+                int rejected = 0;
+                for (int j = 0; j < incrementsPerThread; j++) {
+                    try {
+                        stockLedger.increment(juiceDTO.getId(), 1);
+                    } catch (JuiceStockExceededException e) {
+                        rejected++;
+                    }
+                }
+                return rejected;
+            });
+        }
+        int rejected = 0;
+        for (Future<Integer> future : executorService.invokeAll(tasks)) {
+            rejected += future.get();
+        }
+        executorService.shutdown();
+
+        assertThat(stockLedger.overlay(JuiceDTOBuilder.builder().build().toJuiceDTO()).getQuantity(), is(equalTo(juiceDTO.getMax())));
+        assertThat(rejected, is(equalTo(threads * incrementsPerThread - juiceDTO.getMax())));
+    }
+}
@@ -0,0 +1,149 @@
+package com.pratice.juicestock.stock;
+
+import com.pratice.juicestock.builder.JuiceDTOBuilder;
+import com.pratice.juicestock.dto.JuiceDTO;
+import com.pratice.juicestock.dto.StockStatisticsDTO;
+import com.pratice.juicestock.enums.JuiceType;
+import com.pratice.juicestock.repository.JuiceRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class StockStatisticsTest {
+
+    @Mock
+    private JuiceRepository juiceRepository;
+
+    private StockStatistics stockStatistics;
+
+    @BeforeEach
+    void setUp() {
+        stockStatistics = new StockStatistics(juiceRepository, new DatabaseStockEngine(juiceRepository), 10, 90, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void whenJuicesAreUpdatedThenTotalsAreGroupedByTypeAndBrand() {
+        // given
+        JuiceDTO appleJuiceDTO = JuiceDTOBuilder.builder().max(50).quantity(5).version(0L).build().toJuiceDTO();
+        JuiceDTO orangeJuiceDTO = JuiceDTOBuilder.builder().id(2L).name("Orange juice").type(JuiceType.ORANGE)
+                .max(100).quantity(60).version(0L).build().toJuiceDTO();
+
+        // then
+        stockStatistics.update(appleJuiceDTO);
+        stockStatistics.update(orangeJuiceDTO);
+        StockStatisticsDTO statistics = stockStatistics.snapshot();
+
+        assertThat(statistics.getTotal().getJuices(), is(equalTo(2L)));
+        assertThat(statistics.getTotal().getQuantity(), is(equalTo(65L)));
+        assertThat(statistics.getTotal().getFillRatio(), is(closeTo(65.0 / 150, 1e-9)));
+        assertThat(statistics.getTotal().getLowStock(), is(equalTo(1L)));
+        assertThat(statistics.getByType().get(JuiceType.ORANGE).getQuantity(), is(equalTo(60L)));
+        assertThat(statistics.getByType().get(JuiceType.APPLE).getLowStock(), is(equalTo(1L)));
+        assertThat(statistics.getByBrand().get(appleJuiceDTO.getBrand()).getJuices(), is(equalTo(2L)));
+    }
+
+    @Test
+    void whenOlderVersionArrivesAfterNewerOneThenItIsIgnored() {
+        // given
+        JuiceDTO olderJuiceDTO = JuiceDTOBuilder.builder().quantity(10).version(1L).build().toJuiceDTO();
+        JuiceDTO newerJuiceDTO = JuiceDTOBuilder.builder().quantity(12).version(2L).build().toJuiceDTO();
+
+        // then
+        stockStatistics.update(newerJuiceDTO);
+        stockStatistics.update(olderJuiceDTO);
+
+        assertThat(stockStatistics.snapshot().getTotal().getQuantity(), is(equalTo(12L)));
+    }
+
+    @Test
+    void whenJuiceIsRemovedThenItsGroupsAreDropped() {
+        // given
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().version(0L).build().toJuiceDTO();
+
+        // then
+        stockStatistics.update(juiceDTO);
+        stockStatistics.remove(juiceDTO.getId());
+        StockStatisticsDTO statistics = stockStatistics.snapshot();
+
+        assertThat(statistics.getTotal().getJuices(), is(equalTo(0L)));
+        assertThat(statistics.getTotal().getFillRatio(), is(equalTo(0.0)));
+        assertThat(statistics.getByType().entrySet(), is(empty()));
+        assertThat(statistics.getByBrand().entrySet(), is(empty()));
+    }
+
+    @Test
+    void whenWriteArrivesAfterJuiceIsRemovedThenJuiceStaysRemoved() {
+        // given
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().version(0L).build().toJuiceDTO();
+        JuiceDTO lateJuiceDTO = JuiceDTOBuilder.builder().quantity(30).version(1L).build().toJuiceDTO();
+
+        // then
+        stockStatistics.update(juiceDTO);
+        stockStatistics.remove(juiceDTO.getId());
+        stockStatistics.update(lateJuiceDTO);
+
+        assertThat(stockStatistics.snapshot().getTotal().getJuices(), is(equalTo(0L)));
+        assertThat(stockStatistics.units(), is(equalTo(0L)));
+    }
+
+    @Test
+    void whenTombstoneOutlivesTheTtlThenItIsDroppedOnTheNextRemoval() {
+        // given
+        StockStatistics shortLivedStockStatistics = new StockStatistics(juiceRepository, new DatabaseStockEngine(juiceRepository), 10, 90, Duration.ZERO);
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().version(0L).build().toJuiceDTO();
+        JuiceDTO otherJuiceDTO = JuiceDTOBuilder.builder().id(2L).name("Orange juice").version(0L).build().toJuiceDTO();
+
+        // when
+        shortLivedStockStatistics.update(juiceDTO);
+        shortLivedStockStatistics.remove(juiceDTO.getId());
+        shortLivedStockStatistics.remove(otherJuiceDTO.getId());
+        shortLivedStockStatistics.update(juiceDTO);
+        shortLivedStockStatistics.update(otherJuiceDTO);
+
+        // then
+        assertThat(shortLivedStockStatistics.snapshot().getTotal().getJuices(), is(equalTo(1L)));
+        assertThat(shortLivedStockStatistics.units(), is(equalTo((long) juiceDTO.getQuantity())));
+    }
+
+    @Test
+    void whenStartedThenJuicesAlreadyReportedAreNotLoadedAgain() {
+        // given
+        JuiceDTO juiceDTO = JuiceDTOBuilder.builder().quantity(20).version(3L).build().toJuiceDTO();
+        JuiceDTO staleJuiceDTO = JuiceDTOBuilder.builder().quantity(10).version(2L).build().toJuiceDTO();
+
+        // when
+        when(juiceRepository.findAllJuiceDTOs()).thenReturn(Collections.singletonList(staleJuiceDTO));
+
+        // then
+        stockStatistics.update(juiceDTO);
+        stockStatistics.start();
+
+        assertThat(stockStatistics.snapshot().getTotal().getQuantity(), is(equalTo(20L)));
+        assertThat(stockStatistics.isRunning(), is(true));
+    }
+
+    @Test
+    void whenJuicesAreUpdatedThenUnitsAndJuicesNearMaxAreCounted() {
+        // given
+        JuiceDTO fullJuiceDTO = JuiceDTOBuilder.builder().max(50).quantity(45).version(0L).build().toJuiceDTO();
+        JuiceDTO halfJuiceDTO = JuiceDTOBuilder.builder().id(2L).name("Orange juice").max(100).quantity(50).version(0L).build().toJuiceDTO();
+
+        // then
+        stockStatistics.update(fullJuiceDTO);
+        stockStatistics.update(halfJuiceDTO);
+
+        assertThat(stockStatistics.units(), is(equalTo(95L)));
+        assertThat(stockStatistics.nearMax(), is(equalTo(1L)));
+        verifyNoInteractions(juiceRepository);
+    }
+}